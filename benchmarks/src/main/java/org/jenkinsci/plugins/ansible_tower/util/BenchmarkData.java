@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Generated inputs shaped like what Tower sends back for a playbook run: colored ansible output with a few
+    JENKINS_EXPORT lines, pages of job_events and pages of workflow_nodes.
+    The same seed always gives the same data so results from different runs can be compared.
+ */
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+import java.util.Random;
+
+class BenchmarkData {
+    private static final String GREEN = "\u001B[0;32m";
+    private static final String YELLOW = "\u001B[0;33m";
+    private static final String RED = "\u001B[1;31m";
+    private static final String RESET = "\u001B[0m";
+
+    private BenchmarkData() {}
+
+    // One line as ansible prints it, every exportEvery'th line is a JENKINS_EXPORT
+    static String stdoutLine(Random random, int index, int exportEvery) {
+        String host = "web-" + random.nextInt(40) + ".example.com";
+        if (exportEvery > 0 && index % exportEvery == exportEvery - 1) {
+            return GREEN + "ok: [" + host + "] => {\"msg\": \"JENKINS_EXPORT VAR_" + index + "=value-" + random.nextInt(1000) + "\"}" + RESET;
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+                return "TASK [common : install packages " + index + "] " + repeat('*', 60);
+            case 1:
+                return YELLOW + "changed: [" + host + "] => (item=package-" + random.nextInt(200) + ")" + RESET;
+            case 2:
+                return RED + "fatal: [" + host + "]: FAILED! => {\"changed\": false, \"msg\": \"No package matching 'missing' found\"}" + RESET;
+            default:
+                return GREEN + "ok: [" + host + "]" + RESET;
+        }
+    }
+
+    // A block of stdout as found in one event or in result_stdout, lines are separated with \r\n
+    static String stdout(int lines, int exportEvery) {
+        Random random = new Random(lines);
+        StringBuilder stdout = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) { stdout.append("\r\n"); }
+            stdout.append(stdoutLine(random, i, exportEvery));
+        }
+        return stdout.toString();
+    }
+
+    static String jobEventsPage(int events) {
+        Random random = new Random(events);
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < events; i++) {
+            String host = "web-" + random.nextInt(40) + ".example.com";
+            JSONObject res = new JSONObject();
+            res.put("changed", random.nextBoolean());
+            res.put("msg", "All items completed");
+            JSONArray stdoutLines = new JSONArray();
+            for (int j = 0; j < 5; j++) { stdoutLines.add("line " + j + " of the command output on " + host); }
+            res.put("stdout_lines", stdoutLines);
+            JSONObject eventData = new JSONObject();
+            eventData.put("host", host);
+            eventData.put("play", "Configure the web servers");
+            eventData.put("task", "install packages");
+            eventData.put("task_path", "/var/lib/awx/projects/_8__site/roles/common/tasks/main.yml:" + (10 + i));
+            eventData.put("res", res);
+            JSONObject event = new JSONObject();
+            event.put("id", 100000 + i);
+            event.put("type", "job_event");
+            event.put("url", "/api/v2/job_events/" + (100000 + i) + "/");
+            event.put("created", "2018-11-05T10:15:" + String.format("%02d", i % 60) + ".123456Z");
+            event.put("job", 1234);
+            event.put("event", "runner_on_ok");
+            event.put("counter", i + 1);
+            event.put("event_display", "Host OK");
+            event.put("event_data", eventData);
+            event.put("failed", false);
+            event.put("changed", res.getBoolean("changed"));
+            event.put("host_name", host);
+            event.put("stdout", stdoutLine(random, i, 50));
+            event.put("start_line", i);
+            event.put("end_line", i + 1);
+            results.add(event);
+        }
+        // The last page, logJobEvents keeps asking for more as long as there is a next one
+        return page(results, null);
+    }
+
+    static String workflowNodesPage(int nodes) {
+        Random random = new Random(nodes);
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < nodes; i++) {
+            JSONObject job = new JSONObject();
+            job.put("id", 2000 + i);
+            job.put("name", "Deploy step " + i);
+            job.put("status", random.nextInt(10) == 0 ? "failed" : "successful");
+            job.put("failed", false);
+            job.put("elapsed", random.nextInt(600) + 0.5);
+            job.put("type", "job");
+            JSONObject template = new JSONObject();
+            template.put("id", 30 + i);
+            template.put("name", "Deploy step " + i);
+            template.put("unified_job_type", "job");
+            JSONObject summary = new JSONObject();
+            summary.put("job", job);
+            summary.put("unified_job_template", template);
+            summary.put("workflow_job", new JSONObject().element("id", 1999).element("name", "Deploy everything"));
+            JSONObject node = new JSONObject();
+            node.put("id", 500 + i);
+            node.put("type", "workflow_job_node");
+            node.put("url", "/api/v2/workflow_job_nodes/" + (500 + i) + "/");
+            node.put("summary_fields", summary);
+            node.put("job", 2000 + i);
+            node.put("workflow_job", 1999);
+            node.put("unified_job_template", 30 + i);
+            node.put("success_nodes", new JSONArray().element(501 + i));
+            node.put("failure_nodes", new JSONArray());
+            node.put("always_nodes", new JSONArray());
+            results.add(node);
+        }
+        return page(results, null);
+    }
+
+    private static String page(JSONArray results, String next) {
+        JSONObject page = new JSONObject();
+        page.put("count", results.size());
+        page.put("next", next == null ? JSONNull.getInstance() : next);
+        page.put("previous", JSONNull.getInstance());
+        page.put("results", results);
+        return page.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder out = new StringBuilder(count);
+        for (int i = 0; i < count; i++) { out.append(c); }
+        return out.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Just enough of a Tower for the benchmarks: the connector asks for the version when it is built, so the ping
+    endpoint answers with a fixed version. Each benchmark registers the fixed responses the connector methods it
+    measures ask for, everything else is a 404. It listens on the loopback interface only.
+ */
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class BenchmarkTower {
+    static final String VERSION = "3.3.0";
+
+    static {
+        // Read once by the JDK's server, without it every reply waits for a delayed ACK and a request costs ~40 ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    // Query strings are ignored, a request to the path gets the same status and body every time
+    private final Map<String, Integer> statuses = new ConcurrentHashMap<String, Integer>();
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<String, byte[]>();
+
+    BenchmarkTower() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body;
+            int status;
+            String path = exchange.getRequestURI().getPath();
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) { }
+            }
+            if (path.endsWith("/ping/")) {
+                body = ("{\"version\": \"" + VERSION + "\"}").getBytes(StandardCharsets.UTF_8);
+                status = 200;
+            } else if (bodies.containsKey(path)) {
+                body = bodies.get(path);
+                status = statuses.get(path);
+            } else {
+                body = "{\"detail\": \"Not found.\"}".getBytes(StandardCharsets.UTF_8);
+                status = 404;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            // The connector sends a HEAD to look for oAuth, that answer must not have a body
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    // path is what the connector requests, like /api/v2/inventory_updates/1/
+    void serve(String path, int status, String body) {
+        statuses.put(path, status);
+        bodies.put(path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    TowerConnector connector() {
+        return new TowerConnector(getUrl(), "admin", "password");
+    }
+
+    // Stands in for the build log
+    static PrintStream discardingLog() {
+        return new PrintStream(new OutputStream() {
+            @Override public void write(int b) {}
+            @Override public void write(byte[] b, int off, int len) {}
+        });
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Replays a cassette recorded from a real run (see TowerCassette) and follows the recorded job the way the runner
+    does: import the new events, ask whether the job is done, until it is. Each invocation is one whole run, so the
+    score is what importing the log and polling of that run costs, without Tower and without the poll interval.
+    There is no default cassette: pass one with -p cassette=<file>, and -e CassetteReplay to leave this out otherwise.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CassetteReplayBenchmark {
+    private static final String REPLAY_URL = "http://cassette.replay.invalid";
+
+    @Param({""})
+    public String cassette;
+
+    // 0 answers at once, 1 takes as long as Tower did
+    @Param({"0"})
+    public double speed;
+
+    // Has to be what the recorded build did, otherwise the replay asks for pages which were never recorded
+    @Param({"false"})
+    public boolean importWorkflowChildLogs;
+
+    private TowerCassettePlayer player;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        if (cassette == null || cassette.isEmpty()) {
+            throw new IllegalStateException("Pass the cassette to replay with -p cassette=<file>");
+        }
+        player = TowerCassettePlayer.load(new File(cassette));
+        if (player.getJobID() == null || player.getTemplateType() == null) {
+            throw new IllegalStateException("The cassette does not say which job was run, the recording did not finish");
+        }
+        player.setSpeed(speed);
+        TowerCassettePlayer.install(REPLAY_URL, player);
+    }
+
+    @Setup(Level.Iteration)
+    public void rewind() {
+        player.rewind();
+    }
+
+    @TearDown(Level.Trial)
+    public void unload() {
+        TowerCassettePlayer.uninstall(REPLAY_URL);
+    }
+
+    @Benchmark
+    public long replay() throws Exception {
+        TowerConnector connector = new TowerConnector(REPLAY_URL, "replay", "replay");
+        connector.setJenkinsLogger(BenchmarkTower.discardingLog());
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(true);
+        int jobID = player.getJobID();
+        String templateType = player.getTemplateType();
+        while (true) {
+            connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+            if (connector.isJobCompleted(jobID, templateType)) {
+                break;
+            }
+            if (player.getReplayedRequests() > 2L * player.getRecordedRequests() + 100) {
+                throw new IllegalStateException("The job never completes in the cassette");
+            }
+        }
+        connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+        return player.getReplayedRequests();
+    }
+}
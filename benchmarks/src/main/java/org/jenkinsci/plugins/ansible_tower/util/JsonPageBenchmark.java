@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Parsing the pages the connector polls while a job runs and walking them the way logJobEvents and
+    logWorkflowEvents do. importJobEvents is one poll of the job events through logEvents against the stub: the
+    request over the loopback interface, the parse and the handling of every line of every event.
+ */
+
+import net.sf.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class JsonPageBenchmark {
+    private static final int JOB_ID = 1234;
+
+    // Tower pages hold 25 results by default, page_size can go up to 200
+    @Param({"25", "200"})
+    public int pageSize;
+
+    private BenchmarkTower tower;
+    private TowerConnector connector;
+    private String jobEvents;
+    private String workflowNodes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tower = new BenchmarkTower();
+        jobEvents = BenchmarkData.jobEventsPage(pageSize);
+        workflowNodes = BenchmarkData.workflowNodesPage(pageSize);
+        tower.serve("/api/v2/jobs/" + JOB_ID + "/job_events/", 200, jobEvents);
+
+        connector = tower.connector();
+        connector.setJenkinsLogger(BenchmarkTower.discardingLog());
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tower.stop();
+    }
+
+    @Benchmark
+    public JSONObject parseJobEvents() {
+        return JSONObject.fromObject(jobEvents);
+    }
+
+    @Benchmark
+    public int importJobEvents() throws Exception {
+        connector.logEvents(JOB_ID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+        return connector.getJenkinsExports().size();
+    }
+
+    @Benchmark
+    public void walkWorkflowNodes(Blackhole blackhole) {
+        JSONObject page = JSONObject.fromObject(workflowNodes);
+        for (Object aNode : page.getJSONArray("results")) {
+            JSONObject summaryFields = ((JSONObject) aNode).getJSONObject("summary_fields");
+            JSONObject job = summaryFields.getJSONObject("job");
+            blackhole.consume(summaryFields.getJSONObject("unified_job_template").getString("unified_job_type"));
+            blackhole.consume(job.getString("name") + " => " + job.getString("status"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    The credentials of a launch: processCredentials is called directly to look up the credential types and every
+    credential and sort them into the parameters the Tower version understands; launch measures the whole
+    submitTemplate on top of it. The lookups are requests to the stub over the loopback interface, so this mostly
+    shows how the launch grows with the number of credentials.
+ */
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LaunchBodyBenchmark {
+    private static final int TEMPLATE_ID = 7;
+    private static final int MACHINE = 1;
+    private static final int VAULT = 3;
+    private static final int EXTRA = 5;
+
+    // Credentials of each type, 1 takes the pre 3.3 fields, more needs the credentials list
+    @Param({"1", "20"})
+    public int credentialsPerType;
+
+    private BenchmarkTower tower;
+    private TowerConnector connector;
+    private String credentials;
+    private String extraVars;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tower = new BenchmarkTower();
+        JSONArray types = new JSONArray();
+        types.add(new JSONObject().element("id", MACHINE).element("kind", "ssh"));
+        types.add(new JSONObject().element("id", VAULT).element("kind", "vault"));
+        tower.serve("/api/v2/credential_types/", 200, new JSONObject().element("count", 2).element("results", types).toString());
+
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < credentialsPerType; i++) {
+            ids.add(credential(100 + i, MACHINE));
+            ids.add(credential(200 + i, VAULT));
+            ids.add(credential(300 + i, EXTRA));
+        }
+        credentials = String.join(",", ids);
+        tower.serve("/api/v2/job_templates/" + TEMPLATE_ID + "/launch/", 201, new JSONObject().element("id", 1).toString());
+
+        StringBuilder vars = new StringBuilder("---\n");
+        for (int i = 0; i < 50; i++) {
+            vars.append("deploy_var_").append(i).append(": \"value ").append(i).append("\"\n");
+        }
+        extraVars = vars.toString();
+
+        connector = tower.connector();
+        connector.setJenkinsLogger(BenchmarkTower.discardingLog());
+    }
+
+    private String credential(int id, int type) {
+        tower.serve("/api/v2/credentials/" + id + "/", 200, new JSONObject().element("id", id).element("credential_type", type).toString());
+        return Integer.toString(id);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tower.stop();
+    }
+
+    @Benchmark
+    public JSONObject processCredentials() throws Exception {
+        JSONObject postBody = new JSONObject();
+        connector.processCredentials(credentials, postBody);
+        return postBody;
+    }
+
+    @Benchmark
+    public int launch() throws Exception {
+        return connector.submitTemplate(
+                TEMPLATE_ID, extraVars, "web-*.example.com", "deploy,config", null, null, null, credentials,
+                TowerConnector.JOB_TEMPLATE_TYPE
+        );
+    }
+}
@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Every line Tower sends back goes through logLine: split on \r\n, optionally stripped of ANSI colors, printed to
+    the build log and checked for JENKINS_EXPORT. logLine is called directly on one block of stdout, compare
+    removeColor=true with removeColor=false to see what the color removal costs; removeColor measures the regular
+    expression alone over the same lines. The build log is a stream that throws everything away.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LogLineBenchmark {
+    // Lines in one block of stdout, a single event is usually 1-3 lines, result_stdout of a sync can be thousands
+    @Param({"1", "100", "1000"})
+    public int lines;
+
+    @Param({"true", "false"})
+    public boolean removeColor;
+
+    private BenchmarkTower tower;
+    private TowerConnector connector;
+    private String stdout;
+    private String[] coloredLines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tower = new BenchmarkTower();
+        stdout = BenchmarkData.stdout(lines, 50);
+        coloredLines = stdout.split("\\r\\n");
+
+        connector = tower.connector();
+        connector.setJenkinsLogger(BenchmarkTower.discardingLog());
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(removeColor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tower.stop();
+    }
+
+    @Benchmark
+    public int logLine() throws Exception {
+        connector.logLine(stdout);
+        return connector.getJenkinsExports().size();
+    }
+
+    @Benchmark
+    public void removeColor(Blackhole blackhole) {
+        for (String line : coloredLines) {
+            blackhole.consume(connector.removeColor(line));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Versions are parsed every time a connector is created and compared before most launches and lookups.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TowerVersionBenchmark {
+    private TowerVersion version;
+
+    @Setup
+    public void setUp() throws Exception {
+        version = new TowerVersion("3.3.1");
+    }
+
+    @Benchmark
+    public TowerVersion parse() throws Exception {
+        return new TowerVersion("3.3.1");
+    }
+
+    @Benchmark
+    public boolean compare() throws Exception {
+        return version.is_greater_or_equal("3.2.0");
+    }
+}
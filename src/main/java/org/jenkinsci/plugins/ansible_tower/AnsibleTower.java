@@ -12,7 +12,6 @@ import hudson.model.*;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.ListBoxModel;
-import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -40,6 +39,14 @@ public class AnsibleTower extends Builder {
     private Boolean removeColor				= DescriptorImpl.removeColor;
 	private String templateType				= DescriptorImpl.templateType;
 	private Boolean importWorkflowChildLogs	= DescriptorImpl.importWorkflowChildLogs;
+	private int runTimeout					= DescriptorImpl.runTimeout;
+	private int shards						= DescriptorImpl.shards;
+	private String shardHosts				= DescriptorImpl.shardHosts;
+	private int failFastThreshold			= DescriptorImpl.failFastThreshold;
+	private int maxTowerLoad				= DescriptorImpl.maxTowerLoad;
+	private Boolean coalesceLaunches		= DescriptorImpl.coalesceLaunches;
+	private int checkResultCacheMinutes		= DescriptorImpl.checkResultCacheMinutes;
+	private Boolean monitorOnAgent			= DescriptorImpl.monitorOnAgent;
 
 	@DataBoundConstructor
 	public AnsibleTower(
@@ -79,6 +86,14 @@ public class AnsibleTower extends Builder {
 	public Boolean getRemoveColor() { return removeColor; }
 	public String getTemplateType() { return templateType; }
 	public Boolean getImportWorkflowChildLogs() { return importWorkflowChildLogs; }
+	public int getRunTimeout() { return runTimeout; }
+	public int getShards() { return shards; }
+	public String getShardHosts() { return shardHosts; }
+	public int getFailFastThreshold() { return failFastThreshold; }
+	public int getMaxTowerLoad() { return maxTowerLoad; }
+	public Boolean getCoalesceLaunches() { return coalesceLaunches; }
+	public int getCheckResultCacheMinutes() { return checkResultCacheMinutes; }
+	public Boolean getMonitorOnAgent() { return monitorOnAgent; }
 
 	@DataBoundSetter
 	public void setTowerServer(String towerServer) { this.towerServer = towerServer; }
@@ -108,12 +123,36 @@ public class AnsibleTower extends Builder {
 	public void setTemplateType(String templateType) { this.templateType = templateType; }
 	@DataBoundSetter
 	public void setImportWorkflowChildLogs(Boolean importWorkflowChildLogs) { this.importWorkflowChildLogs = importWorkflowChildLogs; }
+	@DataBoundSetter
+	public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+	@DataBoundSetter
+	public void setShards(int shards) { this.shards = shards; }
+	@DataBoundSetter
+	public void setShardHosts(String shardHosts) { this.shardHosts = shardHosts; }
+	@DataBoundSetter
+	public void setFailFastThreshold(int failFastThreshold) { this.failFastThreshold = failFastThreshold; }
+	@DataBoundSetter
+	public void setMaxTowerLoad(int maxTowerLoad) { this.maxTowerLoad = maxTowerLoad; }
+	@DataBoundSetter
+	public void setCoalesceLaunches(Boolean coalesceLaunches) { this.coalesceLaunches = coalesceLaunches; }
+	@DataBoundSetter
+	public void setCheckResultCacheMinutes(int checkResultCacheMinutes) { this.checkResultCacheMinutes = checkResultCacheMinutes; }
+	@DataBoundSetter
+	public void setMonitorOnAgent(Boolean monitorOnAgent) { this.monitorOnAgent = monitorOnAgent; }
 
     @Override
     public boolean perform(AbstractBuild<?,?> build, Launcher launcher, BuildListener listener)
 			throws InterruptedException, IOException
 	{
 		AnsibleTowerRunner runner = new AnsibleTowerRunner();
+		runner.setRunTimeout(this.getRunTimeout());
+		runner.setShards(this.getShards());
+		runner.setShardHosts(this.getShardHosts());
+		runner.setFailFastThreshold(this.getFailFastThreshold());
+		runner.setMaxTowerLoad(this.getMaxTowerLoad());
+		runner.setCoalesceLaunches(this.getCoalesceLaunches());
+		runner.setCheckResultCacheMinutes(this.getCheckResultCacheMinutes());
+		runner.setMonitorOnAgent(this.getMonitorOnAgent());
 		EnvVars envVars = build.getEnvironment(listener);
 
 		//
@@ -158,6 +197,14 @@ public class AnsibleTower extends Builder {
 		public static final String templateType				= "job";
 		public static final Boolean importWorkflowChildLogs	= false;
 		public static final Boolean throwExceptionWhenFail  = true;
+		public static final int runTimeout					= 0;
+		public static final int shards						= 0;
+		public static final String shardHosts				= "";
+		public static final int failFastThreshold			= 0;
+		public static final int maxTowerLoad				= 0;
+		public static final Boolean coalesceLaunches		= false;
+		public static final int checkResultCacheMinutes		= 0;
+		public static final Boolean monitorOnAgent			= false;
 
         public DescriptorImpl() {
             load();
@@ -173,12 +220,7 @@ public class AnsibleTower extends Builder {
         public String getDisplayName() { return "Ansible Tower"; }
 
         public ListBoxModel doFillTowerServerItems() {
-			ListBoxModel items = new ListBoxModel();
-			items.add(" - None -");
-			for(TowerInstallation towerServer : AnsibleTowerGlobalConfig.get().getTowerInstallation()) {
-				items.add(towerServer.getTowerDisplayName());
-			}
-			return items;
+			return AnsibleTowerStepDescriptor.getTowerServerItems();
         }
 
         public ListBoxModel doFillTemplateTypeItems() {
@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the pipeline step to wait for a Tower job which was started somewhere else
+    (a schedule, another pipeline, the Tower UI). Builds waiting on the same job share one monitor in AnsibleTowerRunner
+ */
+
+import com.google.inject.Inject;
+import hudson.*;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.Properties;
+
+public class AnsibleTowerAttachStep extends AbstractStepImpl {
+    private String towerServer              = "";
+    private String jobId                    = "";
+    private String templateType             = "job";
+    private Boolean verbose                 = false;
+    private Boolean importTowerLogs         = false;
+    private Boolean importWorkflowChildLogs = false;
+    private Boolean removeColor             = false;
+    private Boolean throwExceptionWhenFail  = true;
+    private int runTimeout                  = 0;
+
+    @DataBoundConstructor
+    public AnsibleTowerAttachStep(@Nonnull String towerServer, @Nonnull String jobId) {
+        this.towerServer = towerServer;
+        this.jobId = jobId;
+    }
+
+    @Nonnull
+    public String getTowerServer()              { return towerServer; }
+    @Nonnull
+    public String getJobId()                    { return jobId; }
+    public String getTemplateType()             { return templateType; }
+    public Boolean getVerbose()                 { return verbose; }
+    public Boolean getImportTowerLogs()         { return importTowerLogs; }
+    public Boolean getImportWorkflowChildLogs() { return importWorkflowChildLogs; }
+    public Boolean getRemoveColor()             { return removeColor; }
+    public Boolean getThrowExceptionWhenFail()  { return throwExceptionWhenFail; }
+    public int getRunTimeout()                  { return runTimeout; }
+
+    @DataBoundSetter
+    public void setTemplateType(String templateType) { this.templateType = templateType; }
+    @DataBoundSetter
+    public void setVerbose(Boolean verbose) { this.verbose = verbose; }
+    @DataBoundSetter
+    public void setImportTowerLogs(Boolean importTowerLogs) { this.importTowerLogs = importTowerLogs; }
+    @DataBoundSetter
+    public void setImportWorkflowChildLogs(Boolean importWorkflowChildLogs) { this.importWorkflowChildLogs = importWorkflowChildLogs; }
+    @DataBoundSetter
+    public void setRemoveColor(Boolean removeColor) { this.removeColor = removeColor; }
+    @DataBoundSetter
+    public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
+        public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
+        public static final String jobId                    = "";
+        public static final String templateType             = AnsibleTower.DescriptorImpl.templateType;
+        public static final Boolean verbose                 = AnsibleTower.DescriptorImpl.verbose;
+        public static final Boolean importTowerLogs         = AnsibleTower.DescriptorImpl.importTowerLogs;
+        public static final Boolean importWorkflowChildLogs = AnsibleTower.DescriptorImpl.importWorkflowChildLogs;
+        public static final Boolean removeColor             = AnsibleTower.DescriptorImpl.removeColor;
+        public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+
+        public DescriptorImpl() {
+            super(AnsibleTowerAttachStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ansibleTowerAttach";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Wait for a running Ansible Tower job";
+        }
+
+        public ListBoxModel doFillTemplateTypeItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("job");
+            items.add("workflow");
+            return items;
+        }
+    }
+
+
+    public static final class AnsibleTowerAttachStepExecution extends AbstractSynchronousNonBlockingStepExecution<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient AnsibleTowerAttachStep step;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @StepContextParameter
+        private transient Run<?,?> run;
+
+        @StepContextParameter
+        private transient FilePath ws;
+
+        @StepContextParameter
+        private transient EnvVars envVars;
+
+        @StepContextParameter
+        private transient Computer computer;
+
+        @Override
+        protected Properties run() throws Exception {
+            if ((computer == null) || (computer.getNode() == null)) {
+                throw new AbortException("The Ansible Tower build step requires to be launched on a node");
+            }
+
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+
+            boolean verbose = false;
+            if(step.getVerbose() != null) { verbose = step.getVerbose(); }
+            boolean importTowerLogs = false;
+            if(step.getImportTowerLogs() != null) { importTowerLogs = step.getImportTowerLogs(); }
+            boolean removeColor = false;
+            if(step.getRemoveColor() != null) { removeColor = step.getRemoveColor(); }
+            String templateType = "job";
+            if(step.getTemplateType() != null) { templateType = step.getTemplateType(); }
+            boolean importWorkflowChildLogs = false;
+            if(step.getImportWorkflowChildLogs() != null) { importWorkflowChildLogs = step.getImportWorkflowChildLogs(); }
+            boolean throwExceptionWhenFail = true;
+            if(step.getThrowExceptionWhenFail() != null) { throwExceptionWhenFail = step.getThrowExceptionWhenFail(); }
+            Properties map = new Properties();
+            boolean runResult = runner.attachToJob(
+                    listener.getLogger(), step.getTowerServer(), step.getJobId(), templateType, verbose, importTowerLogs,
+                    removeColor, importWorkflowChildLogs, envVars, ws, run, map
+            );
+            if(!runResult && throwExceptionWhenFail) {
+                throw new AbortException("Ansible Tower build step failed");
+            }
+            return map;
+        }
+    }
+}
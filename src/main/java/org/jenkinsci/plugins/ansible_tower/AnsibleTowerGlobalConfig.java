@@ -6,6 +6,8 @@ package org.jenkinsci.plugins.ansible_tower;
 
 import hudson.Extension;
 import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.util.XStream2;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
@@ -16,12 +18,19 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnectionPool;
 import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
+import org.jenkinsci.plugins.ansible_tower.util.TowerPrewarmer;
+import org.jenkinsci.plugins.ansible_tower.util.TowerTraceExporter;
 
 @Extension
 public class AnsibleTowerGlobalConfig extends GlobalConfiguration {
 
     private List<TowerInstallation> towerInstallations = new ArrayList<TowerInstallation>();
+    // Where finished traces go: empty for no tracing, "log" for the system log or a file
+    private String traceExport = "";
+    // Where runs are recorded as cassettes (for replaying them offline), empty for no recording
+    private String cassetteDirectory = "";
 
     private static final XStream2 XSTREAM2 = new XStream2();
 
@@ -44,9 +53,26 @@ public class AnsibleTowerGlobalConfig extends GlobalConfiguration {
     {
         req.bindJSON(this, json);
         save();
+        // Drop the connections of the installations which were removed or changed before warming up the new ones
+        List<String> poolKeys = new ArrayList<String>();
+        if(towerInstallations != null) {
+            for(TowerInstallation installation : towerInstallations) {
+                poolKeys.add(installation.getConnectionPoolKey());
+            }
+        }
+        TowerConnectionPool.retain(poolKeys);
+        TowerPrewarmer.prewarm(towerInstallations);
         return true;
     }
 
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void prewarmConnections() {
+        AnsibleTowerGlobalConfig config = get();
+        if(config != null) {
+            TowerPrewarmer.prewarm(config.getTowerInstallation());
+        }
+    }
+
     public static AnsibleTowerGlobalConfig get() {
         return GlobalConfiguration.all().get(AnsibleTowerGlobalConfig.class);
     }
@@ -66,5 +92,39 @@ public class AnsibleTowerGlobalConfig extends GlobalConfiguration {
         this.towerInstallations = towerInstallations;
     }
 
+    public String getTraceExport() {
+        return traceExport;
+    }
+
+    public void setTraceExport(String traceExport) {
+        this.traceExport = traceExport;
+    }
+
+    public TowerTraceExporter getTraceExporter() {
+        Jenkins j = Jenkins.getInstance();
+        return new TowerTraceExporter(traceExport, j == null ? null : j.getRootDir());
+    }
+
+    public String getCassetteDirectory() {
+        return cassetteDirectory;
+    }
+
+    public void setCassetteDirectory(String cassetteDirectory) {
+        this.cassetteDirectory = cassetteDirectory;
+    }
+
+    // The directory to record cassettes in (relative to JENKINS_HOME unless absolute), null when not recording
+    public File getCassetteRecordingDirectory() {
+        if (cassetteDirectory == null || cassetteDirectory.trim().isEmpty()) {
+            return null;
+        }
+        File directory = new File(cassetteDirectory.trim());
+        Jenkins j = Jenkins.getInstance();
+        if (!directory.isAbsolute() && j != null) {
+            directory = new File(j.getRootDir(), cassetteDirectory.trim());
+        }
+        return directory;
+    }
+
 }
 
@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the pipeline step to sync several inventory sources at once
+    All of the syncs are started together and watched from a single loop in AnsibleTowerRunner
+ */
+
+import com.google.inject.Inject;
+import hudson.*;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.Properties;
+
+public class AnsibleTowerInventorySyncStep extends AbstractStepImpl {
+    private String towerServer              = "";
+    private String inventorySources         = "";
+    private Boolean verbose                 = false;
+    private Boolean importTowerLogs         = false;
+    private Boolean removeColor             = false;
+    private Boolean throwExceptionWhenFail  = true;
+    private int runTimeout                  = 0;
+
+    @DataBoundConstructor
+    public AnsibleTowerInventorySyncStep(@Nonnull String towerServer, @Nonnull String inventorySources) {
+        this.towerServer = towerServer;
+        this.inventorySources = inventorySources;
+    }
+
+    @Nonnull
+    public String getTowerServer()              { return towerServer; }
+    @Nonnull
+    public String getInventorySources()         { return inventorySources; }
+    public Boolean getVerbose()                 { return verbose; }
+    public Boolean getImportTowerLogs()         { return importTowerLogs; }
+    public Boolean getRemoveColor()             { return removeColor; }
+    public Boolean getThrowExceptionWhenFail()  { return throwExceptionWhenFail; }
+    public int getRunTimeout()                  { return runTimeout; }
+
+    @DataBoundSetter
+    public void setVerbose(Boolean verbose) { this.verbose = verbose; }
+    @DataBoundSetter
+    public void setImportTowerLogs(Boolean importTowerLogs) { this.importTowerLogs = importTowerLogs; }
+    @DataBoundSetter
+    public void setRemoveColor(Boolean removeColor) { this.removeColor = removeColor; }
+    @DataBoundSetter
+    public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
+        public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
+        public static final String inventorySources         = "";
+        public static final Boolean verbose                 = AnsibleTower.DescriptorImpl.verbose;
+        public static final Boolean importTowerLogs         = AnsibleTower.DescriptorImpl.importTowerLogs;
+        public static final Boolean removeColor             = AnsibleTower.DescriptorImpl.removeColor;
+        public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+
+        public DescriptorImpl() {
+            super(AnsibleTowerInventorySyncStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ansibleTowerInventorySync";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Have Ansible Tower sync inventory sources";
+        }
+    }
+
+
+    public static final class AnsibleTowerInventorySyncStepExecution extends AbstractSynchronousNonBlockingStepExecution<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient AnsibleTowerInventorySyncStep step;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @StepContextParameter
+        private transient EnvVars envVars;
+
+        @StepContextParameter
+        private transient Computer computer;
+
+        @Override
+        protected Properties run() throws Exception {
+            if ((computer == null) || (computer.getNode() == null)) {
+                throw new AbortException("The Ansible Tower build step requires to be launched on a node");
+            }
+
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+
+            boolean verbose = false;
+            if(step.getVerbose() != null) { verbose = step.getVerbose(); }
+            boolean importTowerLogs = false;
+            if(step.getImportTowerLogs() != null) { importTowerLogs = step.getImportTowerLogs(); }
+            boolean removeColor = false;
+            if(step.getRemoveColor() != null) { removeColor = step.getRemoveColor(); }
+            boolean throwExceptionWhenFail = true;
+            if(step.getThrowExceptionWhenFail() != null) { throwExceptionWhenFail = step.getThrowExceptionWhenFail(); }
+            Properties map = new Properties();
+            boolean runResult = runner.syncInventorySources(
+                    listener.getLogger(), step.getTowerServer(), step.getInventorySources(), verbose, importTowerLogs,
+                    removeColor, envVars, map
+            );
+            if(!runResult && throwExceptionWhenFail) {
+                throw new AbortException("Ansible Tower build step failed");
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the pipeline step to run several templates at once
+    All of the templates are launched together and monitored from a single loop in AnsibleTowerRunner
+ */
+
+import com.google.inject.Inject;
+import hudson.*;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class AnsibleTowerParallelStep extends AbstractStepImpl {
+    private String towerServer                        = "";
+    private List<AnsibleTowerTemplateSpec> templates  = new ArrayList<AnsibleTowerTemplateSpec>();
+    private Boolean verbose                           = false;
+    private Boolean importTowerLogs                   = false;
+    private Boolean removeColor                       = false;
+    private Boolean importWorkflowChildLogs           = false;
+    private Boolean throwExceptionWhenFail            = true;
+    private int runTimeout                            = 0;
+
+    @DataBoundConstructor
+    public AnsibleTowerParallelStep(@Nonnull String towerServer, @Nonnull List<AnsibleTowerTemplateSpec> templates) {
+        this.towerServer = towerServer;
+        this.templates = templates;
+    }
+
+    @Nonnull
+    public String getTowerServer()                        { return towerServer; }
+    @Nonnull
+    public List<AnsibleTowerTemplateSpec> getTemplates()  { return templates; }
+    public Boolean getVerbose()                           { return verbose; }
+    public Boolean getImportTowerLogs()                   { return importTowerLogs; }
+    public Boolean getRemoveColor()                       { return removeColor; }
+    public Boolean getImportWorkflowChildLogs()           { return importWorkflowChildLogs; }
+    public Boolean getThrowExceptionWhenFail()            { return throwExceptionWhenFail; }
+    public int getRunTimeout()                            { return runTimeout; }
+
+    @DataBoundSetter
+    public void setVerbose(Boolean verbose) { this.verbose = verbose; }
+    @DataBoundSetter
+    public void setImportTowerLogs(Boolean importTowerLogs) { this.importTowerLogs = importTowerLogs; }
+    @DataBoundSetter
+    public void setRemoveColor(Boolean removeColor) { this.removeColor = removeColor; }
+    @DataBoundSetter
+    public void setImportWorkflowChildLogs(Boolean importWorkflowChildLogs) { this.importWorkflowChildLogs = importWorkflowChildLogs; }
+    @DataBoundSetter
+    public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
+        public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
+        public static final Boolean verbose                 = AnsibleTower.DescriptorImpl.verbose;
+        public static final Boolean importTowerLogs         = AnsibleTower.DescriptorImpl.importTowerLogs;
+        public static final Boolean removeColor             = AnsibleTower.DescriptorImpl.removeColor;
+        public static final Boolean importWorkflowChildLogs = AnsibleTower.DescriptorImpl.importWorkflowChildLogs;
+        public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+
+        public DescriptorImpl() {
+            super(AnsibleTowerParallelStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ansibleTowerParallel";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Have Ansible Tower run several templates at once";
+        }
+    }
+
+
+    public static final class AnsibleTowerParallelStepExecution extends AbstractSynchronousNonBlockingStepExecution<ArrayList<Properties>> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient AnsibleTowerParallelStep step;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @StepContextParameter
+        private transient Run<?,?> run;
+
+        @StepContextParameter
+        private transient FilePath ws;
+
+        @StepContextParameter
+        private transient EnvVars envVars;
+
+        @StepContextParameter
+        private transient Computer computer;
+
+        @Override
+        protected ArrayList<Properties> run() throws Exception {
+            if ((computer == null) || (computer.getNode() == null)) {
+                throw new AbortException("The Ansible Tower build step requires to be launched on a node");
+            }
+
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+
+            boolean verbose = false;
+            if(step.getVerbose() != null) { verbose = step.getVerbose(); }
+            boolean importTowerLogs = false;
+            if(step.getImportTowerLogs() != null) { importTowerLogs = step.getImportTowerLogs(); }
+            boolean removeColor = false;
+            if(step.getRemoveColor() != null) { removeColor = step.getRemoveColor(); }
+            boolean importWorkflowChildLogs = false;
+            if(step.getImportWorkflowChildLogs() != null) { importWorkflowChildLogs = step.getImportWorkflowChildLogs(); }
+            boolean throwExceptionWhenFail = true;
+            if(step.getThrowExceptionWhenFail() != null) { throwExceptionWhenFail = step.getThrowExceptionWhenFail(); }
+            ArrayList<Properties> results = new ArrayList<Properties>();
+            boolean runResult = runner.runJobTemplates(
+                    listener.getLogger(), step.getTowerServer(), step.getTemplates(), verbose, importTowerLogs,
+                    removeColor, importWorkflowChildLogs, envVars, ws, run, results
+            );
+            if(!runResult && throwExceptionWhenFail) {
+                throw new AbortException("Ansible Tower build step failed");
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the pipeline step to bring a Tower project up to date. Running or matching updates are reused
+    instead of starting another one, see syncProject in AnsibleTowerRunner
+ */
+
+import com.google.inject.Inject;
+import hudson.*;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.Properties;
+
+public class AnsibleTowerProjectSyncStep extends AbstractStepImpl {
+    private String towerServer              = "";
+    private String project                  = "";
+    private String scmRevision              = "";
+    private Boolean verbose                 = false;
+    private Boolean importTowerLogs         = false;
+    private Boolean removeColor             = false;
+    private Boolean throwExceptionWhenFail  = true;
+    private int runTimeout                  = 0;
+
+    @DataBoundConstructor
+    public AnsibleTowerProjectSyncStep(@Nonnull String towerServer, @Nonnull String project) {
+        this.towerServer = towerServer;
+        this.project = project;
+    }
+
+    @Nonnull
+    public String getTowerServer()              { return towerServer; }
+    @Nonnull
+    public String getProject()                  { return project; }
+    public String getScmRevision()              { return scmRevision; }
+    public Boolean getVerbose()                 { return verbose; }
+    public Boolean getImportTowerLogs()         { return importTowerLogs; }
+    public Boolean getRemoveColor()             { return removeColor; }
+    public Boolean getThrowExceptionWhenFail()  { return throwExceptionWhenFail; }
+    public int getRunTimeout()                  { return runTimeout; }
+
+    @DataBoundSetter
+    public void setScmRevision(String scmRevision) { this.scmRevision = scmRevision; }
+    @DataBoundSetter
+    public void setVerbose(Boolean verbose) { this.verbose = verbose; }
+    @DataBoundSetter
+    public void setImportTowerLogs(Boolean importTowerLogs) { this.importTowerLogs = importTowerLogs; }
+    @DataBoundSetter
+    public void setRemoveColor(Boolean removeColor) { this.removeColor = removeColor; }
+    @DataBoundSetter
+    public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
+        public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
+        public static final String project                  = "";
+        public static final String scmRevision              = "";
+        public static final Boolean verbose                 = AnsibleTower.DescriptorImpl.verbose;
+        public static final Boolean importTowerLogs         = AnsibleTower.DescriptorImpl.importTowerLogs;
+        public static final Boolean removeColor             = AnsibleTower.DescriptorImpl.removeColor;
+        public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+
+        public DescriptorImpl() {
+            super(AnsibleTowerProjectSyncStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ansibleTowerProjectSync";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Update an Ansible Tower project";
+        }
+    }
+
+
+    public static final class AnsibleTowerProjectSyncStepExecution extends AbstractSynchronousNonBlockingStepExecution<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient AnsibleTowerProjectSyncStep step;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @StepContextParameter
+        private transient EnvVars envVars;
+
+        @StepContextParameter
+        private transient Computer computer;
+
+        @Override
+        protected Properties run() throws Exception {
+            if ((computer == null) || (computer.getNode() == null)) {
+                throw new AbortException("The Ansible Tower build step requires to be launched on a node");
+            }
+
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+
+            boolean verbose = false;
+            if(step.getVerbose() != null) { verbose = step.getVerbose(); }
+            boolean importTowerLogs = false;
+            if(step.getImportTowerLogs() != null) { importTowerLogs = step.getImportTowerLogs(); }
+            boolean removeColor = false;
+            if(step.getRemoveColor() != null) { removeColor = step.getRemoveColor(); }
+            boolean throwExceptionWhenFail = true;
+            if(step.getThrowExceptionWhenFail() != null) { throwExceptionWhenFail = step.getThrowExceptionWhenFail(); }
+            Properties map = new Properties();
+            boolean runResult = runner.syncProject(
+                    listener.getLogger(), step.getTowerServer(), step.getProject(), step.getScmRevision(), verbose,
+                    importTowerLogs, removeColor, envVars, map
+            );
+            if(!runResult && throwExceptionWhenFail) {
+                throw new AbortException("Ansible Tower build step failed");
+            }
+            return map;
+        }
+    }
+}
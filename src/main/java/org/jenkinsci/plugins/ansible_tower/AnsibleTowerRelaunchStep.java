@@ -0,0 +1,133 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the pipeline step to rerun a previous job against the hosts that failed in it
+    The JOB_ID returned by the ansibleTower step (or a comma separated list of them) is relaunched through AnsibleTowerRunner
+ */
+
+import com.google.inject.Inject;
+import hudson.*;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.Properties;
+
+public class AnsibleTowerRelaunchStep extends AbstractStepImpl {
+    private String towerServer              = "";
+    private String jobId                    = "";
+    private Boolean verbose                 = false;
+    private Boolean importTowerLogs         = false;
+    private Boolean removeColor             = false;
+    private Boolean throwExceptionWhenFail  = true;
+    private int runTimeout                  = 0;
+
+    @DataBoundConstructor
+    public AnsibleTowerRelaunchStep(@Nonnull String towerServer, @Nonnull String jobId) {
+        this.towerServer = towerServer;
+        this.jobId = jobId;
+    }
+
+    @Nonnull
+    public String getTowerServer()              { return towerServer; }
+    @Nonnull
+    public String getJobId()                    { return jobId; }
+    public Boolean getVerbose()                 { return verbose; }
+    public Boolean getImportTowerLogs()         { return importTowerLogs; }
+    public Boolean getRemoveColor()             { return removeColor; }
+    public Boolean getThrowExceptionWhenFail()  { return throwExceptionWhenFail; }
+    public int getRunTimeout()                  { return runTimeout; }
+
+    @DataBoundSetter
+    public void setVerbose(Boolean verbose) { this.verbose = verbose; }
+    @DataBoundSetter
+    public void setImportTowerLogs(Boolean importTowerLogs) { this.importTowerLogs = importTowerLogs; }
+    @DataBoundSetter
+    public void setRemoveColor(Boolean removeColor) { this.removeColor = removeColor; }
+    @DataBoundSetter
+    public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
+        public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
+        public static final String jobId                    = "";
+        public static final Boolean verbose                 = AnsibleTower.DescriptorImpl.verbose;
+        public static final Boolean importTowerLogs         = AnsibleTower.DescriptorImpl.importTowerLogs;
+        public static final Boolean removeColor             = AnsibleTower.DescriptorImpl.removeColor;
+        public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+
+        public DescriptorImpl() {
+            super(AnsibleTowerRelaunchStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ansibleTowerRelaunch";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Have Ansible Tower rerun a job on its failed hosts";
+        }
+    }
+
+
+    public static final class AnsibleTowerRelaunchStepExecution extends AbstractSynchronousNonBlockingStepExecution<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient AnsibleTowerRelaunchStep step;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        @StepContextParameter
+        private transient Run<?,?> run;
+
+        @StepContextParameter
+        private transient FilePath ws;
+
+        @StepContextParameter
+        private transient EnvVars envVars;
+
+        @StepContextParameter
+        private transient Computer computer;
+
+        @Override
+        protected Properties run() throws Exception {
+            if ((computer == null) || (computer.getNode() == null)) {
+                throw new AbortException("The Ansible Tower build step requires to be launched on a node");
+            }
+
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+
+            boolean verbose = false;
+            if(step.getVerbose() != null) { verbose = step.getVerbose(); }
+            boolean importTowerLogs = false;
+            if(step.getImportTowerLogs() != null) { importTowerLogs = step.getImportTowerLogs(); }
+            boolean removeColor = false;
+            if(step.getRemoveColor() != null) { removeColor = step.getRemoveColor(); }
+            boolean throwExceptionWhenFail = true;
+            if(step.getThrowExceptionWhenFail() != null) { throwExceptionWhenFail = step.getThrowExceptionWhenFail(); }
+            Properties map = new Properties();
+            boolean runResult = runner.relaunchFailedHosts(
+                    listener.getLogger(), step.getTowerServer(), step.getJobId(), verbose, importTowerLogs,
+                    removeColor, envVars, ws, run, map
+            );
+            if(!runResult && throwExceptionWhenFail) {
+                throw new AbortException("Ansible Tower build step failed");
+            }
+            return map;
+        }
+    }
+}
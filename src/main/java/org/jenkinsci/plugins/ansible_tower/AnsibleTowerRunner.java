@@ -8,17 +8,83 @@ package org.jenkinsci.plugins.ansible_tower;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.Run;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONNull;
 import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerAdmissionUnavailable;
 import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerNotResponding;
+import org.jenkinsci.plugins.ansible_tower.util.TowerCassette;
+import org.jenkinsci.plugins.ansible_tower.util.TowerCheckResultCache;
 import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
 import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
+import org.jenkinsci.plugins.ansible_tower.util.TowerJobMonitor;
+import org.jenkinsci.plugins.ansible_tower.util.TowerLaunchCoalescer;
+import org.jenkinsci.plugins.ansible_tower.util.TowerRemoteMonitor;
+import org.jenkinsci.plugins.ansible_tower.util.TowerTimeline;
+import org.jenkinsci.plugins.ansible_tower.util.TowerTrace;
+import org.jenkinsci.plugins.ansible_tower.util.TowerTraceExporter;
 import org.jenkinsci.plugins.envinject.service.EnvInjectActionSetter;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AnsibleTowerRunner {
+    private static final long POLL_INTERVAL = 3000;
+    private static final int MAX_PARALLEL_LAUNCHES = 10;
+    private static final long CANCEL_WAIT = 30000;
+    private static final long CANCEL_POLL_INTERVAL = 2000;
+
+    private int runTimeout = 0;
+    private int shards = 0;
+    private String shardHosts = null;
+    private int failFastThreshold = 0;
+    private int maxTowerLoad = 0;
+    private boolean coalesceLaunches = false;
+    private int checkResultCacheMinutes = 0;
+    private boolean monitorOnAgent = false;
+    private long pollInterval = POLL_INTERVAL;
+    // Only set while a single template runs, the parallel paths would mix up their phases
+    private TowerTimeline timeline = null;
+    private TowerTrace trace = null;
+    // Like the timeline, only the single template path is recorded
+    private TowerCassette cassette = null;
+    // The coalesced launches whose job this run is still watching, launches happen on several threads
+    private final List<TowerLaunchCoalescer.Launch> sharedLaunches = Collections.synchronizedList(new ArrayList<TowerLaunchCoalescer.Launch>());
+
+    // The number of minutes the whole run may take, 0 means no limit
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+    // Split the hosts over this many jobs, 0 or 1 runs a single job
+    public void setShards(int shards) { this.shards = shards; }
+    // The hosts to split into shards, if empty all of the hosts of the inventory are used
+    public void setShardHosts(String shardHosts) { this.shardHosts = shardHosts; }
+    // Cancel a job once this many of its hosts have failed, 0 lets the job run to the end
+    public void setFailFastThreshold(int failFastThreshold) { this.failFastThreshold = failFastThreshold; }
+    // Hold launches back while Tower's instance groups are more than this percentage busy, 0 launches right away
+    public void setMaxTowerLoad(int maxTowerLoad) { this.maxTowerLoad = maxTowerLoad; }
+    // Follow a job another build already launched with the exact same parameters instead of launching a new one
+    public void setCoalesceLaunches(Boolean coalesceLaunches) { this.coalesceLaunches = coalesceLaunches != null && coalesceLaunches; }
+    // Reuse the result of an identical check mode run from up to this many minutes ago, 0 always runs
+    public void setCheckResultCacheMinutes(int checkResultCacheMinutes) { this.checkResultCacheMinutes = checkResultCacheMinutes; }
+    // Poll Tower and process its output on the agent running the build instead of on the controller
+    public void setMonitorOnAgent(Boolean monitorOnAgent) { this.monitorOnAgent = monitorOnAgent != null && monitorOnAgent; }
+    // Milliseconds between two polls of Tower, only changed by the load tests to get through many short jobs
+    void setPollInterval(long pollInterval) { this.pollInterval = pollInterval; }
+
     public boolean runJobTemplate(
             PrintStream logger, String towerServer, String jobTemplate, String jobType, String extraVars, String limit,
             String jobTags, String skipJobTags, String inventory, String credential, boolean verbose,
@@ -28,20 +94,950 @@ public class AnsibleTowerRunner {
         if (verbose) {
             logger.println("Beginning Ansible Tower Run on " + towerServer);
         }
+        long deadline = getDeadline();
+        TowerTimeline runTimeline = new TowerTimeline(envVars.expand(jobTemplate));
+        runTimeline.begin(TowerTimeline.CONFIGURATION);
+        AnsibleTowerGlobalConfig globalConfig = AnsibleTowerGlobalConfig.get();
+        TowerTraceExporter traceExporter = globalConfig == null ? null : globalConfig.getTraceExporter();
+        if (traceExporter != null && traceExporter.isEnabled()) {
+            trace = new TowerTrace("ansibleTower " + runTimeline.getTitle());
+            trace.getRoot().setAttribute("tower.server", towerServer);
+            trace.getRoot().setAttribute("tower.template", runTimeline.getTitle());
+            trace.beginPhase(TowerTimeline.CONFIGURATION);
+            logger.println("Trace ID: " + trace.getTraceId());
+        }
+        File cassetteDirectory = globalConfig == null ? null : globalConfig.getCassetteRecordingDirectory();
+        if (cassetteDirectory != null) {
+            try {
+                cassette = TowerCassette.create(cassetteDirectory, runTimeline.getTitle());
+            } catch (IOException e) {
+                logger.println("WARNING: Unable to record the Tower requests: " + e.getMessage());
+            }
+        }
+        boolean successful = false;
+        try {
+            successful = runJobTemplate(
+                    logger, towerServer, jobTemplate, jobType, extraVars, limit, jobTags, skipJobTags, inventory,
+                    credential, verbose, importTowerLogs, removeColor, envVars, templateType, importWorkflowChildLogs,
+                    ws, run, towerResults, deadline, runTimeline
+            );
+            return successful;
+        } finally {
+            releaseSharedLaunches();
+            timeline = null;
+            runTimeline.end();
+            AnsibleTowerTimelineAction.record(run, runTimeline);
+            if (trace != null) {
+                if (towerResults.getProperty("JOB_ID") != null) {
+                    trace.getRoot().setAttribute("tower.job_id", towerResults.getProperty("JOB_ID"));
+                }
+                trace.getRoot().setAttribute("tower.result", successful ? "SUCCESS" : "FAILED");
+                if (!successful) {
+                    trace.getRoot().setError("The Tower run failed");
+                }
+                trace.finish();
+                traceExporter.export(trace);
+                trace = null;
+            }
+            if (cassette != null) {
+                String jobID = towerResults.getProperty("JOB_ID");
+                cassette.finish(templateType, jobID == null ? null : Integer.valueOf(jobID));
+                logger.println("Recorded " + cassette.getRequests() + " Tower requests to " + cassette.getFile());
+                cassette = null;
+            }
+        }
+    }
+
+    private boolean runJobTemplate(
+            PrintStream logger, String towerServer, String jobTemplate, String jobType, String extraVars, String limit,
+            String jobTags, String skipJobTags, String inventory, String credential, boolean verbose,
+            boolean importTowerLogs, boolean removeColor, EnvVars envVars, String templateType,
+            boolean importWorkflowChildLogs, FilePath ws, Run<?, ?> run, Properties towerResults, long deadline,
+            TowerTimeline runTimeline
+    ) {
+        TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+        if (!isValidTemplateType(logger, "", templateType)) {
+            return false;
+        }
+
+        if (shards > 1) {
+            return runShardedJobTemplate(
+                    logger, towerConfigToRunOn, jobTemplate, jobType, extraVars, limit, jobTags, skipJobTags,
+                    inventory, credential, verbose, importTowerLogs, removeColor, envVars, templateType, ws, run,
+                    towerResults, deadline
+            );
+        }
+
+        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector(trace);
+        runTimeline.setConnector(myTowerConnection);
+        myTowerConnection.setCassette(cassette);
+        timeline = runTimeline;
+        LaunchedJob job = launchTemplate(
+                logger, "", myTowerConnection, jobTemplate, jobType, extraVars, limit, jobTags, skipJobTags,
+                inventory, credential, templateType, verbose, envVars, deadline
+        );
+        if (job == null) {
+            return false;
+        }
+
+        List<LaunchedJob> jobs = Collections.singletonList(job);
+        boolean monitored;
+        if (monitorOnAgent && ws != null && ws.getChannel() != null) {
+            monitored = monitorJobOnAgent(logger, job, ws.getChannel(), importTowerLogs, removeColor, importWorkflowChildLogs, deadline);
+        } else {
+            monitored = monitorJobs(logger, jobs, importTowerLogs, removeColor, importWorkflowChildLogs, deadline);
+        }
+        if (!monitored) {
+            return false;
+        }
+        enterPhase(TowerTimeline.EXPORTS);
+        if (!injectExports(logger, verbose, jobs, envVars, ws, run)) {
+            return false;
+        }
+
+        boolean failed = !isJobSuccessful(logger, verbose, job);
+
+        towerResults.put("JOB_ID", Integer.toString(job.jobID));
+        towerResults.put("JOB_URL", job.jobURL);
+        towerResults.put("JOB_RESULT", failed ? "FAILED" : "SUCCESS");
+        if (job.pendingSeconds >= 0) {
+            towerResults.put("JOB_PENDING_SECONDS", Long.toString(job.pendingSeconds));
+            towerResults.put("JOB_RUNNING_SECONDS", Long.toString(job.runningSeconds));
+        }
+
+        return !failed;
+    }
+
+    /*
+        Launches all of the templates at the same time and then watches all of the jobs from a single loop.
+        towerResults gets one entry per template (in the order given) with the same keys as runJobTemplate.
+     */
+    public boolean runJobTemplates(
+            final PrintStream logger, String towerServer, List<AnsibleTowerTemplateSpec> templates, final boolean verbose,
+            boolean importTowerLogs, boolean removeColor, boolean importWorkflowChildLogs, final EnvVars envVars,
+            FilePath ws, Run<?, ?> run, List<Properties> towerResults
+    ) {
+        if (templates == null || templates.isEmpty()) {
+            logger.println("ERROR: No templates were given to run");
+            return false;
+        }
+        if (verbose) {
+            logger.println("Beginning Ansible Tower Run of " + templates.size() + " templates on " + towerServer);
+        }
+        final long deadline = getDeadline();
+
+        final TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+        for (int i = 0; i < templates.size(); i++) {
+            if (!isValidTemplateType(logger, getLabel(i, templates.get(i)), templates.get(i).getTemplateType())) {
+                return false;
+            }
+        }
+
+        try {
+            // Launch everything at once, each template gets its own connector so their logs and exports stay apart
+            List<Callable<LaunchedJob>> launches = new ArrayList<Callable<LaunchedJob>>();
+            for (int i = 0; i < templates.size(); i++) {
+                final AnsibleTowerTemplateSpec spec = templates.get(i);
+                final String label = getLabel(i, spec);
+                launches.add(() -> launchTemplate(
+                        logger, label, towerConfigToRunOn.getTowerConnector(), spec.getJobTemplate(), spec.getJobType(),
+                        spec.getExtraVars(), spec.getLimit(), spec.getJobTags(), spec.getSkipJobTags(), spec.getInventory(),
+                        spec.getCredential(), spec.getTemplateType(), verbose, envVars, deadline
+                ));
+            }
+            List<LaunchedJob> launched = launchConcurrently(logger, launches);
+            if (launched == null) {
+                return false;
+            }
+
+            List<LaunchedJob> jobs = new ArrayList<LaunchedJob>();
+            for (LaunchedJob job : launched) {
+                if (job != null) {
+                    jobs.add(job);
+                }
+            }
+            boolean failed = jobs.size() != launched.size();
+
+            if (!jobs.isEmpty()) {
+                if (!monitorJobs(logger, jobs, importTowerLogs, removeColor, importWorkflowChildLogs, deadline)) {
+                    return false;
+                }
+                if (!injectExports(logger, verbose, jobs, envVars, ws, run)) {
+                    return false;
+                }
+            }
+
+            for (LaunchedJob job : launched) {
+                Properties results = new Properties();
+                if (job == null) {
+                    results.put("JOB_RESULT", "FAILED");
+                } else {
+                    boolean jobFailed = !isJobSuccessful(logger, verbose, job);
+                    failed = failed || jobFailed;
+                    results.put("JOB_ID", Integer.toString(job.jobID));
+                    results.put("JOB_URL", job.jobURL);
+                    results.put("JOB_RESULT", jobFailed ? "FAILED" : "SUCCESS");
+                }
+                towerResults.add(results);
+            }
+
+            return !failed;
+        } finally {
+            releaseSharedLaunches();
+        }
+    }
+
+    /*
+        Relaunches the given jobs (a single ID or a comma separated list like a sharded JOB_ID) against their failed
+        hosts only. Jobs which did not fail are skipped. towerResults gets the IDs and URLs of the new jobs.
+     */
+    public boolean relaunchFailedHosts(
+            PrintStream logger, String towerServer, String jobIDs, boolean verbose, boolean importTowerLogs,
+            boolean removeColor, EnvVars envVars, FilePath ws, Run<?, ?> run, Properties towerResults
+    ) {
+        long deadline = getDeadline();
+
+        TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+
+        String expandedJobIDs = envVars.expand(jobIDs);
+        if (expandedJobIDs == null || expandedJobIDs.trim().equals("")) {
+            logger.println("ERROR: No job ID was given to relaunch");
+            return false;
+        }
+
+        // Every ID is checked before the first relaunch so a typo can't leave half of the jobs relaunched
+        List<Integer> previousJobIDs = new ArrayList<Integer>();
+        for (String previousJob : expandedJobIDs.split("[,\\s]+")) {
+            if (previousJob.equals("")) {
+                continue;
+            }
+            try {
+                previousJobIDs.add(Integer.parseInt(previousJob));
+            } catch (NumberFormatException nfe) {
+                logger.println("ERROR: " + previousJob + " is not a job ID");
+                return false;
+            }
+        }
+
+        List<LaunchedJob> jobs = new ArrayList<LaunchedJob>();
+        for (int previousJobID : previousJobIDs) {
+            // Requests to Tower can't be interrupted, an abort is noticed between two relaunches
+            if (Thread.interrupted()) {
+                logger.println("ERROR: Got interrupted while relaunching jobs, canceling the jobs which were relaunched");
+                cancelJobs(logger, jobs);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+            String label = "[relaunch of " + previousJobID + "] ";
+            try {
+                if (!myTowerConnection.isJobFailed(previousJobID, TowerConnector.JOB_TEMPLATE_TYPE)) {
+                    logger.println(label + "Job did not fail, nothing to relaunch");
+                    continue;
+                }
+                if (verbose) {
+                    logger.println(label + "Requesting tower to relaunch the failed hosts");
+                }
+                int myJobID = myTowerConnection.relaunchFailedHosts(previousJobID);
+                String jobURL = myTowerConnection.getJobURL(myJobID, TowerConnector.JOB_TEMPLATE_TYPE);
+                logger.println(label + "Template Job URL: " + jobURL);
+                jobs.add(new LaunchedJob(label, myTowerConnection, myJobID, TowerConnector.JOB_TEMPLATE_TYPE, jobURL));
+            } catch (AnsibleTowerException e) {
+                logger.println(label + "ERROR: Unable to relaunch job: " + e.getMessage());
+                if (!jobs.isEmpty()) {
+                    logger.println("Canceling the jobs which were already relaunched");
+                    cancelJobs(logger, jobs);
+                }
+                return false;
+            }
+        }
+
+        if (jobs.isEmpty()) {
+            towerResults.put("JOB_RESULT", "SUCCESS");
+            return true;
+        }
+
+        if (!monitorJobs(logger, jobs, importTowerLogs, removeColor, false, deadline)) {
+            return false;
+        }
+        if (!injectExports(logger, verbose, jobs, envVars, ws, run)) {
+            return false;
+        }
+
+        return collectResults(logger, verbose, jobs, false, towerResults);
+    }
+
+    /*
+        Waits for a job which was started somewhere else. Builds waiting for the same job share one monitor so the
+        events are only fetched from Tower once. The job is never canceled from here.
+     */
+    public boolean attachToJob(
+            PrintStream logger, String towerServer, String jobID, String templateType, boolean verbose,
+            boolean importTowerLogs, boolean removeColor, boolean importWorkflowChildLogs, EnvVars envVars,
+            FilePath ws, Run<?, ?> run, Properties towerResults
+    ) {
+        long deadline = getDeadline();
+
+        final TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+        if (!isValidTemplateType(logger, "", templateType)) {
+            return false;
+        }
+
+        String expandedJobID = envVars.expand(jobID);
+        int myJobID;
+        try {
+            myJobID = Integer.parseInt(expandedJobID == null ? "" : expandedJobID.trim());
+        } catch (NumberFormatException nfe) {
+            logger.println("ERROR: " + expandedJobID + " is not a job ID");
+            return false;
+        }
+
+        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+        String jobURL = myTowerConnection.getJobURL(myJobID, templateType);
+        logger.println("Attaching to Tower job " + myJobID);
+        logger.println("Template Job URL: " + jobURL);
+
+        String monitorKey = getMonitorKey(myTowerConnection, myJobID, templateType, removeColor, importWorkflowChildLogs);
+        TowerJobMonitor monitor = TowerJobMonitor.attach(
+                monitorKey, towerConfigToRunOn::getTowerConnector, myJobID, templateType, removeColor, importWorkflowChildLogs
+        );
+        if (verbose && monitor.getAttached() > 1) {
+            logger.println("Sharing the job output with " + (monitor.getAttached() - 1) + " other build(s) waiting for it");
+        }
+
+        TowerJobMonitor.Result result;
+        try {
+            result = monitor.follow(logger, importTowerLogs, deadline);
+        } catch (AnsibleTowerException e) {
+            logger.println("ERROR: Failed to follow the Tower job: " + e.getMessage());
+            return false;
+        } catch (InterruptedException ie) {
+            logger.println("ERROR: Got interrupted while waiting for the Tower job, it was not started by this build so it keeps running");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        myTowerConnection.getJenkinsExports().putAll(result.getExports());
+        LaunchedJob job = new LaunchedJob("", myTowerConnection, myJobID, templateType, jobURL);
+        if (!injectExports(logger, verbose, Collections.singletonList(job), envVars, ws, run)) {
+            return false;
+        }
+
+        if (result.isSuccessful()) {
+            if (verbose) {
+                logger.println("Tower completed the requested job");
+            }
+        } else {
+            logger.println("Tower failed to complete the requested job");
+        }
+        towerResults.put("JOB_ID", Integer.toString(myJobID));
+        towerResults.put("JOB_URL", jobURL);
+        towerResults.put("JOB_RESULT", result.isSuccessful() ? "SUCCESS" : "FAILED");
+        return result.isSuccessful();
+    }
+
+    /*
+        Starts all of the inventory source syncs at once and waits for them with one status request per poll.
+        Stops waiting as soon as one of them fails, the others are left to finish in Tower. If one of them can't be
+        started (or we are interrupted while starting them) the ones which were already started are canceled.
+     */
+    public boolean syncInventorySources(
+            PrintStream logger, String towerServer, String inventorySources, boolean verbose, boolean importTowerLogs,
+            boolean removeColor, EnvVars envVars, Properties towerResults
+    ) {
+        long deadline = getDeadline();
+
+        TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+
+        String expandedSources = envVars.expand(inventorySources);
+        List<String> sources = new ArrayList<String>();
+        if (expandedSources != null) {
+            for (String source : expandedSources.split("\\s*[,\\n]\\s*")) {
+                if (!source.trim().equals("") && !sources.contains(source.trim())) {
+                    sources.add(source.trim());
+                }
+            }
+        }
+        if (sources.isEmpty()) {
+            logger.println("ERROR: No inventory sources were given to sync");
+            return false;
+        }
+
+        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+        myTowerConnection.setLogTowerEvents(importTowerLogs);
+        myTowerConnection.setJenkinsLogger(logger);
+        myTowerConnection.setRemoveColor(removeColor);
+
+        // The updates are quick to start so we just start them one after the other, it is the syncs that take time
+        LinkedHashMap<Integer, String> updates = new LinkedHashMap<Integer, String>();
+        for (String source : sources) {
+            // Requests to Tower can't be interrupted, an abort is noticed between two of them
+            if (Thread.interrupted()) {
+                return abortInventoryUpdates(logger, myTowerConnection, updates.keySet(), updates);
+            }
+            try {
+                int updateID = myTowerConnection.updateInventorySource(source);
+                updates.put(updateID, source);
+                if (verbose) {
+                    logger.println("[" + source + "] Started inventory update " + updateID);
+                }
+            } catch (AnsibleTowerException e) {
+                if (Thread.interrupted()) {
+                    return abortInventoryUpdates(logger, myTowerConnection, updates.keySet(), updates);
+                }
+                logger.println("[" + source + "] ERROR: Unable to start the inventory sync: " + e.getMessage());
+                if (!updates.isEmpty()) {
+                    logger.println("Canceling the inventory syncs which were already started");
+                    cancelInventoryUpdates(logger, myTowerConnection, updates.keySet(), updates);
+                }
+                return false;
+            }
+        }
+        logger.println("Syncing " + updates.size() + " inventory source(s)");
+
+        List<Integer> running = new ArrayList<Integer>(updates.keySet());
+        boolean failed = false;
+        boolean waitingForTower = false;
+        while (!running.isEmpty() && !failed) {
+            HashMap<Integer, JSONObject> statuses;
+            try {
+                statuses = myTowerConnection.getInventoryUpdateStatuses(running);
+                waitingForTower = false;
+            } catch (AnsibleTowerNotResponding e) {
+                // The syncs keep running while Tower is unreachable, ask again until the run timeout
+                if (!waitingForTower) {
+                    logger.println("WARNING: " + e.getMessage() + ", the inventory syncs keep running in Tower, waiting for it to respond");
+                    waitingForTower = true;
+                }
+                statuses = new HashMap<Integer, JSONObject>();
+            } catch (AnsibleTowerException e) {
+                if (Thread.interrupted()) {
+                    return abortInventoryUpdates(logger, myTowerConnection, running, updates);
+                }
+                logger.println("ERROR: Failed to get the inventory update status from Tower: " + e.getMessage());
+                return false;
+            }
+
+            for (Integer updateID : new ArrayList<Integer>(running)) {
+                JSONObject status = statuses.get(updateID);
+                if (status == null || !TowerConnector.isFinished(status)) {
+                    continue;
+                }
+                running.remove(updateID);
+                String label = "[" + updates.get(updateID) + "] ";
+                myTowerConnection.setLogPrefix(label);
+                try {
+                    myTowerConnection.logInventorySync(updateID);
+                } catch (AnsibleTowerException e) {
+                    logger.println(label + "ERROR: Failed to get the inventory sync output: " + e.getMessage());
+                }
+                logger.println(label + "Inventory sync " + status.optString("status"));
+                if (status.optBoolean("failed", false)) {
+                    failed = true;
+                }
+            }
+            if (running.isEmpty() || failed) {
+                break;
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                logger.println("ERROR: Inventory syncs did not complete within the run timeout of " + runTimeout + " minute(s), canceling them");
+                cancelInventoryUpdates(logger, myTowerConnection, running, updates);
+                return false;
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException ie) {
+                return abortInventoryUpdates(logger, myTowerConnection, running, updates);
+            }
+        }
+        for (Integer updateID : running) {
+            logger.println("[" + updates.get(updateID) + "] Inventory update " + updateID + " is still running in Tower");
+        }
+
+        List<String> updateIDs = new ArrayList<String>();
+        for (Integer updateID : updates.keySet()) {
+            updateIDs.add(Integer.toString(updateID));
+        }
+        towerResults.put("JOB_ID", String.join(",", updateIDs));
+        towerResults.put("JOB_RESULT", failed ? "FAILED" : "SUCCESS");
+        if (failed) {
+            logger.println("Tower failed to sync the inventory sources");
+        }
+        return !failed;
+    }
+
+    private boolean abortInventoryUpdates(PrintStream logger, TowerConnector myTowerConnection, Collection<Integer> running, Map<Integer, String> updates) {
+        logger.println("ERROR: Got interrupted, canceling the running inventory syncs");
+        cancelInventoryUpdates(logger, myTowerConnection, running, updates);
+        Thread.currentThread().interrupt();
+        return false;
+    }
+
+    private void cancelInventoryUpdates(PrintStream logger, TowerConnector myTowerConnection, Collection<Integer> running, Map<Integer, String> updates) {
+        for (Integer updateID : running) {
+            try {
+                myTowerConnection.cancelInventoryUpdate(updateID);
+            } catch (AnsibleTowerException e) {
+                logger.println("[" + updates.get(updateID) + "] ERROR: Failed to cancel the inventory sync: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+        Brings the project up to date without redundant SCM updates:
+        if the project is already at the wanted revision nothing is started, if an update is already running it is
+        followed (unless a revision is wanted, it may be for an older one), and builds in this Jenkins asking at the
+        same time share one update and one monitor. The step fails if the update did not bring the wanted revision.
+     */
+    public boolean syncProject(
+            PrintStream logger, String towerServer, String project, String scmRevision, boolean verbose,
+            boolean importTowerLogs, boolean removeColor, EnvVars envVars, Properties towerResults
+    ) {
+        long deadline = getDeadline();
+
+        final TowerInstallation towerConfigToRunOn = getTowerInstallation(logger, towerServer);
+        if (towerConfigToRunOn == null) {
+            return false;
+        }
+        String expandedProject = envVars.expand(project);
+        String expandedRevision = envVars.expand(scmRevision);
+        if (expandedRevision != null && expandedRevision.trim().equals("")) {
+            expandedRevision = null;
+        }
+
+        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+        JSONObject towerProject;
+        try {
+            towerProject = myTowerConnection.getProject(expandedProject);
+        } catch (AnsibleTowerException e) {
+            logger.println("ERROR: " + e.getMessage());
+            return false;
+        }
+        int projectID = towerProject.getInt("id");
+
+        String launchKey = myTowerConnection.getLaunchKey(Arrays.asList(
+                TowerConnector.PROJECT_UPDATE_TYPE, Integer.toString(projectID), expandedRevision
+        ));
+        int updateID = -1;
+        TowerLaunchCoalescer.Launch sharedUpdate = null;
+        try {
+            while (updateID < 0) {
+                sharedUpdate = TowerLaunchCoalescer.claim(launchKey);
+                if (sharedUpdate != null) {
+                    // We decide for everyone asking for this project
+                    try {
+                        updateID = startOrFindProjectUpdate(logger, verbose, myTowerConnection, projectID, expandedRevision);
+                    } catch (AnsibleTowerException e) {
+                        sharedUpdate.failed();
+                        logger.println("ERROR: Unable to update the project: " + e.getMessage());
+                        return false;
+                    }
+                    if (updateID == 0) {
+                        sharedUpdate.notNeeded();
+                        return noProjectUpdate(expandedRevision, towerResults);
+                    }
+                    sharedUpdate.launched(updateID, myTowerConnection.getProjectUpdateURL(updateID));
+                    break;
+                }
+                TowerLaunchCoalescer.Launch otherUpdate = TowerLaunchCoalescer.find(launchKey);
+                if (otherUpdate != null && otherUpdate.follow(deadline)) {
+                    sharedUpdate = otherUpdate;
+                    updateID = otherUpdate.getJobID();
+                    logger.println("Following project update " + updateID + " which another build is waiting for");
+                } else if (otherUpdate != null && otherUpdate.isNotNeeded()) {
+                    logger.println("Another build found the project already at revision " + expandedRevision + ", no update needed");
+                    return noProjectUpdate(expandedRevision, towerResults);
+                } else if (System.currentTimeMillis() > deadline) {
+                    logger.println("ERROR: Run timeout of " + runTimeout + " minute(s) reached before the project could be updated");
+                    return false;
+                }
+            }
+
+            String updateURL = myTowerConnection.getProjectUpdateURL(updateID);
+            logger.println("Project Update URL: " + updateURL);
+
+            String monitorKey = myTowerConnection.getLaunchKey(Arrays.asList(
+                    "attach", TowerConnector.PROJECT_UPDATE_TYPE, Integer.toString(updateID), Boolean.toString(removeColor)
+            ));
+            TowerJobMonitor monitor = TowerJobMonitor.attach(
+                    monitorKey, towerConfigToRunOn::getTowerConnector, updateID, TowerConnector.PROJECT_UPDATE_TYPE, removeColor, false
+            );
+            TowerJobMonitor.Result result;
+            try {
+                result = monitor.follow(logger, importTowerLogs, deadline);
+            } catch (AnsibleTowerException e) {
+                logger.println("ERROR: Failed to follow the project update: " + e.getMessage());
+                return false;
+            }
+
+            towerResults.put("JOB_ID", Integer.toString(updateID));
+            towerResults.put("JOB_URL", updateURL);
+            towerResults.put("JOB_RESULT", result.isSuccessful() ? "SUCCESS" : "FAILED");
+            if (!result.isSuccessful()) {
+                logger.println("Tower failed to update the project");
+                return false;
+            }
+            String revision;
+            try {
+                revision = myTowerConnection.getProject(Integer.toString(projectID)).optString("scm_revision", "");
+            } catch (AnsibleTowerException e) {
+                if (expandedRevision != null) {
+                    logger.println("ERROR: Unable to check the project revision after the update: " + e.getMessage());
+                    towerResults.put("JOB_RESULT", "FAILED");
+                    return false;
+                }
+                logger.println("[WARNING]: Unable to read the project revision after the update: " + e.getMessage());
+                return true;
+            }
+            towerResults.put("SCM_REVISION", revision);
+            logger.println("Project is at revision " + revision);
+            if (expandedRevision != null && !isAtRevision(revision, expandedRevision)) {
+                logger.println("ERROR: The project was updated to revision " + revision + " instead of the expected " + expandedRevision);
+                towerResults.put("JOB_RESULT", "FAILED");
+                return false;
+            }
+            return true;
+        } catch (InterruptedException ie) {
+            logger.println("ERROR: Got interrupted while waiting for the project update, it keeps running in Tower");
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (sharedUpdate != null) {
+                sharedUpdate.finished();
+            }
+        }
+    }
+
+    /*
+        Returns 0 if the project is already at the wanted revision, the ID of a running update or the ID of a new one
+     */
+    private int startOrFindProjectUpdate(PrintStream logger, boolean verbose, TowerConnector myTowerConnection, int projectID, String wantedRevision) throws AnsibleTowerException {
+        // Load the project by ID so we see its current state
+        JSONObject towerProject = myTowerConnection.getProject(Integer.toString(projectID));
+        String currentRevision = towerProject.optString("scm_revision", "");
+        String status = towerProject.optString("status", "");
+
+        JSONObject summaryFields = towerProject.optJSONObject("summary_fields");
+        JSONObject currentUpdate = summaryFields == null ? null : summaryFields.optJSONObject("current_update");
+        if (currentUpdate != null && currentUpdate.optInt("id", 0) > 0) {
+            // Tower does not say which revision a running update goes to, it may have started before the one we want was pushed
+            if (wantedRevision == null) {
+                logger.println("Project update " + currentUpdate.getInt("id") + " is already running, following it instead of starting another one");
+                return currentUpdate.getInt("id");
+            }
+            logger.println("Project update " + currentUpdate.getInt("id") + " is already running but may not bring revision " + wantedRevision + ", requesting another update");
+            return myTowerConnection.updateProject(projectID);
+        }
+
+        if (wantedRevision != null && isAtRevision(currentRevision, wantedRevision) && !status.equalsIgnoreCase("failed") && !status.equalsIgnoreCase("error")) {
+            logger.println("Project is already at revision " + currentRevision + ", no update needed");
+            return 0;
+        }
+
+        if (verbose) {
+            logger.println("Project is at revision " + (currentRevision.equals("") ? "(unknown)" : currentRevision) + ", requesting an update");
+        }
+        return myTowerConnection.updateProject(projectID);
+    }
+
+    // The project was already where it should be, there is no update to report but the results are there all the same
+    private static boolean noProjectUpdate(String revision, Properties towerResults) {
+        towerResults.put("JOB_ID", "");
+        towerResults.put("JOB_URL", "");
+        towerResults.put("SCM_REVISION", revision);
+        towerResults.put("JOB_RESULT", "SUCCESS");
+        return true;
+    }
+
+    // The wanted revision may be a short commit ID, like abc1234 for the abc1234def... Tower reports
+    private static boolean isAtRevision(String revision, String wantedRevision) {
+        return revision != null && revision.toLowerCase().startsWith(wantedRevision.toLowerCase());
+    }
+
+    /*
+        Puts the comma separated IDs and URLs of the jobs into towerResults along with the combined result
+     */
+    private boolean collectResults(PrintStream logger, boolean verbose, List<LaunchedJob> jobs, boolean failed, Properties towerResults) {
+        List<String> jobIDs = new ArrayList<String>();
+        List<String> jobURLs = new ArrayList<String>();
+        for (LaunchedJob job : jobs) {
+            if (!isJobSuccessful(logger, verbose, job)) {
+                logger.println(job.label + "Job failed");
+                failed = true;
+            }
+            jobIDs.add(Integer.toString(job.jobID));
+            jobURLs.add(job.jobURL);
+        }
+
+        towerResults.put("JOB_ID", String.join(",", jobIDs));
+        towerResults.put("JOB_URL", String.join(",", jobURLs));
+        towerResults.put("JOB_RESULT", failed ? "FAILED" : "SUCCESS");
+
+        return !failed;
+    }
+
+    /*
+        Splits the hosts into shards and runs the template once per shard (with the shard as the limit).
+        The jobs are monitored together, towerResults gets the job IDs and URLs of all shards comma separated.
+     */
+    private boolean runShardedJobTemplate(
+            final PrintStream logger, final TowerInstallation towerConfigToRunOn, final String jobTemplate,
+            final String jobType, final String extraVars, String limit, final String jobTags, final String skipJobTags,
+            final String inventory, final String credential, final boolean verbose, boolean importTowerLogs,
+            boolean removeColor, final EnvVars envVars, final String templateType, FilePath ws, Run<?, ?> run,
+            Properties towerResults, final long deadline
+    ) {
+        if (templateType.equalsIgnoreCase(TowerConnector.WORKFLOW_TEMPLATE_TYPE)) {
+            logger.println("ERROR: Sharding can only be used with job templates");
+            return false;
+        }
+        if (limit != null && !limit.equals("")) {
+            logger.println("ERROR: A limit can not be combined with shards, list the hosts to shard in Shard Hosts instead");
+            return false;
+        }
+
+        // Without the prompt Tower ignores the limit and every shard would run against all of the hosts
+        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+        JSONObject template;
+        try {
+            template = myTowerConnection.getJobTemplate(envVars.expand(jobTemplate), TowerConnector.JOB_TEMPLATE_TYPE);
+        } catch (AnsibleTowerException e) {
+            logger.println("ERROR: Unable to lookup job template " + e.getMessage());
+            return false;
+        }
+        if (!template.containsKey("ask_limit_on_launch") || !template.getBoolean("ask_limit_on_launch")) {
+            logger.println("ERROR: Sharding needs prompt for limit on launch to be set in the tower job template, without it every shard would run against all hosts");
+            return false;
+        }
 
+        List<String> hosts;
+        try {
+            hosts = getShardableHosts(myTowerConnection, template, inventory, envVars);
+        } catch (AnsibleTowerException e) {
+            logger.println("ERROR: Unable to get the hosts to shard: " + e.getMessage());
+            return false;
+        }
+        if (hosts.isEmpty()) {
+            logger.println("ERROR: There are no hosts to shard");
+            return false;
+        }
+
+        List<List<String>> hostShards = splitIntoShards(hosts, shards);
+        logger.println("Splitting " + hosts.size() + " hosts into " + hostShards.size() + " shards");
+
+        List<Callable<LaunchedJob>> launches = new ArrayList<Callable<LaunchedJob>>();
+        for (int i = 0; i < hostShards.size(); i++) {
+            final String label = "[shard " + (i + 1) + "/" + hostShards.size() + "] ";
+            final String shardLimit = String.join(",", hostShards.get(i));
+            if (verbose) {
+                logger.println(label + "Limiting to " + hostShards.get(i).size() + " hosts");
+            }
+            launches.add(() -> launchTemplate(
+                    logger, label, towerConfigToRunOn.getTowerConnector(), jobTemplate, jobType, extraVars, shardLimit,
+                    jobTags, skipJobTags, inventory, credential, templateType, verbose, envVars, deadline
+            ));
+        }
+        List<LaunchedJob> launched = launchConcurrently(logger, launches);
+        if (launched == null) {
+            return false;
+        }
+
+        List<LaunchedJob> jobs = new ArrayList<LaunchedJob>();
+        for (LaunchedJob job : launched) {
+            if (job != null) {
+                jobs.add(job);
+            }
+        }
+        boolean failed = jobs.size() != launched.size();
+        if (jobs.isEmpty()) {
+            return false;
+        }
+
+        if (!monitorJobs(logger, jobs, importTowerLogs, removeColor, false, deadline)) {
+            return false;
+        }
+        if (!injectExports(logger, verbose, jobs, envVars, ws, run)) {
+            return false;
+        }
+
+        return collectResults(logger, verbose, jobs, failed, towerResults);
+    }
+
+    private List<String> getShardableHosts(TowerConnector myTowerConnection, JSONObject template, String inventory, EnvVars envVars) throws AnsibleTowerException {
+        List<String> hosts = new ArrayList<String>();
+        String expandedShardHosts = envVars.expand(shardHosts);
+        if (expandedShardHosts != null && !expandedShardHosts.trim().equals("")) {
+            for (String host : expandedShardHosts.split("[,\\s]+")) {
+                if (!host.equals("") && !hosts.contains(host)) {
+                    hosts.add(host);
+                }
+            }
+            return hosts;
+        }
+
+        // No hosts given so use everything in the inventory the job will run against
+        String expandedInventory = envVars.expand(inventory);
+        if (expandedInventory == null || expandedInventory.equals("")) {
+            if (!template.containsKey("inventory") || template.get("inventory") instanceof JSONNull) {
+                throw new AnsibleTowerException("The job template does not have an inventory");
+            }
+            expandedInventory = template.getString("inventory");
+        }
+        return myTowerConnection.getInventoryHosts(expandedInventory);
+    }
+
+    /*
+        Splits the hosts into (at most) numberOfShards contiguous blocks whose sizes differ by at most one
+     */
+    static List<List<String>> splitIntoShards(List<String> hosts, int numberOfShards) {
+        List<List<String>> hostShards = new ArrayList<List<String>>();
+        int shardCount = Math.max(1, Math.min(numberOfShards, hosts.size()));
+        int start = 0;
+        for (int i = 0; i < shardCount; i++) {
+            int size = hosts.size() / shardCount + (i < hosts.size() % shardCount ? 1 : 0);
+            hostShards.add(new ArrayList<String>(hosts.subList(start, start + size)));
+            start += size;
+        }
+        return hostShards;
+    }
+
+    /*
+        Runs the launches at the same time, the results are in the same order as the launches.
+        Returns null (after logging why) if we were interrupted or a launch failed unexpectedly, the jobs which were
+        launched anyway are canceled then.
+     */
+    private List<LaunchedJob> launchConcurrently(PrintStream logger, List<Callable<LaunchedJob>> launches) {
+        List<LaunchedJob> launched = new ArrayList<LaunchedJob>();
+        ExecutorService launcher = Executors.newFixedThreadPool(Math.min(launches.size(), MAX_PARALLEL_LAUNCHES));
+        List<Future<LaunchedJob>> futures = new ArrayList<Future<LaunchedJob>>();
+        // Set when we give up, launches which have not started by then are skipped
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        try {
+            for (Callable<LaunchedJob> launch : launches) {
+                futures.add(launcher.submit(() -> stopped.get() ? null : launch.call()));
+            }
+            for (Future<LaunchedJob> launch : futures) {
+                launched.add(launch.get());
+            }
+        } catch (InterruptedException ie) {
+            logger.println("ERROR: Got interrupted while launching templates, canceling the jobs which were launched");
+            stopped.set(true);
+            cancelLaunches(logger, launcher, futures);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ee) {
+            logger.println("ERROR: Unable to launch templates: " + ee.getCause());
+            stopped.set(true);
+            cancelLaunches(logger, launcher, futures);
+            return null;
+        } finally {
+            launcher.shutdown();
+        }
+        return launched;
+    }
+
+    /*
+        Waits (for a bounded time) for the launches which already started and cancels the jobs they started.
+        They are not interrupted: a launch request which is on its way can't be taken back, we need its job ID.
+     */
+    private void cancelLaunches(PrintStream logger, ExecutorService launcher, List<Future<LaunchedJob>> futures) {
+        launcher.shutdown();
+        boolean interrupted = false;
+        try {
+            if (!launcher.awaitTermination(CANCEL_WAIT, TimeUnit.MILLISECONDS)) {
+                logger.println("WARNING: Not all of the launches finished, check Tower for jobs which were started anyway");
+            }
+        } catch (InterruptedException ie) {
+            interrupted = true;
+        }
+        List<LaunchedJob> launched = new ArrayList<LaunchedJob>();
+        for (Future<LaunchedJob> launch : futures) {
+            if (!launch.isDone()) {
+                continue;
+            }
+            try {
+                LaunchedJob job = launch.get();
+                if (job != null) {
+                    launched.add(job);
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                // This launch did not start a job
+            }
+        }
+        cancelJobs(logger, launched);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String getLabel(int index, AnsibleTowerTemplateSpec spec) {
+        return "[" + (index + 1) + ": " + spec.getJobTemplate() + "] ";
+    }
+
+    private void enterPhase(String phase) {
+        if (timeline != null) {
+            timeline.begin(phase);
+            if (trace != null) {
+                trace.beginPhase(phase);
+            }
+        }
+    }
+
+    private long getDeadline() {
+        if (runTimeout > 0) {
+            return System.currentTimeMillis() + runTimeout * 60000L;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private TowerInstallation getTowerInstallation(PrintStream logger, String towerServer) {
         AnsibleTowerGlobalConfig myConfig = new AnsibleTowerGlobalConfig();
         TowerInstallation towerConfigToRunOn = myConfig.getTowerInstallationByName(towerServer);
         if (towerConfigToRunOn == null) {
             logger.println("ERROR: Ansible tower server " + towerServer + " does not exist in Ansible Tower configuration");
-            return false;
         }
+        return towerConfigToRunOn;
+    }
 
+    private boolean isValidTemplateType(PrintStream logger, String label, String templateType) {
         if (templateType == null || (!templateType.equalsIgnoreCase(TowerConnector.WORKFLOW_TEMPLATE_TYPE) && !templateType.equalsIgnoreCase(TowerConnector.JOB_TEMPLATE_TYPE))) {
-            logger.println("ERROR: Template type " + templateType + " was invalid");
+            logger.println(label + "ERROR: Template type " + templateType + " was invalid");
             return false;
         }
+        return true;
+    }
 
-        TowerConnector myTowerConnection = towerConfigToRunOn.getTowerConnector();
+    /*
+        Expands the parameters, looks up the template and asks Tower to run it.
+        Returns null (after logging why) if the template could not be launched.
+     */
+    private LaunchedJob launchTemplate(
+            PrintStream logger, String label, TowerConnector myTowerConnection, String jobTemplate, String jobType,
+            String extraVars, String limit, String jobTags, String skipJobTags, String inventory, String credential,
+            String templateType, boolean verbose, EnvVars envVars, long deadline
+    ) {
+        // The hosts of a workflow fail in its child jobs, we only count them once a child has finished
+        if (failFastThreshold > 0 && templateType.equalsIgnoreCase(TowerConnector.WORKFLOW_TEMPLATE_TYPE)) {
+            logger.println(label + "ERROR: The fail fast threshold can only be used with job templates, not with workflows");
+            return null;
+        }
 
         // If they came in empty then set them to null so that we don't pass a nothing through
         if (jobTemplate != null && jobTemplate.equals("")) {
@@ -77,25 +1073,25 @@ public class AnsibleTowerRunner {
 
         if (verbose) {
             if (expandedJobTemplate != null && !expandedJobTemplate.equals(jobTemplate)) {
-                logger.println("Expanded job template to " + expandedJobTemplate);
+                logger.println(label + "Expanded job template to " + expandedJobTemplate);
             }
             if (expandedExtraVars != null && !expandedExtraVars.equals(extraVars)) {
-                logger.println("Expanded extra vars to " + expandedExtraVars);
+                logger.println(label + "Expanded extra vars to " + expandedExtraVars);
             }
             if (expandedLimit != null && !expandedLimit.equals(limit)) {
-                logger.println("Expanded limit to " + expandedLimit);
+                logger.println(label + "Expanded limit to " + expandedLimit);
             }
             if (expandedJobTags != null && !expandedJobTags.equals(jobTags)) {
-                logger.println("Expanded job tags to " + expandedJobTags);
+                logger.println(label + "Expanded job tags to " + expandedJobTags);
             }
             if (expandedSkipJobTags != null && !expandedSkipJobTags.equals(skipJobTags)) {
-                logger.println("Expanded skip job tags to " + expandedSkipJobTags);
+                logger.println(label + "Expanded skip job tags to " + expandedSkipJobTags);
             }
             if (expandedInventory != null && !expandedInventory.equals(inventory)) {
-                logger.println("Expanded inventory to " + expandedInventory);
+                logger.println(label + "Expanded inventory to " + expandedInventory);
             }
             if (expandedCredential != null && !expandedCredential.equals(credential)) {
-                logger.println("Expanded credentials to " + expandedCredential);
+                logger.println(label + "Expanded credentials to " + expandedCredential);
             }
         }
 
@@ -112,35 +1108,36 @@ public class AnsibleTowerRunner {
         }
 
         // Get the job template.
+        enterPhase(TowerTimeline.TEMPLATE_LOOKUP);
         JSONObject template = null;
         try {
             template = myTowerConnection.getJobTemplate(expandedJobTemplate, templateType);
         } catch (AnsibleTowerException e) {
-            logger.println("ERROR: Unable to lookup job template " + e.getMessage());
-            return false;
+            logger.println(label + "ERROR: Unable to lookup job template " + e.getMessage());
+            return null;
         }
 
 
         if (jobType != null && template.containsKey("ask_job_type_on_launch") && !template.getBoolean("ask_job_type_on_launch")) {
-            logger.println("[WARNING]: Job type defined but prompt for job type on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Job type defined but prompt for job type on launch is not set in tower job");
         }
         if (expandedExtraVars != null && template.containsKey("ask_variables_on_launch") && !template.getBoolean("ask_variables_on_launch")) {
-            logger.println("[WARNING]: Extra variables defined but prompt for variables on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Extra variables defined but prompt for variables on launch is not set in tower job");
         }
         if (expandedLimit != null && template.containsKey("ask_limit_on_launch") && !template.getBoolean("ask_limit_on_launch")) {
-            logger.println("[WARNING]: Limit defined but prompt for limit on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Limit defined but prompt for limit on launch is not set in tower job");
         }
         if (expandedJobTags != null && template.containsKey("ask_tags_on_launch") && !template.getBoolean("ask_tags_on_launch")) {
-            logger.println("[WARNING]: Job Tags defined but prompt for tags on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Job Tags defined but prompt for tags on launch is not set in tower job");
         }
         if (expandedSkipJobTags != null && template.containsKey("ask_skip_tags_on_launch") && !template.getBoolean("ask_skip_tags_on_launch")) {
-            logger.println("[WARNING]: Skip Job Tags defined but prompt for tags on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Skip Job Tags defined but prompt for tags on launch is not set in tower job");
         }
         if (expandedInventory != null && template.containsKey("ask_inventory_on_launch") && !template.getBoolean("ask_inventory_on_launch")) {
-            logger.println("[WARNING]: Inventory defined but prompt for inventory on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Inventory defined but prompt for inventory on launch is not set in tower job");
         }
         if (expandedCredential != null && template.containsKey("ask_credential_on_launch") && !template.getBoolean("ask_credential_on_launch")) {
-            logger.println("[WARNING]: Credential defined but prompt for credential on launch is not set in tower job");
+            logger.println(label + "[WARNING]: Credential defined but prompt for credential on launch is not set in tower job");
         }
         // Here are some more options we may want to use someday
         //    "ask_diff_mode_on_launch": false,
@@ -148,62 +1145,635 @@ public class AnsibleTowerRunner {
         //    "ask_job_type_on_launch": false,
         //    "ask_verbosity_on_launch": false,
 
+        if (System.currentTimeMillis() > deadline) {
+            logger.println(label + "ERROR: Run timeout of " + runTimeout + " minute(s) reached before the template could be launched");
+            return null;
+        }
+
+        String resultCacheKey = null;
+        if (checkResultCacheMinutes > 0 && "check".equalsIgnoreCase(jobType) && templateType.equalsIgnoreCase(TowerConnector.JOB_TEMPLATE_TYPE)) {
+            try {
+                String revision = "";
+                if (template.optInt("project", 0) > 0) {
+                    revision = myTowerConnection.getProjectRevision(template.getInt("project"));
+                }
+                if (revision == null) {
+                    logger.println(label + "Not using the check result cache, the project updates on launch so the revision the check runs is not known yet");
+                } else {
+                    resultCacheKey = myTowerConnection.getLaunchKey(Arrays.asList(
+                            "check", template.getString("id"), revision, expandedExtraVars, expandedLimit, expandedJobTags,
+                            expandedSkipJobTags, expandedInventory, expandedCredential
+                    ));
+                    TowerCheckResultCache.Entry cached = TowerCheckResultCache.get().get(resultCacheKey, checkResultCacheMinutes * 60000L);
+                    if (cached != null) {
+                        logger.println(label + "Using the result of check job " + cached.getJobID() + " from " +
+                                ((System.currentTimeMillis() - cached.getStoredAt()) / 60000) + " minute(s) ago, the inputs and project revision " +
+                                revision + " are the same");
+                        logger.println(label + "Template Job URL: " + cached.getJobURL());
+                        myTowerConnection.getJenkinsExports().putAll(cached.getExports());
+                        LaunchedJob job = new LaunchedJob(label, myTowerConnection, cached.getJobID(), templateType, cached.getJobURL());
+                        job.cachedResult = cached.isSuccessful();
+                        return job;
+                    }
+                }
+            } catch (AnsibleTowerException e) {
+                logger.println(label + "[WARNING]: Unable to look for an earlier check result, running the check: " + e.getMessage());
+                resultCacheKey = null;
+            }
+        }
+
+        TowerLaunchCoalescer.Launch sharedLaunch = null;
+        if (coalesceLaunches) {
+            String launchKey = myTowerConnection.getLaunchKey(Arrays.asList(
+                    templateType.toLowerCase(), template.getString("id"), jobType, expandedExtraVars, expandedLimit,
+                    expandedJobTags, expandedSkipJobTags, expandedInventory, expandedCredential
+            ));
+            while (sharedLaunch == null) {
+                sharedLaunch = TowerLaunchCoalescer.claim(launchKey);
+                if (sharedLaunch != null) {
+                    break;
+                }
+                TowerLaunchCoalescer.Launch otherLaunch = TowerLaunchCoalescer.find(launchKey);
+                if (otherLaunch == null) {
+                    continue;
+                }
+                try {
+                    if (otherLaunch.follow(deadline)) {
+                        logger.println(label + "Following Tower job " + otherLaunch.getJobID() + " which another build launched with the same parameters");
+                        logger.println(label + "Template Job URL: " + otherLaunch.getJobURL());
+                        LaunchedJob job = new LaunchedJob(label, myTowerConnection, otherLaunch.getJobID(), templateType, otherLaunch.getJobURL());
+                        job.sharedLaunch = otherLaunch;
+                        job.follower = true;
+                        sharedLaunches.add(otherLaunch);
+                        job.resultCacheKey = resultCacheKey;
+                        return job;
+                    }
+                } catch (InterruptedException ie) {
+                    logger.println(label + "ERROR: Got interrupted while waiting for another build to launch the template");
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    logger.println(label + "ERROR: Run timeout of " + runTimeout + " minute(s) reached before the template could be launched");
+                    return null;
+                }
+            }
+        }
+
+        LaunchedJob job = null;
+        try {
+            job = submitTemplate(
+                    logger, label, myTowerConnection, template, jobType, expandedJobTemplate, expandedExtraVars,
+                    expandedLimit, expandedJobTags, expandedSkipJobTags, expandedInventory, expandedCredential,
+                    templateType, verbose, deadline
+            );
+            if (job != null) {
+                job.resultCacheKey = resultCacheKey;
+            }
+        } finally {
+            // Whatever happened, the builds waiting for this launch must not wait for it forever
+            if (sharedLaunch != null) {
+                if (job == null) {
+                    sharedLaunch.failed();
+                } else {
+                    sharedLaunch.launched(job.jobID, job.jobURL);
+                    job.sharedLaunch = sharedLaunch;
+                    sharedLaunches.add(sharedLaunch);
+                }
+            }
+        }
+        return job;
+    }
+
+    private LaunchedJob submitTemplate(
+            PrintStream logger, String label, TowerConnector myTowerConnection, JSONObject template, String jobType,
+            String expandedJobTemplate, String expandedExtraVars, String expandedLimit, String expandedJobTags,
+            String expandedSkipJobTags, String expandedInventory, String expandedCredential, String templateType,
+            boolean verbose, long deadline
+    ) {
+        long admissionWait = 0;
+        if (maxTowerLoad > 0) {
+            enterPhase(TowerTimeline.CAPACITY_WAIT);
+            if (verbose) {
+                logger.println(label + "Waiting until Tower is below " + maxTowerLoad + "% of its capacity");
+            }
+            try {
+                admissionWait = myTowerConnection.awaitCapacity(maxTowerLoad, deadline);
+            } catch (AnsibleTowerAdmissionUnavailable e) {
+                logger.println(label + "WARNING: " + e.getMessage() + ", launching without waiting for capacity");
+            } catch (AnsibleTowerException e) {
+                logger.println(label + "ERROR: Unable to launch the template: " + e.getMessage());
+                return null;
+            } catch (InterruptedException ie) {
+                logger.println(label + "ERROR: Got interrupted while waiting for Tower capacity");
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (admissionWait >= 1000) {
+                logger.println(label + "Waited " + (admissionWait / 1000) + " seconds for Tower capacity");
+            }
+        }
 
         if (verbose) {
-            logger.println("Requesting tower to run " + templateType + " template " + expandedJobTemplate);
+            logger.println(label + "Requesting tower to run " + templateType + " template " + expandedJobTemplate);
         }
+        enterPhase(TowerTimeline.LAUNCH);
         int myJobID;
         try {
             myJobID = myTowerConnection.submitTemplate(template.getInt("id"), expandedExtraVars, expandedLimit, expandedJobTags, expandedSkipJobTags, jobType, expandedInventory, expandedCredential, templateType);
         } catch (AnsibleTowerException e) {
-            logger.println("ERROR: Unable to request job template invocation " + e.getMessage());
-            return false;
+            logger.println(label + "ERROR: Unable to request job template invocation " + e.getMessage());
+            return null;
         }
 
         String jobURL = myTowerConnection.getJobURL(myJobID, templateType);
 
-        logger.println("Template Job URL: " + jobURL);
+        logger.println(label + "Template Job URL: " + jobURL);
 
-        myTowerConnection.setLogTowerEvents(importTowerLogs);
-        myTowerConnection.setJenkinsLogger(logger);
-        myTowerConnection.setRemoveColor(removeColor);
-        boolean jobCompleted = false;
-        while (!jobCompleted) {
-            // First log any events if the user wants them
+        LaunchedJob job = new LaunchedJob(label, myTowerConnection, myJobID, templateType, jobURL);
+        job.admissionWait = admissionWait;
+        return job;
+    }
+
+    /*
+        Imports the logs of the jobs until all of them have completed.
+        With more than one job the statuses are loaded with one request per poll instead of one per job.
+        Jobs which another build launched for us are not polled from here, they share that job's TowerJobMonitor.
+     */
+    private boolean monitorJobs(
+            PrintStream logger, List<LaunchedJob> jobs, boolean importTowerLogs, boolean removeColor,
+            boolean importWorkflowChildLogs, long deadline
+    ) {
+        for (LaunchedJob job : jobs) {
+            job.connector.setLogTowerEvents(importTowerLogs);
+            job.connector.setJenkinsLogger(logger);
+            job.connector.setRemoveColor(removeColor);
+            job.connector.setLogPrefix(job.label);
+        }
+
+        List<LaunchedJob> runningJobs = new ArrayList<LaunchedJob>();
+        for (LaunchedJob job : jobs) {
+            // Results which came from the check result cache have nothing left to watch
+            if (job.cachedResult == null) {
+                runningJobs.add(job);
+            }
+        }
+        if (runningJobs.isEmpty()) {
+            return true;
+        }
+        enterPhase(TowerTimeline.PENDING);
+        Map<LaunchedJob, TowerJobMonitor> followed = attachFollowers(logger, runningJobs, removeColor, importWorkflowChildLogs);
+        runningJobs.removeAll(followed.keySet());
+        try {
+            boolean monitored = runningJobs.isEmpty() || pollJobs(logger, runningJobs, importWorkflowChildLogs, deadline);
+            if (!monitored) {
+                for (TowerJobMonitor monitor : followed.values()) {
+                    monitor.leave();
+                }
+                return false;
+            }
+            return followJobs(logger, followed, importTowerLogs, deadline);
+        } finally {
+            // Once we are done with a shared job, new requests should start their own
+            for (LaunchedJob job : jobs) {
+                releaseSharedLaunch(job);
+            }
+        }
+    }
+
+    /*
+        Attaches the jobs which another build launched for us to the shared monitor of the job, so that one poller
+        serves every build following it. A job whose connector can not be handed to the monitor is polled by us.
+     */
+    private Map<LaunchedJob, TowerJobMonitor> attachFollowers(
+            PrintStream logger, List<LaunchedJob> runningJobs, boolean removeColor, boolean importWorkflowChildLogs
+    ) {
+        Map<LaunchedJob, TowerJobMonitor> followed = new LinkedHashMap<LaunchedJob, TowerJobMonitor>();
+        for (LaunchedJob job : runningJobs) {
+            if (!job.follower) {
+                continue;
+            }
+            TowerConnector.Settings settings;
             try {
-                myTowerConnection.logEvents(myJobID, templateType, importWorkflowChildLogs);
+                settings = job.connector.getSettings();
             } catch (AnsibleTowerException e) {
-                logger.println("ERROR: Failed to get job events from tower: " + e.getMessage());
-                return false;
+                logger.println(job.label + "Polling Tower job " + job.jobID + " for this build only, " + e.getMessage());
+                continue;
             }
+            followed.put(job, TowerJobMonitor.attach(
+                    getMonitorKey(job.connector, job.jobID, job.templateType, removeColor, importWorkflowChildLogs),
+                    settings::getTowerConnector, job.jobID, job.templateType, removeColor, importWorkflowChildLogs
+            ));
+        }
+        return followed;
+    }
+
+    // Waits for the followed jobs one after the other, the output seen so far is replayed for the later ones
+    private boolean followJobs(PrintStream logger, Map<LaunchedJob, TowerJobMonitor> followed, boolean importTowerLogs, long deadline) {
+        List<LaunchedJob> waiting = new ArrayList<LaunchedJob>(followed.keySet());
+        for (Map.Entry<LaunchedJob, TowerJobMonitor> entry : followed.entrySet()) {
+            LaunchedJob job = entry.getKey();
+            waiting.remove(job);
+            TowerJobMonitor.Result result;
             try {
-                jobCompleted = myTowerConnection.isJobCompleted(myJobID, templateType);
+                result = entry.getValue().follow(logger, importTowerLogs, deadline);
             } catch (AnsibleTowerException e) {
-                logger.println("ERROR: Failed to get job status from Tower: " + e.getMessage());
+                leave(followed, waiting);
+                if (System.currentTimeMillis() >= deadline) {
+                    logger.println("ERROR: Tower job did not complete within the run timeout of " + runTimeout + " minute(s), canceling it");
+                    waiting.add(job);
+                    cancelJobs(logger, waiting);
+                    return false;
+                }
+                logger.println(job.label + "ERROR: Failed to follow the Tower job: " + e.getMessage());
                 return false;
+            } catch (InterruptedException ie) {
+                leave(followed, waiting);
+                waiting.add(job);
+                return abortJobs(logger, waiting);
+            }
+            job.connector.getJenkinsExports().putAll(result.getExports());
+        }
+        return true;
+    }
+
+    private static void leave(Map<LaunchedJob, TowerJobMonitor> followed, List<LaunchedJob> jobs) {
+        for (LaunchedJob job : jobs) {
+            followed.get(job).leave();
+        }
+    }
+
+    private static String getMonitorKey(
+            TowerConnector myTowerConnection, int jobID, String templateType, boolean removeColor, boolean importWorkflowChildLogs
+    ) {
+        return myTowerConnection.getLaunchKey(Arrays.asList(
+                "attach", templateType.toLowerCase(), Integer.toString(jobID), Boolean.toString(removeColor),
+                Boolean.toString(importWorkflowChildLogs)
+        ));
+    }
+
+    // The polling of monitorJobs for the jobs nobody else is watching
+    private boolean pollJobs(PrintStream logger, List<LaunchedJob> runningJobs, boolean importWorkflowChildLogs, long deadline) {
+        // Set while Tower's circuit breaker is open, so the wait is only logged once
+        boolean waitingForTower = false;
+        while (true) {
+            if (Thread.interrupted()) {
+                return abortJobs(logger, runningJobs);
             }
-            if (!jobCompleted) {
+
+            try {
+                // First log any events if the user wants them
+                for (LaunchedJob job : runningJobs) {
+                    try {
+                        job.connector.logEvents(job.jobID, job.templateType, importWorkflowChildLogs);
+                    } catch (AnsibleTowerNotResponding e) {
+                        throw e;
+                    } catch (AnsibleTowerException e) {
+                        if (Thread.interrupted()) {
+                            return abortJobs(logger, runningJobs);
+                        }
+                        logger.println(job.label + "ERROR: Failed to get job events from tower: " + e.getMessage());
+                        return false;
+                    }
+                }
+
+                List<LaunchedJob> failingJobs = getFailingJobs(logger, runningJobs);
+                if (!failingJobs.isEmpty()) {
+                    // Failed whatever Tower says later on: the cancel may not be confirmed and then the job still looks fine
+                    for (LaunchedJob job : failingJobs) {
+                        job.failedFast = true;
+                    }
+                    cancelJobs(logger, failingJobs);
+                    for (LaunchedJob job : failingJobs) {
+                        importFinalEvents(logger, job, importWorkflowChildLogs);
+                    }
+                    runningJobs.removeAll(failingJobs);
+                    if (runningJobs.isEmpty()) {
+                        return true;
+                    }
+                }
+
+                List<LaunchedJob> completedJobs;
                 try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException ie) {
-                    logger.println("ERROR: Got interrupted while sleeping");
+                    completedJobs = getCompletedJobs(runningJobs);
+                } catch (AnsibleTowerNotResponding e) {
+                    throw e;
+                } catch (AnsibleTowerException e) {
+                    if (Thread.interrupted()) {
+                        return abortJobs(logger, runningJobs);
+                    }
+                    logger.println("ERROR: Failed to get job status from Tower: " + e.getMessage());
                     return false;
                 }
+                if (timeline != null && TowerTimeline.PENDING.equals(timeline.getCurrentPhase()) &&
+                        "running".equalsIgnoreCase(runningJobs.get(0).connector.getLastStatus(runningJobs.get(0).jobID))) {
+                    enterPhase(TowerTimeline.RUNNING);
+                }
+                for (LaunchedJob job : completedJobs) {
+                    enterPhase(TowerTimeline.LOG_CATCH_UP);
+                    try {
+                        job.connector.logEvents(job.jobID, job.templateType, importWorkflowChildLogs);
+                    } catch (AnsibleTowerNotResponding e) {
+                        throw e;
+                    } catch (AnsibleTowerException e) {
+                        logger.println(job.label + "ERROR: Failed to get final job events from tower: " + e.getMessage());
+                        return false;
+                    }
+                    if (maxTowerLoad > 0) {
+                        reportTimes(logger, job);
+                    }
+                    runningJobs.remove(job);
+                }
+                if (runningJobs.isEmpty()) {
+                    return true;
+                }
+                if (waitingForTower) {
+                    logger.println("Tower is responding again");
+                    waitingForTower = false;
+                }
+            } catch (AnsibleTowerNotResponding e) {
+                // Tower being unreachable for a while does not fail the jobs, keep asking until the run timeout
+                if (!waitingForTower) {
+                    logger.println("WARNING: " + e.getMessage() + ", the jobs keep running in Tower, waiting for it to respond");
+                    waitingForTower = true;
+                }
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                logger.println("ERROR: Tower job did not complete within the run timeout of " + runTimeout + " minute(s), canceling it");
+                cancelJobs(logger, runningJobs);
+                return false;
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException ie) {
+                return abortJobs(logger, runningJobs);
             }
         }
+    }
+
+    /*
+        Same as monitorJobs for a single job, but the polling and the processing of Tower's output happen on the agent.
+        The lines come back through the build log; canceling (abort, timeout, fail fast) is still done from here.
+     */
+    private boolean monitorJobOnAgent(
+            PrintStream logger, LaunchedJob job, VirtualChannel channel, boolean importTowerLogs, boolean removeColor,
+            boolean importWorkflowChildLogs, long deadline
+    ) {
+        if (job.cachedResult != null) {
+            return true;
+        }
+        if (job.follower) {
+            // Other builds may be following it too, share their poller instead of polling once more from the agent
+            return monitorJobs(logger, Collections.singletonList(job), importTowerLogs, removeColor, importWorkflowChildLogs, deadline);
+        }
+        List<LaunchedJob> runningJobs = Collections.singletonList(job);
+        TowerConnector.Settings settings;
+        try {
+            settings = job.connector.getSettings();
+        } catch (AnsibleTowerException e) {
+            logger.println(job.label + "Monitoring the Tower job from the controller, " + e.getMessage());
+            return monitorJobs(logger, runningJobs, importTowerLogs, removeColor, importWorkflowChildLogs, deadline);
+        }
+        enterPhase(TowerTimeline.AGENT_MONITOR);
         try {
-            myTowerConnection.logEvents(myJobID, templateType, importWorkflowChildLogs);
+            long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.currentTimeMillis());
+            TowerRemoteMonitor.Outcome outcome = channel.call(new TowerRemoteMonitor(
+                    settings, job.jobID, job.templateType, job.label, importTowerLogs, removeColor,
+                    importWorkflowChildLogs, failFastThreshold, remaining, pollInterval, new RemoteOutputStream(logger)
+            ));
+            job.connector.getJenkinsExports().putAll(outcome.getExports());
+            job.connector.addRemoteTelemetry(outcome);
+            switch (outcome.getReason()) {
+                case FAILED_HOSTS:
+                    logFailedHosts(logger, job, outcome.getFailedHosts());
+                    job.failedFast = true;
+                    cancelJobs(logger, runningJobs);
+                    return true;
+                case TIMED_OUT:
+                    logger.println("ERROR: Tower job did not complete within the run timeout of " + runTimeout + " minute(s), canceling it");
+                    cancelJobs(logger, runningJobs);
+                    return false;
+                case INTERRUPTED:
+                    return abortJobs(logger, runningJobs);
+                default:
+                    if (maxTowerLoad > 0) {
+                        reportTimes(logger, job);
+                    }
+                    return true;
+            }
+        } catch (InterruptedException ie) {
+            return abortJobs(logger, runningJobs);
         } catch (AnsibleTowerException e) {
-            logger.println("ERROR: Failed to get final job events from tower: " + e.getMessage());
+            logger.println(job.label + "ERROR: Failed to get job events from tower: " + e.getMessage());
+            return false;
+        } catch (IOException e) {
+            logger.println(job.label + "ERROR: Lost the agent while monitoring the Tower job, canceling it: " + e.getMessage());
+            cancelJobs(logger, runningJobs);
             return false;
+        } finally {
+            releaseSharedLaunch(job);
         }
+    }
 
-        HashMap<String, String> jenkinsVariables = myTowerConnection.getJenkinsExports();
-        for (Map.Entry<String, String> entrySet : jenkinsVariables.entrySet()) {
-            if (verbose) {
-                logger.println("Receiving from Jenkins job '" + entrySet.getKey() + "' with value '" + entrySet.getValue() + "'");
+    /*
+        Finds the jobs which have more failed hosts than the fail fast threshold allows and logs which hosts failed
+     */
+    private List<LaunchedJob> getFailingJobs(PrintStream logger, List<LaunchedJob> runningJobs) {
+        List<LaunchedJob> failingJobs = new ArrayList<LaunchedJob>();
+        if (failFastThreshold <= 0) {
+            return failingJobs;
+        }
+        for (LaunchedJob job : runningJobs) {
+            Map<String, String> failedHosts = job.connector.getFailedHosts(job.jobID);
+            if (failedHosts.size() < failFastThreshold) {
+                continue;
+            }
+            logFailedHosts(logger, job, failedHosts);
+            failingJobs.add(job);
+        }
+        return failingJobs;
+    }
+
+    // The events a job wrote until it was canceled, a failure to get them does not change the result
+    private void importFinalEvents(PrintStream logger, LaunchedJob job, boolean importWorkflowChildLogs) {
+        try {
+            job.connector.logEvents(job.jobID, job.templateType, importWorkflowChildLogs);
+        } catch (AnsibleTowerException e) {
+            logger.println(job.label + "WARNING: Failed to get the final job events from tower: " + e.getMessage());
+        }
+    }
+
+    private void logFailedHosts(PrintStream logger, LaunchedJob job, Map<String, String> failedHosts) {
+        logger.println(job.label + "ERROR: " + failedHosts.size() + " host(s) failed, which reaches the fail fast threshold of " + failFastThreshold + ", canceling the job");
+        for (Map.Entry<String, String> failedHost : failedHosts.entrySet()) {
+            logger.println(job.label + "    " + failedHost.getKey() + ": " + failedHost.getValue());
+        }
+    }
+
+    /*
+        Logs how long the job waited (in Jenkins for capacity and in Tower's queue) separately from how long it ran
+     */
+    private void reportTimes(PrintStream logger, LaunchedJob job) {
+        JSONObject towerJob;
+        try {
+            towerJob = job.connector.getJobStatuses(Collections.singletonList(job.jobID), job.templateType).get(job.jobID);
+        } catch (AnsibleTowerException e) {
+            logger.println(job.label + "Unable to load the job times from Tower: " + e.getMessage());
+            return;
+        }
+        if (towerJob == null) {
+            return;
+        }
+        long towerPending = secondsBetween(towerJob.optString("created"), towerJob.optString("started"));
+        long running = secondsBetween(towerJob.optString("started"), towerJob.optString("finished"));
+        job.pendingSeconds = job.admissionWait / 1000 + Math.max(0, towerPending);
+        job.runningSeconds = Math.max(0, running);
+        logger.println(
+                job.label + "Pending time: " + job.pendingSeconds + " seconds (" + (job.admissionWait / 1000) +
+                " waiting for capacity in Jenkins, " + Math.max(0, towerPending) + " queued in Tower), running time: " +
+                job.runningSeconds + " seconds"
+        );
+    }
+
+    private static long secondsBetween(String from, String to) {
+        try {
+            return Duration.between(Instant.parse(from), Instant.parse(to)).getSeconds();
+        } catch (DateTimeParseException | NullPointerException e) {
+            // Tower returns null for times which have not happened (e.g. a job canceled before it started)
+            return -1;
+        }
+    }
+
+    /*
+        The build was aborted (or the step timed out), make sure the Tower jobs don't keep running without us.
+        The interrupt is restored afterwards so Jenkins still sees the abort.
+     */
+    private boolean abortJobs(PrintStream logger, List<LaunchedJob> runningJobs) {
+        logger.println("ERROR: Got interrupted, canceling the running Tower jobs");
+        cancelJobs(logger, runningJobs);
+        Thread.currentThread().interrupt();
+        return false;
+    }
+
+    /*
+        Asks Tower to cancel the jobs and then waits (for a bounded time) until Tower reports them as finished
+     */
+    private void cancelJobs(PrintStream logger, List<LaunchedJob> runningJobs) {
+        List<LaunchedJob> canceling = new ArrayList<LaunchedJob>();
+        for (LaunchedJob job : runningJobs) {
+            if (!releaseSharedLaunch(job)) {
+                logger.println(job.label + "Not canceling Tower job " + job.jobID + ", other builds which asked for the same launch are still following it");
+                continue;
+            }
+            try {
+                job.connector.cancelJob(job.jobID, job.templateType);
+                canceling.add(job);
+            } catch (AnsibleTowerException e) {
+                logger.println(job.label + "ERROR: Failed to cancel the job in Tower: " + e.getMessage());
+            }
+        }
+
+        long waitUntil = System.currentTimeMillis() + CANCEL_WAIT;
+        while (!canceling.isEmpty()) {
+            for (LaunchedJob job : new ArrayList<LaunchedJob>(canceling)) {
+                try {
+                    JSONObject status = job.connector.getJobStatuses(Collections.singletonList(job.jobID), job.templateType).get(job.jobID);
+                    if (status != null && TowerConnector.isFinished(status)) {
+                        logger.println(job.label + "Tower job " + job.jobID + " is now " + status.getString("status"));
+                        canceling.remove(job);
+                    }
+                } catch (AnsibleTowerException e) {
+                    logger.println(job.label + "ERROR: Unable to check if the job was canceled: " + e.getMessage());
+                    canceling.remove(job);
+                }
+            }
+            if (canceling.isEmpty()) {
+                return;
+            }
+            if (System.currentTimeMillis() > waitUntil) {
+                break;
+            }
+            try {
+                Thread.sleep(CANCEL_POLL_INTERVAL);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (LaunchedJob job : canceling) {
+            logger.println(job.label + "WARNING: Tower did not confirm that job " + job.jobID + " was canceled, check " + job.jobURL);
+        }
+    }
+
+    /*
+        This run is done with the job of a coalesced launch: new requests start their own job from now on.
+        Returns true if no other build is following the job anymore (always for a job which was not shared).
+     */
+    private boolean releaseSharedLaunch(LaunchedJob job) {
+        TowerLaunchCoalescer.Launch launch = job.sharedLaunch;
+        if (launch == null) {
+            return true;
+        }
+        job.sharedLaunch = null;
+        sharedLaunches.remove(launch);
+        return launch.finished();
+    }
+
+    // Called once a run is over, whichever way it ended
+    private void releaseSharedLaunches() {
+        List<TowerLaunchCoalescer.Launch> held;
+        synchronized (sharedLaunches) {
+            held = new ArrayList<TowerLaunchCoalescer.Launch>(sharedLaunches);
+            sharedLaunches.clear();
+        }
+        for (TowerLaunchCoalescer.Launch launch : held) {
+            launch.finished();
+        }
+    }
+
+    private List<LaunchedJob> getCompletedJobs(List<LaunchedJob> runningJobs) throws AnsibleTowerException {
+        List<LaunchedJob> completedJobs = new ArrayList<LaunchedJob>();
+        if (runningJobs.size() == 1) {
+            LaunchedJob job = runningJobs.get(0);
+            if (job.connector.isJobCompleted(job.jobID, job.templateType)) {
+                completedJobs.add(job);
+            }
+            return completedJobs;
+        }
+
+        HashMap<String, List<Integer>> jobIDsByType = new HashMap<String, List<Integer>>();
+        for (LaunchedJob job : runningJobs) {
+            String templateType = job.templateType.toLowerCase();
+            if (!jobIDsByType.containsKey(templateType)) {
+                jobIDsByType.put(templateType, new ArrayList<Integer>());
+            }
+            jobIDsByType.get(templateType).add(job.jobID);
+        }
+        HashMap<String, HashMap<Integer, JSONObject>> statusesByType = new HashMap<String, HashMap<Integer, JSONObject>>();
+        for (Map.Entry<String, List<Integer>> entry : jobIDsByType.entrySet()) {
+            statusesByType.put(entry.getKey(), runningJobs.get(0).connector.getJobStatuses(entry.getValue(), entry.getKey()));
+        }
+
+        for (LaunchedJob job : runningJobs) {
+            JSONObject status = statusesByType.get(job.templateType.toLowerCase()).get(job.jobID);
+            // isJobCompleted loads the full job which also picks up the artifacts
+            if (status != null && TowerConnector.isFinished(status) && job.connector.isJobCompleted(job.jobID, job.templateType)) {
+                completedJobs.add(job);
+            }
+        }
+        return completedJobs;
+    }
+
+    private boolean injectExports(PrintStream logger, boolean verbose, List<LaunchedJob> jobs, EnvVars envVars, FilePath ws, Run<?, ?> run) {
+        for (LaunchedJob job : jobs) {
+            HashMap<String, String> jenkinsVariables = job.connector.getJenkinsExports();
+            for (Map.Entry<String, String> entrySet : jenkinsVariables.entrySet()) {
+                if (verbose) {
+                    logger.println(job.label + "Receiving from Jenkins job '" + entrySet.getKey() + "' with value '" + entrySet.getValue() + "'");
+                }
+                envVars.put(entrySet.getKey(), entrySet.getValue());
             }
-            envVars.put(entrySet.getKey(), entrySet.getValue());
         }
         if (envVars.size() != 0) {
             if (Jenkins.getInstance().getPlugin("envinject") == null) {
@@ -218,14 +1788,38 @@ public class AnsibleTowerRunner {
                 }
             }
         }
+        return true;
+    }
 
-        boolean failed = !isJobSuccessful(logger, verbose, templateType, myTowerConnection, myJobID);
-
-        towerResults.put("JOB_ID", Integer.toString(myJobID));
-        towerResults.put("JOB_URL", jobURL);
-        towerResults.put("JOB_RESULT", failed ? "FAILED" : "SUCCESS");
-
-        return !failed;
+    /*
+        Like below but takes the result cache into account: cached results are used as they are and new check results are stored
+     */
+    private boolean isJobSuccessful(PrintStream logger, boolean verbose, LaunchedJob job) {
+        if (job.cachedResult != null) {
+            if (!job.cachedResult) {
+                logger.println(job.label + "Tower failed to complete the requested job (cached result)");
+            }
+            return job.cachedResult;
+        }
+        if (job.failedFast) {
+            logger.println(job.label + "Tower job " + job.jobID + " was canceled by the fail fast threshold, the job failed");
+            return false;
+        }
+        if (job.resultCacheKey != null && !"canceled".equalsIgnoreCase(job.connector.getLastStatus(job.jobID))) {
+            try {
+                // Only a check which ran to the end is remembered, not a failure to ask for it or a canceled run
+                JSONObject status = job.connector.getJobStatuses(Collections.singletonList(job.jobID), job.templateType).get(job.jobID);
+                String finalStatus = status == null ? "" : status.optString("status", "");
+                if (finalStatus.equalsIgnoreCase("successful") || finalStatus.equalsIgnoreCase("failed")) {
+                    TowerCheckResultCache.get().put(job.resultCacheKey, new TowerCheckResultCache.Entry(
+                            finalStatus.equalsIgnoreCase("successful"), job.connector.getJenkinsExports(), job.jobID, job.jobURL
+                    ));
+                }
+            } catch (AnsibleTowerException e) {
+                // isJobSuccessful will report the problem
+            }
+        }
+        return isJobSuccessful(logger, verbose, job.templateType, job.connector, job.jobID);
     }
 
     private boolean isJobSuccessful(PrintStream logger, boolean verbose, String templateType, TowerConnector myTowerConnection, int myJobID) {
@@ -244,4 +1838,30 @@ public class AnsibleTowerRunner {
             return false;
         }
     }
+
+    private static class LaunchedJob {
+        private final String label;
+        private final TowerConnector connector;
+        private final int jobID;
+        private final String templateType;
+        private final String jobURL;
+        private long admissionWait = 0;
+        private long pendingSeconds = -1;
+        private long runningSeconds = -1;
+        private TowerLaunchCoalescer.Launch sharedLaunch = null;
+        private Boolean cachedResult = null;
+        private String resultCacheKey = null;
+        // Canceled because too many hosts failed
+        private boolean failedFast = false;
+        // Launched by another build, we follow its output through the job's TowerJobMonitor
+        private boolean follower = false;
+
+        private LaunchedJob(String label, TowerConnector connector, int jobID, String templateType, String jobURL) {
+            this.label = label;
+            this.connector = connector;
+            this.jobID = jobID;
+            this.templateType = templateType;
+            this.jobURL = jobURL;
+        }
+    }
 }
@@ -13,11 +13,9 @@ import hudson.model.TaskListener;
 import hudson.*;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
-import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
 import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
 import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
 import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
-import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -43,6 +41,14 @@ public class AnsibleTowerStep extends AbstractStepImpl {
     private String templateType             = "job";
     private Boolean importWorkflowChildLogs = false;
     private Boolean throwExceptionWhenFail  = true;
+    private int runTimeout                  = 0;
+    private int shards                      = 0;
+    private String shardHosts               = "";
+    private int failFastThreshold           = 0;
+    private int maxTowerLoad                = 0;
+    private Boolean coalesceLaunches        = false;
+    private int checkResultCacheMinutes     = 0;
+    private Boolean monitorOnAgent          = false;
 
     @DataBoundConstructor
     public AnsibleTowerStep(
@@ -84,6 +90,14 @@ public class AnsibleTowerStep extends AbstractStepImpl {
     public String getTemplateType()             { return templateType; }
     public Boolean getImportWorkflowChildLogs() { return importWorkflowChildLogs; }
     public Boolean getThrowExceptionWhenFail()  { return throwExceptionWhenFail; }
+    public int getRunTimeout()                  { return runTimeout; }
+    public int getShards()                      { return shards; }
+    public String getShardHosts()               { return shardHosts; }
+    public int getFailFastThreshold()           { return failFastThreshold; }
+    public int getMaxTowerLoad()                { return maxTowerLoad; }
+    public Boolean getCoalesceLaunches()        { return coalesceLaunches; }
+    public int getCheckResultCacheMinutes()     { return checkResultCacheMinutes; }
+    public Boolean getMonitorOnAgent()          { return monitorOnAgent; }
 
     @DataBoundSetter
     public void setTowerServer(String towerServer) { this.towerServer = towerServer; }
@@ -115,6 +129,22 @@ public class AnsibleTowerStep extends AbstractStepImpl {
     public void setImportWorkflowChildLogs(Boolean importWorkflowChildLogs) { this.importWorkflowChildLogs = importWorkflowChildLogs; }
     @DataBoundSetter
     public void setThrowExceptionWhenFail(Boolean throwExceptionWhenFail) { this.throwExceptionWhenFail = throwExceptionWhenFail; }
+    @DataBoundSetter
+    public void setRunTimeout(int runTimeout) { this.runTimeout = runTimeout; }
+    @DataBoundSetter
+    public void setShards(int shards) { this.shards = shards; }
+    @DataBoundSetter
+    public void setShardHosts(String shardHosts) { this.shardHosts = shardHosts; }
+    @DataBoundSetter
+    public void setFailFastThreshold(int failFastThreshold) { this.failFastThreshold = failFastThreshold; }
+    @DataBoundSetter
+    public void setMaxTowerLoad(int maxTowerLoad) { this.maxTowerLoad = maxTowerLoad; }
+    @DataBoundSetter
+    public void setCoalesceLaunches(Boolean coalesceLaunches) { this.coalesceLaunches = coalesceLaunches; }
+    @DataBoundSetter
+    public void setCheckResultCacheMinutes(int checkResultCacheMinutes) { this.checkResultCacheMinutes = checkResultCacheMinutes; }
+    @DataBoundSetter
+    public void setMonitorOnAgent(Boolean monitorOnAgent) { this.monitorOnAgent = monitorOnAgent; }
 
     public boolean isGlobalColorAllowed() {
         System.out.println("Using the class is global color allowed");
@@ -122,7 +152,7 @@ public class AnsibleTowerStep extends AbstractStepImpl {
     }
 
     @Extension(optional = true)
-    public static final class DescriptorImpl extends AbstractStepDescriptorImpl {
+    public static final class DescriptorImpl extends AnsibleTowerStepDescriptor {
         public static final String towerServer              = AnsibleTower.DescriptorImpl.towerServer;
         public static final String jobTemplate              = AnsibleTower.DescriptorImpl.jobTemplate;
         public static final String jobType                  = AnsibleTower.DescriptorImpl.jobType;
@@ -138,6 +168,14 @@ public class AnsibleTowerStep extends AbstractStepImpl {
         public static final String templateType             = AnsibleTower.DescriptorImpl.templateType;
         public static final Boolean importWorkflowChildLogs = AnsibleTower.DescriptorImpl.importWorkflowChildLogs;
         public static final Boolean throwExceptionWhenFail  = AnsibleTower.DescriptorImpl.throwExceptionWhenFail;
+        public static final int runTimeout                  = AnsibleTower.DescriptorImpl.runTimeout;
+        public static final int shards                      = AnsibleTower.DescriptorImpl.shards;
+        public static final String shardHosts               = AnsibleTower.DescriptorImpl.shardHosts;
+        public static final int failFastThreshold           = AnsibleTower.DescriptorImpl.failFastThreshold;
+        public static final int maxTowerLoad                = AnsibleTower.DescriptorImpl.maxTowerLoad;
+        public static final Boolean coalesceLaunches        = AnsibleTower.DescriptorImpl.coalesceLaunches;
+        public static final int checkResultCacheMinutes     = AnsibleTower.DescriptorImpl.checkResultCacheMinutes;
+        public static final Boolean monitorOnAgent          = AnsibleTower.DescriptorImpl.monitorOnAgent;
 
         public DescriptorImpl() {
             super(AnsibleTowerStepExecution.class);
@@ -153,15 +191,6 @@ public class AnsibleTowerStep extends AbstractStepImpl {
             return "Have Ansible Tower run a job template";
         }
 
-        public ListBoxModel doFillTowerServerItems() {
-            ListBoxModel items = new ListBoxModel();
-            items.add(" - None -");
-            for (TowerInstallation towerServer : AnsibleTowerGlobalConfig.get().getTowerInstallation()) {
-                items.add(towerServer.getTowerDisplayName());
-            }
-            return items;
-        }
-
         public ListBoxModel doFillTemplateTypeItems() {
             ListBoxModel items = new ListBoxModel();
             items.add("job");
@@ -215,6 +244,14 @@ public class AnsibleTowerStep extends AbstractStepImpl {
             }
 
             AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setRunTimeout(step.getRunTimeout());
+            runner.setShards(step.getShards());
+            runner.setShardHosts(step.getShardHosts());
+            runner.setFailFastThreshold(step.getFailFastThreshold());
+            runner.setMaxTowerLoad(step.getMaxTowerLoad());
+            runner.setCoalesceLaunches(step.getCoalesceLaunches());
+            runner.setCheckResultCacheMinutes(step.getCheckResultCacheMinutes());
+            runner.setMonitorOnAgent(step.getMonitorOnAgent());
 
             // Doing this will make the options optional in the pipeline step.
             String extraVars = "";
@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class holds what the descriptors of the pipeline steps have in common: the Tower server drop down
+ */
+
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+public abstract class AnsibleTowerStepDescriptor extends AbstractStepDescriptorImpl {
+    protected AnsibleTowerStepDescriptor(Class<? extends StepExecution> executionType) {
+        super(executionType);
+    }
+
+    public ListBoxModel doFillTowerServerItems() {
+        return getTowerServerItems();
+    }
+
+    // Also used by the freestyle build step
+    static ListBoxModel getTowerServerItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add(" - None -");
+        for (TowerInstallation towerServer : AnsibleTowerGlobalConfig.get().getTowerInstallation()) {
+            items.add(towerServer.getTowerDisplayName());
+        }
+        return items;
+    }
+}
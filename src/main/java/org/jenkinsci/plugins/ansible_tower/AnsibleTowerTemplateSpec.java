@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    One template to run from the ansibleTowerParallel step
+    These are the same template options that the ansibleTower step takes
+ */
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.ListBoxModel;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+public class AnsibleTowerTemplateSpec extends AbstractDescribableImpl<AnsibleTowerTemplateSpec> {
+    private String jobTemplate  = "";
+    private String templateType = "job";
+    private String jobType      = "run";
+    private String extraVars    = "";
+    private String limit        = "";
+    private String jobTags      = "";
+    private String skipJobTags  = "";
+    private String inventory    = "";
+    private String credential   = "";
+
+    @DataBoundConstructor
+    public AnsibleTowerTemplateSpec(@Nonnull String jobTemplate) {
+        this.jobTemplate = jobTemplate;
+    }
+
+    @Nonnull
+    public String getJobTemplate()  { return jobTemplate; }
+    public String getTemplateType() { return templateType == null ? "job" : templateType; }
+    public String getJobType()      { return jobType == null ? "run" : jobType; }
+    public String getExtraVars()    { return extraVars == null ? "" : extraVars; }
+    public String getLimit()        { return limit == null ? "" : limit; }
+    public String getJobTags()      { return jobTags == null ? "" : jobTags; }
+    public String getSkipJobTags()  { return skipJobTags == null ? "" : skipJobTags; }
+    public String getInventory()    { return inventory == null ? "" : inventory; }
+    public String getCredential()   { return credential == null ? "" : credential; }
+
+    @DataBoundSetter
+    public void setTemplateType(String templateType) { this.templateType = templateType; }
+    @DataBoundSetter
+    public void setJobType(String jobType) { this.jobType = jobType; }
+    @DataBoundSetter
+    public void setExtraVars(String extraVars) { this.extraVars = extraVars; }
+    @DataBoundSetter
+    public void setLimit(String limit) { this.limit = limit; }
+    @DataBoundSetter
+    public void setJobTags(String jobTags) { this.jobTags = jobTags; }
+    @DataBoundSetter
+    public void setSkipJobTags(String skipJobTags) { this.skipJobTags = skipJobTags; }
+    @DataBoundSetter
+    public void setInventory(String inventory) { this.inventory = inventory; }
+    @DataBoundSetter
+    public void setCredential(String credential) { this.credential = credential; }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<AnsibleTowerTemplateSpec> {
+        public static final String jobTemplate  = AnsibleTower.DescriptorImpl.jobTemplate;
+        public static final String templateType = AnsibleTower.DescriptorImpl.templateType;
+        public static final String jobType      = AnsibleTower.DescriptorImpl.jobType;
+        public static final String extraVars    = AnsibleTower.DescriptorImpl.extraVars;
+        public static final String limit        = AnsibleTower.DescriptorImpl.limit;
+        public static final String jobTags      = AnsibleTower.DescriptorImpl.jobTags;
+        public static final String skipJobTags  = AnsibleTower.DescriptorImpl.skipJobTags;
+        public static final String inventory    = AnsibleTower.DescriptorImpl.inventory;
+        public static final String credential   = AnsibleTower.DescriptorImpl.credential;
+
+        @Override
+        public String getDisplayName() {
+            return "Ansible Tower template";
+        }
+
+        public ListBoxModel doFillTemplateTypeItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("job");
+            items.add("workflow");
+            return items;
+        }
+
+        public ListBoxModel doFillJobTypeItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("run");
+            items.add("check");
+            return items;
+        }
+    }
+}
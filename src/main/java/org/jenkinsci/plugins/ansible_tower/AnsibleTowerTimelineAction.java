@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    This class is the build page showing where the time of every Tower template run in the build went
+    (one TowerTimeline per run), so slow builds can be told apart: waiting for Tower or waiting for the plugin
+ */
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.jenkinsci.plugins.ansible_tower.util.TowerTimeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AnsibleTowerTimelineAction implements RunAction2 {
+    private final List<TowerTimeline> timelines = new ArrayList<TowerTimeline>();
+    private transient Run<?, ?> run;
+
+    public static void record(Run<?, ?> run, TowerTimeline timeline) {
+        if (run == null) {
+            return;
+        }
+        synchronized (run) {
+            AnsibleTowerTimelineAction action = run.getAction(AnsibleTowerTimelineAction.class);
+            if (action == null) {
+                action = new AnsibleTowerTimelineAction();
+                run.addAction(action);
+            }
+            action.add(timeline);
+        }
+    }
+
+    private synchronized void add(TowerTimeline timeline) {
+        timelines.add(timeline);
+    }
+
+    public synchronized List<TowerTimeline> getTimelines() {
+        return new ArrayList<TowerTimeline>(timelines);
+    }
+
+    public Run<?, ?> getRun() { return run; }
+
+    @Override
+    public void onAttached(Run<?, ?> run) { this.run = run; }
+
+    @Override
+    public void onLoad(Run<?, ?> run) { this.run = run; }
+
+    @Override
+    public String getIconFileName() { return "clock.png"; }
+
+    @Override
+    public String getDisplayName() { return "Ansible Tower Timeline"; }
+
+    @Override
+    public String getUrlName() { return "ansible-tower-timeline"; }
+}
@@ -0,0 +1,9 @@
+package org.jenkinsci.plugins.ansible_tower.exceptions;
+
+/*
+    We can not tell how busy Tower is (we see no instance group with any capacity) so we can not hold the launch back
+ */
+
+public class AnsibleTowerAdmissionUnavailable extends AnsibleTowerException {
+    public AnsibleTowerAdmissionUnavailable(String message) { super(message); }
+}
@@ -0,0 +1,12 @@
+package org.jenkinsci.plugins.ansible_tower.exceptions;
+
+/*
+    The circuit breaker for this Tower is open so the request was not sent.
+    Tower is down or overloaded for now, this says nothing about the jobs running in it.
+ */
+
+public class AnsibleTowerNotResponding extends AnsibleTowerException {
+    public AnsibleTowerNotResponding(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Holds launches back while Tower is busy, there is one per Tower URL shared by every build talking to that Tower.
+    The load is the consumed capacity of all instance groups as a percentage of their capacity. It is cached for a
+    little while so that a queue of waiting builds does not poll Tower once each.
+    Waiting launches are released one at a time in the order they arrived. After a launch is let through we wait a bit
+    before looking at the load again so that Tower has time to count the job we just started.
+    A launch never waits longer than MAX_WAIT_MILLIS, even if the build has no timeout.
+ */
+
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TowerAdmissionController {
+    private static final long REFRESH_MILLIS = 15000;
+    private static final long ADMISSION_SPACING = 5000;
+    private static final long MAX_WAIT_MILLIS = 60 * 60 * 1000;
+    private static final ConcurrentHashMap<String, TowerAdmissionController> controllers = new ConcurrentHashMap<String, TowerAdmissionController>();
+
+    private final long refreshMillis;
+    private final long admissionSpacing;
+    private final long maxWaitMillis;
+    private final LinkedList<Object> queue = new LinkedList<Object>();
+    private volatile double load = 0;
+    private volatile long loadedAt = 0;
+    private volatile long nextAdmissionAt = 0;
+
+    TowerAdmissionController(long refreshMillis, long admissionSpacing, long maxWaitMillis) {
+        this.refreshMillis = refreshMillis;
+        this.admissionSpacing = admissionSpacing;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public static TowerAdmissionController forUrl(String url) {
+        return controllers.computeIfAbsent(url, k -> new TowerAdmissionController(REFRESH_MILLIS, ADMISSION_SPACING, MAX_WAIT_MILLIS));
+    }
+
+    public interface LoadSource {
+        double getLoad() throws AnsibleTowerException;
+    }
+
+    /*
+        Blocks until every launch that asked before us has gone and the load is below maxLoadPercent.
+        Returns the number of milliseconds we waited. Errors of the load source (AnsibleTowerAdmissionUnavailable
+        included) are passed on and let the next one in line have a go.
+     */
+    public long awaitAdmission(LoadSource loadSource, int maxLoadPercent, long deadline) throws AnsibleTowerException, InterruptedException {
+        Object ticket = new Object();
+        long start = System.currentTimeMillis();
+        deadline = Math.min(deadline, start + maxWaitMillis);
+        synchronized(this) { queue.addLast(ticket); }
+        try {
+            while(true) {
+                synchronized(this) {
+                    while(queue.getFirst() != ticket) {
+                        checkDeadline(deadline);
+                        wait(Math.max(1, Math.min(refreshMillis, deadline - System.currentTimeMillis())));
+                    }
+                }
+
+                // We are at the front of the queue so we are the only one looking at (and refreshing) the load
+                long now = System.currentTimeMillis();
+                if(now >= nextAdmissionAt) {
+                    if(now - loadedAt >= refreshMillis) {
+                        load = loadSource.getLoad();
+                        loadedAt = System.currentTimeMillis();
+                    }
+                    if(load < maxLoadPercent) {
+                        nextAdmissionAt = System.currentTimeMillis() + admissionSpacing;
+                        // The next one in line should see the job we are about to start
+                        loadedAt = 0;
+                        return System.currentTimeMillis() - start;
+                    }
+                }
+
+                checkDeadline(deadline);
+                long sleepUntil = Math.max(nextAdmissionAt, loadedAt + refreshMillis);
+                Thread.sleep(Math.max(1, Math.min(sleepUntil, deadline) - System.currentTimeMillis()));
+            }
+        } finally {
+            synchronized(this) {
+                queue.remove(ticket);
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized int getWaiting() { return queue.size(); }
+
+    private void checkDeadline(long deadline) throws AnsibleTowerException {
+        if(System.currentTimeMillis() >= deadline) {
+            throw new AnsibleTowerException("Timed out waiting for Tower capacity");
+        }
+    }
+}
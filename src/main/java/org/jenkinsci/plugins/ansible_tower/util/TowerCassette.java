@@ -0,0 +1,261 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Records every request a TowerConnector sends and the response it got, so a real run can be replayed offline
+    (see TowerCassettePlayer), e.g. to benchmark log import or polling changes against a production sized workflow.
+    The cassette is gzip compressed: a JSON header line (the Tower URL and version), then per request a JSON line
+    (method, path, status, content type, when it was sent, how long it took and the length of both bodies) followed by
+    the bodies as they were, and a JSON trailer line with the job. The bodies are not put into the JSON because json-lib
+    turns strings which look like JSON into objects, the replayed bodies would not be exactly the recorded ones.
+    Requests are written as they complete so a run with hundreds of thousands of events is never held in memory.
+
+    Secrets are left out: no request headers are recorded (so no Authorization), logging in (ping, authtoken,
+    the OAuth probe) is not recorded at all (the player answers those itself) and in both bodies the values of any
+    key which looks like a password, token, secret or key are replaced, also inside extra_vars.
+    The stdout of the playbook is recorded as Tower returned it, if the playbook prints secrets so does the cassette.
+ */
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+public class TowerCassette implements Closeable {
+    public static final int FORMAT = 1;
+    public static final String EXTENSION = ".cassette.gz";
+    public static final String REDACTED = "$redacted$";
+
+    private static final Pattern SECRET_KEY = Pattern.compile(
+            "(?i).*(password|passwd|passphrase|secret|token|private_key|ssh_key|api_key|authorization|vault_pass).*"
+    );
+    // "db_password: hunter2" in YAML extra vars
+    private static final Pattern SECRET_YAML_LINE = Pattern.compile(
+            "(?im)^(\\s*-?\\s*[\"']?[\\w.-]*(?:password|passwd|passphrase|secret|token|private_key|ssh_key|api_key|vault_pass)[\\w.-]*[\"']?\\s*:\\s*).+$"
+    );
+
+    private final File file;
+    private final OutputStream out;
+    private final long startedAt = System.currentTimeMillis();
+    private boolean begun = false;
+    private boolean closed = false;
+    private long requests = 0;
+
+    public TowerCassette(File file) throws IOException {
+        this.file = file;
+        if(file.getParentFile() != null) { file.getParentFile().mkdirs(); }
+        this.out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 64 * 1024), 64 * 1024);
+    }
+
+    // A new cassette in the directory, named after the template and the time so runs never overwrite each other
+    public static TowerCassette create(File directory, String name) throws IOException {
+        String safeName = (name == null || name.isEmpty() ? "tower" : name).replaceAll("[^A-Za-z0-9._-]+", "_");
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String suffix = String.format("%04x", ThreadLocalRandom.current().nextInt(0x10000));
+        return new TowerCassette(new File(directory, safeName +"-"+ stamp +"-"+ suffix + EXTENSION));
+    }
+
+    public File getFile()      { return file; }
+    public long getRequests()  { return requests; }
+
+    // Called by the connector the cassette is given to, only the first connector writes the header
+    public synchronized void begin(String url, TowerVersion version) {
+        if(begun) { return; }
+        begun = true;
+        JSONObject header = new JSONObject();
+        header.put("cassette", FORMAT);
+        header.put("tower", url);
+        if(version != null) { header.put("version", version.getVersion()); }
+        header.put("startedAt", startedAt);
+        writeLine(header, null, null);
+    }
+
+    /*
+        Records a completed request. The body of the response is read here (so it is in the cassette even if the
+        caller never reads it) and the response gets it back as a byte array entity.
+     */
+    public HttpResponse record(HttpUriRequest request, HttpResponse response, long sentAt) throws IOException {
+        String path = request.getURI().getRawPath();
+        if(!isRecorded(path)) { return response; }
+
+        byte[] body = null;
+        String contentType = null;
+        HttpEntity entity = response.getEntity();
+        if(entity != null) {
+            Header type = entity.getContentType();
+            contentType = type == null ? null : type.getValue();
+            body = EntityUtils.toByteArray(entity);
+            ByteArrayEntity replacement = new ByteArrayEntity(body);
+            replacement.setContentType(contentType);
+            response.setEntity(replacement);
+        }
+        String requestBody = null;
+        if(request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity sent = ((HttpEntityEnclosingRequest) request).getEntity();
+            if(sent != null && sent.isRepeatable()) { requestBody = EntityUtils.toString(sent, "UTF-8"); }
+        }
+
+        JSONObject line = new JSONObject();
+        line.put("t", sentAt - startedAt);
+        line.put("d", System.currentTimeMillis() - sentAt);
+        line.put("m", request.getMethod());
+        line.put("p", path + (request.getURI().getRawQuery() == null ? "" : "?"+ request.getURI().getRawQuery()));
+        line.put("s", response.getStatusLine().getStatusCode());
+        if(contentType != null) { line.put("ct", contentType); }
+        byte[] recordedRequest = requestBody == null ? null : redactBody(requestBody).getBytes(StandardCharsets.UTF_8);
+        byte[] recordedResponse = body == null ? null : redactBody(new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        if(recordedRequest != null) { line.put("req", recordedRequest.length); }
+        if(recordedResponse != null) { line.put("res", recordedResponse.length); }
+        synchronized(this) {
+            requests++;
+            writeLine(line, recordedRequest, recordedResponse);
+        }
+        return response;
+    }
+
+    // Writes the trailer (what the run launched) and closes the file
+    public synchronized void finish(String templateType, Integer jobID) {
+        if(closed) { return; }
+        JSONObject trailer = new JSONObject();
+        trailer.put("end", System.currentTimeMillis() - startedAt);
+        trailer.put("requests", requests);
+        if(templateType != null) { trailer.put("templateType", templateType); }
+        if(jobID != null) { trailer.put("jobId", jobID); }
+        writeLine(trailer, null, null);
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if(closed) { return; }
+        closed = true;
+        try {
+            out.close();
+        } catch(IOException e) {
+            TowerLogger.writeMessage("Unable to close the cassette "+ file +": "+ e.getMessage());
+        }
+    }
+
+    private void writeLine(JSONObject line, byte[] requestBody, byte[] responseBody) {
+        if(closed) { return; }
+        try {
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            if(requestBody != null) { out.write(requestBody); }
+            if(responseBody != null) { out.write(responseBody); }
+            if(requestBody != null || responseBody != null) { out.write('\n'); }
+        } catch(IOException e) {
+            TowerLogger.writeMessage("Unable to write to the cassette "+ file +": "+ e.getMessage());
+        }
+    }
+
+    // Logging in carries the credentials and tokens, it is answered by the player instead
+    static boolean isRecorded(String path) {
+        if(path == null) { return true; }
+        return !(path.endsWith("/ping/") || path.endsWith("/authtoken/") || path.endsWith("/tokens/") || path.equals("/api/o/"));
+    }
+
+    /*
+        The body with the values of secret looking keys replaced.
+        Bodies which are not JSON, or have nothing to redact, are returned unchanged: json-lib does not always
+        write back exactly what it read so a body is only re-serialized if something in it was replaced.
+     */
+    static String redactBody(String body) {
+        if(body == null) { return null; }
+        String trimmed = body.trim();
+        try {
+            if(trimmed.startsWith("{")) {
+                JSONObject object = JSONObject.fromObject(trimmed);
+                return redact(object) ? object.toString() : body;
+            }
+            if(trimmed.startsWith("[")) {
+                JSONArray array = JSONArray.fromObject(trimmed);
+                return redact(array) ? array.toString() : body;
+            }
+        } catch(JSONException je) {
+            // Not JSON after all, e.g. the stdout of an update
+        }
+        return body;
+    }
+
+    private static boolean redact(JSONObject object) {
+        boolean redacted = false;
+        for(Object key : new ArrayList<Object>(object.keySet())) {
+            String name = key.toString();
+            Object value = object.get(name);
+            if(value instanceof JSONObject) {
+                redacted |= redact((JSONObject) value);
+            } else if(value instanceof JSONArray) {
+                redacted |= redact((JSONArray) value);
+            } else if(name.equals("extra_vars") && value instanceof String) {
+                String extraVars = redactExtraVars((String) value);
+                if(!extraVars.equals(value)) {
+                    object.put(name, extraVars);
+                    redacted = true;
+                }
+            } else if(SECRET_KEY.matcher(name).matches() && isSecretValue(value)) {
+                object.put(name, REDACTED);
+                redacted = true;
+            }
+        }
+        return redacted;
+    }
+
+    private static boolean redact(JSONArray array) {
+        boolean redacted = false;
+        for(Object item : array) {
+            if(item instanceof JSONObject) {
+                redacted |= redact((JSONObject) item);
+            } else if(item instanceof JSONArray) {
+                redacted |= redact((JSONArray) item);
+            }
+        }
+        return redacted;
+    }
+
+    // Flags (ask_password_on_launch) and empty values tell nothing and are needed for the replay to behave the same
+    private static boolean isSecretValue(Object value) {
+        if(value instanceof String) { return !((String) value).isEmpty() && !value.equals(REDACTED); }
+        return value instanceof Number;
+    }
+
+    // Extra vars are a string holding JSON or YAML
+    static String redactExtraVars(String extraVars) {
+        String trimmed = extraVars.trim();
+        if(trimmed.startsWith("{")) {
+            try {
+                JSONObject vars = JSONObject.fromObject(trimmed);
+                return redact(vars) ? vars.toString() : extraVars;
+            } catch(JSONException je) {
+                // Could still be YAML flow style, fall through
+            }
+        }
+        Matcher matcher = SECRET_YAML_LINE.matcher(extraVars);
+        StringBuffer redacted = new StringBuffer();
+        while(matcher.find()) {
+            matcher.appendReplacement(redacted, Matcher.quoteReplacement(matcher.group(1) + REDACTED));
+        }
+        matcher.appendTail(redacted);
+        return redacted.toString();
+    }
+}
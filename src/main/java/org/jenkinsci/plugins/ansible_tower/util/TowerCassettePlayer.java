@@ -0,0 +1,225 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Answers the requests of a TowerConnector from a cassette recorded by TowerCassette instead of from Tower.
+    A player is installed for a URL (it does not have to resolve, e.g. http://replay.invalid); every connector for
+    that URL then gets its responses from the player and nothing goes over the network.
+
+    Requests are matched on method, path and query. The responses recorded for the same request are given out in
+    the order they were recorded, once they run out the last one is repeated: a replay which polls more often than
+    the recorded run keeps seeing the final state of the job. Logging in (ping, authtoken, the OAuth probe) was not
+    recorded and is answered here. A request which is not in the cassette fails the request with an
+    AnsibleTowerException, it means the code being measured no longer asks Tower the same things.
+
+    The speed is how long each response takes compared to the recording: 1 keeps the original timing,
+    0.5 is twice as fast and 0 answers at once (for benchmarks of the processing alone).
+ */
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+public class TowerCassettePlayer {
+    private static final ConcurrentHashMap<String, TowerCassettePlayer> players = new ConcurrentHashMap<String, TowerCassettePlayer>();
+    private static final String DEFAULT_VERSION = "3.3.0";
+
+    private final Map<String, List<Interaction>> interactions = new HashMap<String, List<Interaction>>();
+    private final Map<String, Integer> played = new HashMap<String, Integer>();
+    private String towerVersion = DEFAULT_VERSION;
+    private String recordedFrom = null;
+    private String templateType = null;
+    private Integer jobID = null;
+    private long recordedMillis = 0;
+    private int recordedRequests = 0;
+    private double speed = 1;
+    private long replayedRequests = 0;
+
+    private TowerCassettePlayer() {}
+
+    public static TowerCassettePlayer load(File cassette) throws IOException {
+        TowerCassettePlayer player = new TowerCassettePlayer();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(cassette), 64 * 1024), 64 * 1024))) {
+            String line;
+            while((line = readLine(in)) != null) {
+                if(line.isEmpty()) { continue; }
+                player.read(JSONObject.fromObject(line), in);
+            }
+        } catch(EOFException eof) {
+            throw new IOException("The cassette "+ cassette +" ends in the middle of a response, was the recording finished?");
+        } catch(JSONException je) {
+            throw new IOException("The cassette "+ cassette +" is damaged: "+ je.getMessage());
+        }
+        return player;
+    }
+
+    // A line of UTF-8 without the newline, null at the end of the cassette
+    private static String readLine(DataInputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if(b == -1 && line.size() == 0) { return null; }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBody(DataInputStream in, JSONObject line, String key) throws IOException {
+        if(!line.containsKey(key)) { return null; }
+        byte[] body = new byte[line.getInt(key)];
+        in.readFully(body);
+        return body;
+    }
+
+    private void read(JSONObject line, DataInputStream in) throws IOException {
+        if(line.containsKey("cassette")) {
+            if(line.getInt("cassette") > TowerCassette.FORMAT) {
+                throw new IOException("The cassette was written by a newer version of the plugin (format "+ line.getInt("cassette") +")");
+            }
+            recordedFrom = line.optString("tower", null);
+            if(line.containsKey("version")) { towerVersion = line.getString("version"); }
+        } else if(line.containsKey("end")) {
+            recordedMillis = line.getLong("end");
+            templateType = line.optString("templateType", null);
+            if(line.containsKey("jobId")) { jobID = line.getInt("jobId"); }
+        } else {
+            // Only the response is played back, the request body is in the cassette for whoever reads it
+            readBody(in, line, "req");
+            Interaction interaction = new Interaction(
+                    line.getInt("s"),
+                    line.optString("ct", null),
+                    readBody(in, line, "res"),
+                    line.optLong("d", 0)
+            );
+            String key = line.getString("m") +" "+ line.getString("p");
+            if(!interactions.containsKey(key)) { interactions.put(key, new ArrayList<Interaction>()); }
+            interactions.get(key).add(interaction);
+            recordedRequests++;
+        }
+    }
+
+    // Connectors for this URL will be answered by the player until it is uninstalled
+    public static void install(String url, TowerCassettePlayer player) {
+        players.put(normalize(url), player);
+    }
+
+    public static void uninstall(String url) {
+        players.remove(normalize(url));
+    }
+
+    public static TowerCassettePlayer forUrl(String url) {
+        if(url == null || players.isEmpty()) { return null; }
+        return players.get(normalize(url));
+    }
+
+    private static String normalize(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public void setSpeed(double speed)         { this.speed = Math.max(0, speed); }
+    public String getTowerVersion()            { return towerVersion; }
+    // The Tower the cassette was recorded against
+    public String getRecordedFrom()            { return recordedFrom; }
+    // What the recorded run launched, null if the recording was not finished
+    public String getTemplateType()            { return templateType; }
+    public Integer getJobID()                  { return jobID; }
+    public long getRecordedMillis()            { return recordedMillis; }
+    public int getRecordedRequests()           { return recordedRequests; }
+    public synchronized long getReplayedRequests() { return replayedRequests; }
+
+    // Starts the cassette from the beginning, for playing it once more
+    public synchronized void rewind() {
+        played.clear();
+        replayedRequests = 0;
+    }
+
+    public HttpResponse execute(HttpUriRequest request) throws AnsibleTowerException {
+        String path = request.getURI().getRawPath();
+        String query = request.getURI().getRawQuery();
+        String key = request.getMethod() +" "+ path + (query == null ? "" : "?"+ query);
+
+        Interaction interaction;
+        synchronized(this) {
+            replayedRequests++;
+            List<Interaction> recorded = interactions.get(key);
+            if(recorded == null) {
+                if(!TowerCassette.isRecorded(path)) { return login(request.getMethod(), path); }
+                throw new AnsibleTowerException("The cassette has no response for "+ key);
+            }
+            int next = played.containsKey(key) ? played.get(key) : 0;
+            interaction = recorded.get(Math.min(next, recorded.size() - 1));
+            played.put(key, next + 1);
+        }
+
+        long delay = (long) (interaction.millis * speed);
+        if(delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new AnsibleTowerException("Interrupted while replaying "+ key);
+            }
+        }
+        return interaction.toResponse();
+    }
+
+    private HttpResponse login(String method, String path) {
+        if(path.endsWith("/ping/")) {
+            JSONObject ping = new JSONObject();
+            ping.put("version", towerVersion);
+            return new Interaction(200, "application/json", ping.toString().getBytes(StandardCharsets.UTF_8), 0).toResponse();
+        }
+        if(path.endsWith("/authtoken/") && method.equals("POST")) {
+            JSONObject token = new JSONObject();
+            token.put("token", "replayed");
+            return new Interaction(200, "application/json", token.toString().getBytes(StandardCharsets.UTF_8), 0).toResponse();
+        }
+        // No OAuth so the connector sends the legacy token, which nothing checks
+        return new Interaction(404, null, null, 0).toResponse();
+    }
+
+    private static class Interaction {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final long millis;
+
+        private Interaction(int status, String contentType, byte[] body, long millis) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.millis = millis;
+        }
+
+        private HttpResponse toResponse() {
+            BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, status, ""));
+            if(body != null) {
+                ByteArrayEntity entity = new ByteArrayEntity(body);
+                entity.setContentType(contentType);
+                response.setEntity(entity);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Remembers the results of check mode runs so identical checks don't have to run again.
+    The keys are built by the caller from the Tower, the user, the launch parameters and the project's SCM revision,
+    so a new commit in the project (or any other change of input) is a miss. Checks of projects which update on launch
+    are not remembered, the revision they run is not known when we look them up.
+    Entries live in memory only and each lookup says how old an entry may be.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TowerCheckResultCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final TowerCheckResultCache instance = new TowerCheckResultCache(MAX_ENTRIES);
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    TowerCheckResultCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static TowerCheckResultCache get() { return instance; }
+
+    /*
+        Returns the entry for the key if it was stored less than maxAgeMillis ago
+     */
+    public synchronized Entry get(String key, long maxAgeMillis) {
+        Entry entry = entries.get(key);
+        if(entry == null) { return null; }
+        if(System.currentTimeMillis() - entry.getStoredAt() >= maxAgeMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized void put(String key, Entry entry) { entries.put(key, entry); }
+    public synchronized int size() { return entries.size(); }
+
+    public static class Entry {
+        private final boolean successful;
+        private final Map<String, String> exports;
+        private final int jobID;
+        private final String jobURL;
+        private final long storedAt;
+
+        public Entry(boolean successful, Map<String, String> exports, int jobID, String jobURL) {
+            this.successful = successful;
+            this.exports = Collections.unmodifiableMap(new HashMap<String, String>(exports));
+            this.jobID = jobID;
+            this.jobURL = jobURL;
+            this.storedAt = System.currentTimeMillis();
+        }
+
+        public boolean isSuccessful() { return successful; }
+        public Map<String, String> getExports() { return exports; }
+        public int getJobID() { return jobID; }
+        public String getJobURL() { return jobURL; }
+        public long getStoredAt() { return storedAt; }
+    }
+}
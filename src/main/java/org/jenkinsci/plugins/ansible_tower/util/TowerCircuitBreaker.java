@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    A small circuit breaker, there is one per Tower URL shared by every build talking to that Tower.
+    After enough consecutive failed requests (a request whose retries all failed counts once) we stop sending requests
+    for a while (open) so that launches fail fast instead of all hammering a Tower which is down. Builds which are only
+    polling a running job wait the outage out, see AnsibleTowerNotResponding. Once the wait is over a single request is let through (half open) to see if
+    Tower is back; if it works we close again, if not we wait another period.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TowerCircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MILLIS = 30000;
+    private static final ConcurrentHashMap<String, TowerCircuitBreaker> breakers = new ConcurrentHashMap<String, TowerCircuitBreaker>();
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+
+    TowerCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public static TowerCircuitBreaker forUrl(String url) {
+        return breakers.computeIfAbsent(url, k -> new TowerCircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS));
+    }
+
+    public synchronized boolean allowRequest() {
+        long now = System.currentTimeMillis();
+        if(state == State.CLOSED) { return true; }
+        if(now - openedAt < openMillis) {
+            // Either we are still waiting or a probe request is already out, either way this one does not go
+            return false;
+        }
+        // This caller becomes the probe. If a previous probe never reported back we let a new one through.
+        state = State.HALF_OPEN;
+        openedAt = now;
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if(state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized boolean isOpen() { return state != State.CLOSED; }
+
+    public synchronized long getRemainingOpenSeconds() {
+        if(state == State.CLOSED) { return 0; }
+        long remaining = openMillis - (System.currentTimeMillis() - openedAt);
+        return remaining <= 0 ? 0 : (remaining + 999) / 1000;
+    }
+}
@@ -0,0 +1,133 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Keeps one pooled HTTP client per Tower (URL, cert trust and timeouts) which is shared by every connector.
+    This way builds reuse open connections instead of paying for DNS, TCP and TLS setup on every request.
+    Clients no installation asks for anymore are shut down when the global config is saved (see retain).
+    HttpClient's own retries are turned off: by default it sends a request again (POSTs included) when the connection
+    closes before the response, which could launch a job twice. TowerConnector decides what is safe to retry.
+ */
+
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.KeyStore;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class TowerConnectionPool {
+    private static final int MAX_CONNECTIONS_PER_TOWER = 50;
+    private static final long IDLE_MILLIS = 30000;
+    private static final HashMap<String, DefaultHttpClient> clients = new HashMap<String, DefaultHttpClient>();
+    private static long lastIdleCheck = System.currentTimeMillis();
+
+    public static DefaultHttpClient getClient(String url, boolean trustAllCerts, int connectTimeout, int readTimeout) throws AnsibleTowerException {
+        String key = getKey(url, trustAllCerts, connectTimeout, readTimeout);
+        synchronized(clients) {
+            closeIdleConnections();
+            DefaultHttpClient client = clients.get(key);
+            if(client == null) {
+                client = createClient(url, trustAllCerts, connectTimeout, readTimeout);
+                clients.put(key, client);
+            }
+            return client;
+        }
+    }
+
+    // The timeouts are in milliseconds, the way the connectors ask for their client
+    static String getKey(String url, boolean trustAllCerts, int connectTimeout, int readTimeout) {
+        return url +"|"+ trustAllCerts +"|"+ connectTimeout +"|"+ readTimeout;
+    }
+
+    /*
+        Shuts down every client whose key is not in the given ones, e.g. because its installation was removed or its
+        URL, cert trust or timeouts changed. A request still going over such a client fails like a dropped connection.
+     */
+    public static void retain(Collection<String> keys) {
+        synchronized(clients) {
+            Iterator<Map.Entry<String, DefaultHttpClient>> entries = clients.entrySet().iterator();
+            while(entries.hasNext()) {
+                Map.Entry<String, DefaultHttpClient> entry = entries.next();
+                if(!keys.contains(entry.getKey())) {
+                    entry.getValue().getConnectionManager().shutdown();
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    static boolean hasClient(String key) {
+        synchronized(clients) {
+            return clients.containsKey(key);
+        }
+    }
+
+    private static void closeIdleConnections() {
+        // Tower (nginx) drops idle keep alive connections, don't hand those out to builds
+        long now = System.currentTimeMillis();
+        if(now - lastIdleCheck < IDLE_MILLIS) { return; }
+        lastIdleCheck = now;
+        for(DefaultHttpClient client : clients.values()) {
+            client.getConnectionManager().closeIdleConnections(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static DefaultHttpClient createClient(String url, boolean trustAllCerts, int connectTimeout, int readTimeout) throws AnsibleTowerException {
+        URI myURI;
+        try {
+            myURI = new URI(url);
+        } catch(URISyntaxException urise) {
+            throw new AnsibleTowerException("Unable to prase base url: "+ urise);
+        }
+
+        HttpParams params = new BasicHttpParams();
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, readTimeout);
+        // A pooled connection may have been closed by Tower, check before sending so a launch is never sent into a dead socket
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS_PER_TOWER);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_TOWER));
+
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        if(trustAllCerts && myURI.getScheme() != null && myURI.getScheme().equalsIgnoreCase("https")) {
+            TrustingSSLSocketFactory sf;
+            try {
+                KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+                trustStore.load(null, null);
+                sf = new TrustingSSLSocketFactory(trustStore);
+            } catch(Exception e) {
+                throw new AnsibleTowerException("Unable to create trusting SSL socket factory");
+            }
+            sf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+            registry.register(new Scheme("https", sf, 443));
+        } else {
+            registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+        }
+
+        DefaultHttpClient client = new DefaultHttpClient(new ThreadSafeClientConnManager(params, registry), params);
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        return client;
+    }
+}
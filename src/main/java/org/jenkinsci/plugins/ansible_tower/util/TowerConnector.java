@@ -8,49 +8,66 @@ import com.google.common.net.HttpHeaders;
 import net.sf.json.JSONArray;
 import org.apache.http.Header;
 import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerDoesNotSupportAuthtoken;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerAdmissionUnavailable;
 import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
-import java.security.KeyStore;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
+import net.sf.json.JSONException;
 import net.sf.json.JSONObject;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
-import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerItemDoesNotExist;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerNotResponding;
 
 public class TowerConnector {
     private static final int GET = 1;
     private static final int POST = 2;
     public static final String JOB_TEMPLATE_TYPE = "job";
     public static final String WORKFLOW_TEMPLATE_TYPE = "workflow";
+    public static final String PROJECT_UPDATE_TYPE = "project_update";
     private static final String ARTIFACTS = "artifacts";
     private static String API_VERSION = "v2";
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_BASE_DELAY = 500;
+    private static final long RETRY_MAX_DELAY = 8000;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10;
+    public static final int DEFAULT_READ_TIMEOUT = 60;
+    public static final int DEFAULT_REQUEST_TIMEOUT = 120;
+    private static final long VERSION_CACHE_MILLIS = 600000;
+    // The largest page Tower will return
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // These are shared by all connectors so a build does not have to log in or probe Tower again
+    private static final ConcurrentHashMap<String, String> authTokens = new ConcurrentHashMap<String, String>();
+    private static final ConcurrentHashMap<String, Boolean> oAuthSupport = new ConcurrentHashMap<String, Boolean>();
+    private static final ConcurrentHashMap<String, TowerVersion> versions = new ConcurrentHashMap<String, TowerVersion>();
+    private static final ConcurrentHashMap<String, Long> versionLoadedAt = new ConcurrentHashMap<String, Long>();
 
     private String authToken = null;
     private String oauthToken = null;
@@ -59,19 +76,41 @@ public class TowerConnector {
     private String password = null;
     private TowerVersion towerVersion = null;
     private boolean trustAllCerts = true;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT * 1000;
+    private int readTimeout = DEFAULT_READ_TIMEOUT * 1000;
+    private int requestTimeout = DEFAULT_REQUEST_TIMEOUT * 1000;
     private TowerLogger logger = new TowerLogger();
     HashMap<Integer, Integer> logIdForWorkflows = new HashMap<Integer, Integer>();
     HashMap<Integer, Integer> logIdForJobs = new HashMap<Integer, Integer>();
+    private HashMap<Integer, LinkedHashMap<String, String>> failedHosts = new HashMap<Integer, LinkedHashMap<String, String>>();
 
     private boolean logTowerEvents = false;
     private PrintStream jenkinsLogger = null;
     private boolean removeColor = true;
+    private String logPrefix = "";
     private HashMap<String, String> jenkinsExports = new HashMap<String, String>();
+    private HashMap<Integer, String> lastStatuses = new HashMap<Integer, String>();
+    private TowerTrace trace = null;
+    private TowerCassette cassette = null;
+    private TowerMetrics metrics = null;
+    // What this connector has sent, for the per build timeline
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
 
 
     public TowerConnector(String url, String username, String password) { this(url, username, password, null, false, false); }
 
     public TowerConnector(String url, String username, String password, String oauthToken, Boolean trustAllCerts, Boolean debug) {
+        this(url, username, password, oauthToken, trustAllCerts, debug, 0, 0, 0);
+    }
+
+    // Timeouts are in seconds, anything less than 1 means use the default
+    public TowerConnector(String url, String username, String password, String oauthToken, Boolean trustAllCerts, Boolean debug, int connectTimeout, int readTimeout, int requestTimeout) {
+        this(url, username, password, oauthToken, trustAllCerts, debug, connectTimeout, readTimeout, requestTimeout, null);
+    }
+
+    // The version lookup (and the login it may need) are already requests of the run, so a traced run passes its trace here
+    public TowerConnector(String url, String username, String password, String oauthToken, Boolean trustAllCerts, Boolean debug, int connectTimeout, int readTimeout, int requestTimeout, TowerTrace trace) {
         // Credit to https://stackoverflow.com/questions/7438612/how-to-remove-the-last-character-from-a-string
         if(url != null && url.length() > 0 && url.charAt(url.length() - 1) == '/') {
             url = url.substring(0, (url.length() - 1));
@@ -81,16 +120,105 @@ public class TowerConnector {
         this.password = password;
         this.oauthToken = oauthToken;
         this.trustAllCerts = trustAllCerts;
+        if(connectTimeout > 0) { this.connectTimeout = connectTimeout * 1000; }
+        if(readTimeout > 0) { this.readTimeout = readTimeout * 1000; }
+        if(requestTimeout > 0) { this.requestTimeout = requestTimeout * 1000; }
+        this.trace = trace;
         this.setDebug(debug);
+        logger.setInstallation(this.url);
         try {
-            this.getVersion();
-            logger.logMessage("Connecting to Tower version: "+ this.towerVersion.getVersion());
+            Long loadedAt = versionLoadedAt.get(this.url == null ? "" : this.url);
+            if(loadedAt != null && System.currentTimeMillis() - loadedAt < VERSION_CACHE_MILLIS) {
+                this.towerVersion = versions.get(this.url);
+            } else {
+                this.getVersion();
+            }
+            logger.logMessage("Connecting to Tower version: ", this.towerVersion.getVersion());
         } catch(AnsibleTowerException ate) {
-            logger.logMessage("Failed to get connection to get version; auth errors may ensue "+ ate);
+            logger.logMessage("Failed to get connection to get version; auth errors may ensue ", ate);
+        }
+        if(logger.isEnabled()) { logger.logMessage("Created a connector with "+ username +"@", url); }
+    }
+
+    /*
+        Everything needed to build the same connector in another JVM, e.g. on the build agent.
+        The password never leaves the controller: the other connector gets the session token this one logged in with
+        (or the OAuth token of the credential, which is what Tower is given either way). A Tower which only takes
+        basic auth has no such token, and a cassette can only be recorded here, so neither can be handed over.
+        Requests sent by the other connector are counted in a registry and trace of its own which come back with
+        TowerRemoteMonitor.Outcome (see addRemoteTelemetry).
+     */
+    public static class Settings implements Serializable {
+        private static final long serialVersionUID = 2L;
+        private final String url;
+        private final String username;
+        private final String authorization;
+        private final boolean trustAllCerts;
+        private final boolean debug;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final int requestTimeout;
+        private final String traceId;
+        private final String parentSpanId;
+
+        private Settings(TowerConnector connector) throws AnsibleTowerException {
+            if(connector.cassette != null) {
+                throw new AnsibleTowerException("a cassette is being recorded and it can only be written on the controller");
+            }
+            this.url = connector.url;
+            this.username = connector.username;
+            this.authorization = connector.getSessionAuthorization();
+            this.trustAllCerts = connector.trustAllCerts;
+            this.debug = connector.logger.isDebugging();
+            this.connectTimeout = connector.connectTimeout / 1000;
+            this.readTimeout = connector.readTimeout / 1000;
+            this.requestTimeout = connector.requestTimeout / 1000;
+            this.traceId = connector.trace == null ? null : connector.trace.getTraceId();
+            this.parentSpanId = connector.trace == null ? null : connector.trace.getCurrentSpanId();
+        }
+
+        public TowerConnector getTowerConnector() {
+            TowerConnector connector = new TowerConnector(url, username, null, null, trustAllCerts, debug, connectTimeout, readTimeout, requestTimeout);
+            connector.authToken = authorization;
+            connector.metrics = new TowerMetrics(url);
+            if(traceId != null) { connector.setTrace(new TowerTrace("monitor on agent", traceId, parentSpanId)); }
+            return connector;
+        }
+    }
+
+    public Settings getSettings() throws AnsibleTowerException { return new Settings(this); }
+
+    // The Authorization header this connector sends, logs in if it has not yet
+    private String getSessionAuthorization() throws AnsibleTowerException {
+        if(this.oauthToken != null) { return "Bearer " + this.oauthToken; }
+        if(this.authToken == null && this.username != null && this.password != null) {
+            this.authToken = authTokens.get(getAuthCacheKey());
+            if(this.authToken == null) { login(); }
+        }
+        if(this.authToken == null) {
+            throw new AnsibleTowerException("there are no credentials to log in to Tower with");
+        }
+        if(this.authToken.startsWith("Basic ")) {
+            throw new AnsibleTowerException("Tower does not hand out tokens and the password is not sent to the agent");
         }
-        logger.logMessage("Created a connector with "+ username +"@"+ url);
+        return this.authToken;
     }
 
+    /*
+        Adds what a connector built from getSettings() sent on behalf of this one: to the requests of this build,
+        the metrics of the Tower and the trace of this run
+     */
+    public void addRemoteTelemetry(TowerRemoteMonitor.Outcome outcome) {
+        requestCount.addAndGet(outcome.getRequestCount());
+        responseBytes.addAndGet(outcome.getResponseBytes());
+        if(outcome.getMetrics() != null) { getMetrics().add(outcome.getMetrics()); }
+        if(trace != null && outcome.getTrace() != null) { trace.addSpans(outcome.getTrace()); }
+    }
+
+    // Where the requests are counted, the registry of the Tower unless this connector was built from Settings
+    TowerMetrics getMetrics() { return metrics == null ? TowerMetrics.forUrl(url) : metrics; }
+    TowerTrace getTrace() { return trace; }
+
     public void setTrustAllCerts(boolean trustAllCerts) {
         this.trustAllCerts = trustAllCerts;
     }
@@ -100,41 +228,44 @@ public class TowerConnector {
         logger.setDebugging(debug);
     }
     public void setRemoveColor(boolean removeColor) { this.removeColor = removeColor;}
+    // Put in front of every line sent to the Jenkins log, used to tell apart jobs which are monitored together
+    public void setLogPrefix(String logPrefix) { this.logPrefix = logPrefix == null ? "" : logPrefix; }
     public HashMap<String, String> getJenkinsExports() { return jenkinsExports; }
+    // The status Tower reported the last time isJobCompleted asked about the job, null if it never did
+    public String getLastStatus(int jobID) { return lastStatuses.get(jobID); }
+    public long getRequestCount() { return requestCount.get(); }
+    // Requests made from now on get a span in this trace (null stops tracing)
+    public void setTrace(TowerTrace trace) { this.trace = trace; }
+    // Requests made from now on are recorded to this cassette (null stops recording)
+    public void setCassette(TowerCassette cassette) {
+        this.cassette = cassette;
+        if(cassette != null) { cassette.begin(url, towerVersion); }
+    }
+    public long getResponseBytes() { return responseBytes.get(); }
+    // The hosts which failed (or were unreachable) in the events seen so far, with the task they failed on
+    public Map<String, String> getFailedHosts(int jobID) {
+        if(!failedHosts.containsKey(jobID)) { return Collections.emptyMap(); }
+        return failedHosts.get(jobID);
+    }
 
     private DefaultHttpClient getHttpClient() throws AnsibleTowerException {
-        URI myURI = null;
-        try {
-            myURI = new URI(url);
-        } catch(URISyntaxException urise) {
-            throw new AnsibleTowerException("Unable to prase base url: "+ urise);
-        }
-
-        if(trustAllCerts && myURI.getScheme().equalsIgnoreCase("https")) {
-            logger.logMessage("Forcing cert trust");
-            TrustingSSLSocketFactory sf;
-            try {
-                KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-                trustStore.load(null, null);
-                sf = new TrustingSSLSocketFactory(trustStore);
-            } catch(Exception e) {
-                throw new AnsibleTowerException("Unable to create trusting SSL socket factory");
-            }
-            sf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-
-            HttpParams params = new BasicHttpParams();
-            HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-            HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
-
-            SchemeRegistry registry = new SchemeRegistry();
-            registry.register(new Scheme("https", sf, 443));
+        return TowerConnectionPool.getClient(url, trustAllCerts, connectTimeout, readTimeout);
+    }
 
-            ClientConnectionManager ccm = new ThreadSafeClientConnManager(params, registry);
+    String getPoolKey() {
+        return TowerConnectionPool.getKey(url, trustAllCerts, connectTimeout, readTimeout);
+    }
 
-            return new DefaultHttpClient(ccm, params);
-        } else {
-            return new DefaultHttpClient();
+    // The key of the pooled client a connector made with these settings uses, the timeouts in seconds (0 for the default)
+    public static String getPoolKey(String url, boolean trustAllCerts, int connectTimeout, int readTimeout) {
+        if(url != null && url.length() > 0 && url.charAt(url.length() - 1) == '/') {
+            url = url.substring(0, (url.length() - 1));
         }
+        return TowerConnectionPool.getKey(
+                url, trustAllCerts,
+                (connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT) * 1000,
+                (readTimeout > 0 ? readTimeout : DEFAULT_READ_TIMEOUT) * 1000
+        );
     }
 
     private String buildEndpoint(String endpoint) {
@@ -153,6 +284,10 @@ public class TowerConnector {
     }
 
     private HttpResponse makeRequest(int requestType, String endpoint, JSONObject body, boolean noAuth) throws AnsibleTowerException, AnsibleTowerItemDoesNotExist {
+        return makeRequest(requestType, endpoint, body, noAuth, null);
+    }
+
+    private HttpResponse makeRequest(int requestType, String endpoint, JSONObject body, boolean noAuth, Map<String, String> headers) throws AnsibleTowerException, AnsibleTowerItemDoesNotExist {
         // Parse the URL
         URI myURI;
         try {
@@ -161,7 +296,6 @@ public class TowerConnector {
             throw new AnsibleTowerException("URL issue: "+ e.getMessage());
         }
 
-        logger.logMessage("building request to "+ myURI.toString());
 
         HttpUriRequest request;
         if(requestType == GET) {
@@ -181,59 +315,60 @@ public class TowerConnector {
         } else {
             throw new AnsibleTowerException("The requested method is unknown");
         }
+        if(headers != null) {
+            for(Map.Entry<String, String> header : headers.entrySet()) {
+                request.setHeader(header.getKey(), header.getValue());
+            }
+        }
 
 
         // If we haven't determined auth yet we need to go get it
         if(!noAuth) {
             if (this.oauthToken == null && this.authToken == null && this.username != null && this.password != null) {
-                // We dont' have a token yet so we need to get one
-                logger.logMessage("Performing initial login");
-
-                // First try to get an authorization header
-                try {
-                    this.authToken = getAuthToken();
-                    // Now that we have an auth token we need to decide if we are using it via Bearer (oAuth) or legacy token
-                    if(this.towerSupportsOAuth()) {
-                        logger.logMessage("Using an oAuth token for "+ this.username);
-                        this.authToken = "Bearer " + this.authToken;
-                    } else {
-                        logger.logMessage("Using a legacy token for "+ this.username);
-                        this.authToken = "Token " + this.authToken;
-                    }
-                } catch (AnsibleTowerDoesNotSupportAuthtoken dneat) {
-                    logger.logMessage("Tower does not support authtoken, reverting to basic auth");
-                    logger.logMessage(dneat.getMessage());
-                    this.authToken = this.getBasicAuthString();
+                this.authToken = authTokens.get(getAuthCacheKey());
+                if(this.authToken == null) {
+                    login();
+                } else {
+                    logger.logMessage("Reusing the token of an earlier login for ", this.username);
                 }
             }
-
-            if (this.oauthToken != null) {
-                // If we were given an oauthToken we will just use that directly
-                logger.logMessage("Adding oauth bearer token from Jenkins");
-                request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + this.oauthToken);
-            } else if(this.authToken != null) {
-                logger.logMessage("Adding token pulled from Tower");
-                request.setHeader(HttpHeaders.AUTHORIZATION, this.authToken);
-            } else {
-                throw new AnsibleTowerException("Auth is required for this call but no auth info exists");
-            }
+            addAuthHeader(request);
         }
 
-        // Dump the request
-        // logger.logMessage(this.dumpRequest(request));
-
-        DefaultHttpClient httpClient = getHttpClient();
+        TowerTrace.Span span = startSpan(request, endpoint);
         HttpResponse response;
+        long requestStart = System.currentTimeMillis();
+        logger.logRequest(request.getMethod(), myURI);
         try {
-            response = httpClient.execute(request);
-        } catch(Exception e) {
+            response = execute(request, requestType == GET, span);
+            // Without a password (a connector built from Settings) there is nothing to log in again with
+            if(!noAuth && response.getStatusLine().getStatusCode() == 401 && this.oauthToken == null && this.authToken != null && this.password != null) {
+                // The token we got from Tower (possibly during an earlier build) may have expired, log in once more
+                logger.logMessage("Token was rejected, logging in again as ", this.username);
+                releaseResponse(response);
+                authTokens.remove(getAuthCacheKey());
+                this.authToken = null;
+                login();
+                addAuthHeader(request);
+                response = execute(request, requestType == GET, span);
+            }
+            if(span != null) { span.setAttribute("http.status_code", response.getStatusLine().getStatusCode()); }
+        } catch(IOException e) {
+            if(span != null) { span.setError(e.getMessage()); }
             throw new AnsibleTowerException("Unable to make tower request: "+ e.getMessage());
+        } catch(AnsibleTowerException e) {
+            if(span != null) { span.setError(e.getMessage()); }
+            throw e;
+        } finally {
+            if(span != null) { span.end(); }
         }
 
-        logger.logMessage("Request completed with ("+ response.getStatusLine().getStatusCode() +")");
+        logger.logResponse(request.getMethod(), myURI, response.getStatusLine().getStatusCode(), System.currentTimeMillis() - requestStart);
         if(response.getStatusLine().getStatusCode() == 404) {
+            releaseResponse(response);
             throw new AnsibleTowerItemDoesNotExist("The item does not exist");
         } else if(response.getStatusLine().getStatusCode() == 401) {
+            releaseResponse(response);
             throw new AnsibleTowerException("Username/password invalid");
         } else if(response.getStatusLine().getStatusCode() == 403) {
             String exceptionText = "Request was forbidden";
@@ -241,12 +376,12 @@ public class TowerConnector {
             String json;
             try {
                 json = EntityUtils.toString(response.getEntity());
-                logger.logMessage(json);
+                logger.logBody(json);
                 responseObject = JSONObject.fromObject(json);
                 if(responseObject.containsKey("detail")) {
                     exceptionText+= ": "+ responseObject.getString("detail");
                 }
-            } catch (IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 // Ignore if we get an error
             }
 
@@ -256,6 +391,267 @@ public class TowerConnector {
         return response;
     }
 
+    private void login() throws AnsibleTowerException {
+        // We dont' have a token yet so we need to get one
+        logger.logMessage(() -> "Performing initial login");
+
+        // First try to get an authorization header
+        try {
+            this.authToken = getAuthToken();
+            // Now that we have an auth token we need to decide if we are using it via Bearer (oAuth) or legacy token
+            if(this.towerSupportsOAuth()) {
+                logger.logMessage("Using an oAuth token for ", this.username);
+                this.authToken = "Bearer " + this.authToken;
+            } else {
+                logger.logMessage("Using a legacy token for ", this.username);
+                this.authToken = "Token " + this.authToken;
+            }
+        } catch (AnsibleTowerDoesNotSupportAuthtoken dneat) {
+            logger.logMessage(() -> "Tower does not support authtoken, reverting to basic auth");
+            logger.logMessage("", dneat.getMessage());
+            this.authToken = this.getBasicAuthString();
+        }
+        authTokens.put(getAuthCacheKey(), this.authToken);
+    }
+
+    private void addAuthHeader(HttpUriRequest request) throws AnsibleTowerException {
+        if (this.oauthToken != null) {
+            // If we were given an oauthToken we will just use that directly
+            logger.logMessage(() -> "Adding oauth bearer token from Jenkins");
+            request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + this.oauthToken);
+        } else if(this.authToken != null) {
+            logger.logMessage(() -> "Adding token pulled from Tower");
+            request.setHeader(HttpHeaders.AUTHORIZATION, this.authToken);
+        } else {
+            throw new AnsibleTowerException("Auth is required for this call but no auth info exists");
+        }
+    }
+
+    private String getAuthCacheKey() {
+        // The password is part of the key so a changed password in Jenkins is not masked by an old token
+        return url +"|"+ username +"|"+ DigestUtils.sha256Hex(password == null ? "" : password);
+    }
+
+    /*
+        Does everything the first build would otherwise have to: opens a pooled connection to Tower, loads the version,
+        logs in (the token is kept for all later connectors) and probes for oAuth support.
+        The constructor already loaded the version, it is only asked for again if that failed.
+     */
+    public void prewarm() throws AnsibleTowerException {
+        if(url == null) { throw new AnsibleTowerException("The URL is undefined"); }
+        if(towerVersion == null) { getVersion(); }
+        HttpResponse response = makeRequest(GET, "/me/");
+        int statusCode = response.getStatusLine().getStatusCode();
+        releaseResponse(response);
+        if(statusCode != 200) {
+            throw new AnsibleTowerException("Failed to get authenticated connection ("+ statusCode +")");
+        }
+    }
+
+    public TowerVersion getTowerVersion() { return towerVersion; }
+
+    /*
+        Every call to Tower goes through here.
+        Requests which are safe to repeat (GET/HEAD) are retried with a jittered exponential backoff on IO errors and
+        5xx responses. Anything else (i.e. launching a job) is only retried if we never managed to connect, because
+        in that case nothing reached Tower; retrying after that could start the job twice.
+        All requests are also gated by the circuit breaker for this Tower so we fail fast while Tower is down. The
+        breaker is asked once per request and hears about it once, after the retries: a blip which one retry gets
+        past is not a failure, and the retries of one request don't add up to an outage.
+        While a cassette is recorded every attempt and its response go into it; while one is replayed for this URL
+        (TowerCassettePlayer) the player answers instead of Tower.
+     */
+    private HttpResponse execute(HttpUriRequest request, boolean idempotent) throws AnsibleTowerException, IOException {
+        return execute(request, idempotent, null);
+    }
+
+    private HttpResponse execute(HttpUriRequest request, boolean idempotent, final TowerTrace.Span span) throws AnsibleTowerException, IOException {
+        TowerCircuitBreaker breaker = TowerCircuitBreaker.forUrl(url);
+        // Tower's JSON is very repetitive, compressed it is a fraction of the size on the wire
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, TowerResponseEntity.ACCEPT_ENCODING);
+        final TowerMetrics metrics = getMetrics();
+        final String category = TowerMetrics.categorize(request.getMethod(), request.getURI().getPath());
+        // Set when a cassette is being replayed for this URL, nothing is sent to Tower then
+        TowerCassettePlayer player = TowerCassettePlayer.forUrl(url);
+        if(!breaker.allowRequest()) {
+            throw new AnsibleTowerNotResponding("Tower at "+ url +" is not responding, not sending requests to it for another "+ breaker.getRemainingOpenSeconds() +" seconds");
+        }
+        int attempt = 0;
+        while(true) {
+            if(attempt > 0) {
+                metrics.recordRetry(category);
+                if(span != null) { span.setAttribute("tower.retries", attempt); }
+            }
+            if(request instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) request).getEntity() != null) {
+                metrics.recordRequestBytes(category, ((HttpEntityEnclosingRequest) request).getEntity().getContentLength());
+            }
+
+            HttpResponse response;
+            ScheduledFuture<?> watchdog = TowerRequestWatchdog.abortAfter(request, requestTimeout);
+            requestCount.incrementAndGet();
+            long startedAt = metrics.requestStarted(category);
+            long sentAt = System.currentTimeMillis();
+            try {
+                response = player != null ? player.execute(request) : getHttpClient().execute(request);
+                metrics.requestFinished(category, Integer.toString(response.getStatusLine().getStatusCode()), startedAt);
+            } catch(AnsibleTowerException ate) {
+                metrics.requestFinished(category, TowerMetrics.NO_RESPONSE, startedAt);
+                watchdog.cancel(false);
+                throw ate;
+            } catch(IOException ioe) {
+                metrics.requestFinished(category, TowerMetrics.NO_RESPONSE, startedAt);
+                watchdog.cancel(false);
+                if(request.isAborted()) {
+                    // An aborted request can't be sent again
+                    breaker.recordFailure();
+                    throw new IOException("Request to "+ request.getURI() +" did not complete within "+ (requestTimeout / 1000) +" seconds");
+                }
+                boolean neverConnected = ioe instanceof ConnectException || ioe instanceof ConnectTimeoutException;
+                if((!idempotent && !neverConnected) || attempt >= MAX_RETRIES) {
+                    breaker.recordFailure();
+                    throw ioe;
+                }
+                attempt++;
+                if(logger.isEnabled()) { logger.logMessage("Request to "+ request.getURI() +" failed ("+ ioe.getMessage() +"), retry "+ attempt +" of ", MAX_RETRIES); }
+                backoff(attempt);
+                continue;
+            }
+
+            if(response.getEntity() != null) {
+                // Decompresses the body and keeps the watchdog running until the body has been read
+                response.setEntity(new TowerResponseEntity(response.getEntity(), watchdog, n -> {
+                    metrics.recordResponseBytes(category, n);
+                    responseBytes.addAndGet(n);
+                    if(span != null) { span.addResponseBytes(n); }
+                }));
+            } else {
+                watchdog.cancel(false);
+            }
+            if(cassette != null) {
+                // Reads the body, so a failure here is the same as failing to read the response
+                response = cassette.record(request, response, sentAt);
+            }
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            if(statusCode < 500) {
+                breaker.recordSuccess();
+                return response;
+            }
+            if(!idempotent || attempt >= MAX_RETRIES) {
+                breaker.recordFailure();
+                return response;
+            }
+            attempt++;
+            if(logger.isEnabled()) { logger.logMessage("Request to "+ request.getURI() +" returned ("+ statusCode +"), retry "+ attempt +" of ", MAX_RETRIES); }
+            releaseResponse(response);
+            backoff(attempt);
+        }
+    }
+
+    /*
+        Starts the span of a request when this run is traced, and passes its context on to Tower
+     */
+    private TowerTrace.Span startSpan(HttpUriRequest request, String endpoint) {
+        if(trace == null) { return null; }
+        TowerTrace.Span span = trace.startSpan(request.getMethod() +" "+ endpoint);
+        span.setAttribute("http.method", request.getMethod());
+        span.setAttribute("http.target", request.getURI().getRawPath());
+        span.setAttribute("tower.endpoint_category", TowerMetrics.categorize(request.getMethod(), request.getURI().getPath()));
+        request.setHeader(TowerTrace.TRACEPARENT, span.getTraceParent());
+        return span;
+    }
+
+    /*
+        GETs something which rarely changes (templates, inventories, credentials, credential types).
+        Responses with an ETag or Last-Modified are kept in the cache for this Tower and revalidated on the next GET,
+        a 304 from Tower means we skip both the body transfer and the JSON parse.
+        The returned object may be shared with other builds so it must not be modified.
+     */
+    private JSONObject getCachedJSON(String endpoint, String errorMessage) throws AnsibleTowerException {
+        TowerResponseCache cache = TowerResponseCache.forUrl(url);
+        // Different users can see different things so the cache is split by who is asking
+        String cacheKey = getCacheIdentity() +" "+ endpoint;
+        TowerResponseCache.Entry cached = cache.get(cacheKey);
+        HashMap<String, String> headers = new HashMap<String, String>();
+        // A 304 could not be replayed (the replay starts with an empty cache) so recorded runs always get the body
+        if(cached != null && cassette == null) {
+            if(cached.getETag() != null) { headers.put(HttpHeaders.IF_NONE_MATCH, cached.getETag()); }
+            if(cached.getLastModified() != null) { headers.put(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified()); }
+        }
+
+        HttpResponse response = makeRequest(GET, endpoint, null, false, headers);
+        int statusCode = response.getStatusLine().getStatusCode();
+        if(statusCode == 304 && cached != null) {
+            releaseResponse(response);
+            getMetrics().recordCacheHit();
+            logger.logMessage("Using cached response for ", endpoint);
+            return cached.getBody();
+        }
+        if(statusCode != 200) {
+            releaseResponse(response);
+            throw new AnsibleTowerException(errorMessage +" ("+ statusCode +")");
+        }
+
+        JSONObject responseObject;
+        try {
+            responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
+        } catch(IOException | JSONException ioe) {
+            throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
+        }
+
+        Header eTag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        if(eTag != null || lastModified != null) {
+            cache.put(cacheKey, new TowerResponseCache.Entry(
+                    eTag == null ? null : eTag.getValue(),
+                    lastModified == null ? null : lastModified.getValue(),
+                    responseObject
+            ));
+        } else {
+            cache.remove(cacheKey);
+        }
+        return responseObject;
+    }
+
+    private String getCacheIdentity() {
+        if(this.oauthToken != null) { return "token:"+ DigestUtils.sha256Hex(this.oauthToken); }
+        if(this.username != null) { return "user:"+ this.username; }
+        return "anonymous";
+    }
+
+    /*
+        A hash which is the same for the same launch parameters sent to the same Tower by the same user
+     */
+    public String getLaunchKey(List<String> parameters) {
+        StringBuilder key = new StringBuilder(url).append("\n").append(getCacheIdentity());
+        for(String parameter : parameters) {
+            key.append("\n").append(parameter == null ? "" : parameter);
+        }
+        return DigestUtils.sha256Hex(key.toString());
+    }
+
+    private void backoff(int attempt) throws AnsibleTowerException {
+        long ceiling = Math.min(RETRY_MAX_DELAY, RETRY_BASE_DELAY << (attempt - 1));
+        // Half of the delay is fixed and half is random so that builds which failed together don't retry together
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AnsibleTowerException("Interrupted while waiting to retry request to Tower");
+        }
+    }
+
+    private void releaseResponse(HttpResponse response) {
+        if(response == null || response.getEntity() == null) { return; }
+        try {
+            InputStream content = response.getEntity().getContent();
+            if(content != null) { content.close(); }
+        } catch(IOException ioe) {
+            // We are just trying to free up the connection, if this fails there is nothing else to do
+        }
+    }
+
 
     private String dumpRequest(HttpUriRequest theRequest) {
         StringBuilder sb = new StringBuilder();
@@ -273,6 +669,9 @@ public class TowerConnector {
 
 
     private boolean towerSupportsOAuth() throws AnsibleTowerException {
+        Boolean cachedSupport = oAuthSupport.get(url);
+        if(cachedSupport != null) { return cachedSupport; }
+
         // To determine if we support oAuth we will be making a HEAD call to /api/o to see what happens
 
         URI myURI;
@@ -282,22 +681,24 @@ public class TowerConnector {
             throw new AnsibleTowerException("URL issue: "+ e.getMessage());
         }
 
-        logger.logMessage("Checking for oAuth at: "+ myURI.toString());
+        logger.logMessage("Checking for oAuth at: ", myURI);
 
-        DefaultHttpClient httpClient = getHttpClient();
         HttpResponse response;
         try {
-            response = httpClient.execute(new HttpHead(myURI));
-        } catch(Exception e) {
+            response = execute(new HttpHead(myURI), true);
+        } catch(IOException e) {
             throw new AnsibleTowerException("Unable to make Tower HEAD request for oauth: "+ e.getMessage());
         }
 
-        logger.logMessage("oAuth request completed with ("+ response.getStatusLine().getStatusCode() +")");
+        if(logger.isEnabled()) { logger.logMessage("oAuth request completed with ", "("+ response.getStatusLine().getStatusCode() +")"); }
+        releaseResponse(response);
         if(response.getStatusLine().getStatusCode() == 404) {
-            logger.logMessage("Tower does not supoort oAuth");
+            logger.logMessage(() -> "Tower does not supoort oAuth");
+            oAuthSupport.put(url, false);
             return false;
         } else {
-            logger.logMessage("Tower supoorts oAuth");
+            logger.logMessage(() -> "Tower supoorts oAuth");
+            oAuthSupport.put(url, true);
             return true;
         }
     }
@@ -306,22 +707,25 @@ public class TowerConnector {
         // The version is housed on the poing page which is openly accessable
         HttpResponse response = makeRequest(GET, "ping/", null, true);
         if(response.getStatusLine().getStatusCode() != 200) {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned from ping connection ("+ response.getStatusLine().getStatusCode() +")");
         }
-        logger.logMessage("Ping page loaded");
+        logger.logMessage(() -> "Ping page loaded");
 
         JSONObject responseObject;
         String json;
         try {
             json = EntityUtils.toString(response.getEntity());
             responseObject = JSONObject.fromObject(json);
-        } catch (IOException ioe) {
+        } catch(IOException | JSONException ioe) {
             throw new AnsibleTowerException("Unable to read ping response and convert it into json: " + ioe.getMessage());
         }
 
         if (responseObject.containsKey("version")) {
-            logger.logMessage("Successfully got version "+ responseObject.getString("version"));
+            logger.logMessage("Successfully got version ", responseObject.get("version"));
             this.towerVersion = new TowerVersion(responseObject.getString("version"));
+            versions.put(url, this.towerVersion);
+            versionLoadedAt.put(url, System.currentTimeMillis());
         }
     }
 
@@ -332,8 +736,9 @@ public class TowerConnector {
         // straight into calling an authentication test
 
         // This will run an authentication test
-        logger.logMessage("Testing authentication");
+        logger.logMessage(() -> "Testing authentication");
         HttpResponse response = makeRequest(GET, "jobs/");
+        releaseResponse(response);
         if(response.getStatusLine().getStatusCode() != 200) {
             throw new AnsibleTowerException("Failed to get authenticated connection ("+ response.getStatusLine().getStatusCode() +")");
         }
@@ -341,7 +746,7 @@ public class TowerConnector {
 
     public String convertPotentialStringToID(String idToCheck, String api_endpoint) throws AnsibleTowerException, AnsibleTowerItemDoesNotExist {
         JSONObject foundItem = rawLookupByString(idToCheck, api_endpoint);
-        logger.logMessage("Response from lookup: "+ foundItem.getString("id"));
+        logger.logMessage("Response from lookup: ", foundItem.get("id"));
         return foundItem.getString("id");
     }
 
@@ -349,33 +754,22 @@ public class TowerConnector {
         try {
             Integer.parseInt(idToCheck);
             // We got an ID so lets see if we can load that item
-            HttpResponse response = makeRequest(GET, api_endpoint + idToCheck +"/");
-            JSONObject responseObject;
-            try {
-                responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
-                if(!responseObject.containsKey("id")) {
-                    throw new AnsibleTowerItemDoesNotExist("Did not get an ID back from the request");
-                }
-            } catch (IOException ioe) {
-                throw new AnsibleTowerException(ioe.getMessage());
+            JSONObject responseObject = getCachedJSON(api_endpoint + idToCheck +"/", "Unexpected error code returned when loading item");
+            if(!responseObject.containsKey("id")) {
+                throw new AnsibleTowerItemDoesNotExist("Did not get an ID back from the request");
             }
             return responseObject;
         } catch(NumberFormatException nfe) {
 
-            HttpResponse response = null;
+            String lookupEndpoint;
             try {
                 // We were probably given a name, lets try and resolve the name to an ID
-                response = makeRequest(GET, api_endpoint + "?name=" + URLEncoder.encode(idToCheck, "UTF-8"));
+                lookupEndpoint = api_endpoint + "?name=" + URLEncoder.encode(idToCheck, "UTF-8");
             } catch(UnsupportedEncodingException e) {
                 throw new AnsibleTowerException("Unable to encode item name for lookup");
             }
 
-            JSONObject responseObject;
-            try {
-                responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
-            } catch (IOException ioe) {
-                throw new AnsibleTowerException("Unable to convert response for all items into json: " + ioe.getMessage());
-            }
+            JSONObject responseObject = getCachedJSON(lookupEndpoint, "Unexpected error code returned when looking up "+ idToCheck);
             // If we didn't get results, fail
             if(!responseObject.containsKey("results")) {
                 throw new AnsibleTowerException("Response for items does not contain results");
@@ -415,34 +809,14 @@ public class TowerConnector {
         }
 
         // Now get the job template so we can check the options being passed in
-        HttpResponse response = makeRequest(GET, apiEndPoint + jobTemplate + "/");
-        if (response.getStatusLine().getStatusCode() != 200) {
-            throw new AnsibleTowerException("Unexpected error code returned when getting template (" + response.getStatusLine().getStatusCode() + ")");
-        }
-        String json;
-        try {
-            json = EntityUtils.toString(response.getEntity());
-            return JSONObject.fromObject(json);
-        } catch (IOException ioe) {
-            throw new AnsibleTowerException("Unable to read template response and convert it into json: " + ioe.getMessage());
-        }
+        return getCachedJSON(apiEndPoint + jobTemplate + "/", "Unexpected error code returned when getting template");
     }
 
 
-    private void processCredentials(String credential, JSONObject postBody) throws AnsibleTowerException {
+    // Package private for the benchmarks
+    void processCredentials(String credential, JSONObject postBody) throws AnsibleTowerException {
         // Get the machine or vault credential types
-        HttpResponse response = makeRequest(GET,"/credential_types/?or__kind=ssh&or__kind=vault");
-        if(response.getStatusLine().getStatusCode() != 200) {
-            throw new AnsibleTowerException("Unable to lookup the credential types");
-        }
-        JSONObject responseObject;
-        String json;
-        try {
-            json = EntityUtils.toString(response.getEntity());
-            responseObject = JSONObject.fromObject(json);
-        } catch(IOException ioe) {
-            throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
-        }
+        JSONObject responseObject = getCachedJSON("/credential_types/?or__kind=ssh&or__kind=vault", "Unable to lookup the credential types");
 
         if(responseObject.getInt("count") != 2) {
             throw new AnsibleTowerException("Unable to find both machine and vault credentials type");
@@ -462,10 +836,10 @@ public class TowerConnector {
         }
 
         if (vault_credential_type == -1) {
-            logger.logMessage("[ERROR]: Unable to find vault credential type");
+            logger.logMessage(() -> "[ERROR]: Unable to find vault credential type");
         }
         if (machine_credential_type == -1) {
-            logger.logMessage("[ERROR]: Unable to find machine credential type");
+            logger.logMessage(() -> "[ERROR]: Unable to find machine credential type");
         }
         /*
             Credential can be a comma delineated list and in 2.3.x can come in three types:
@@ -579,14 +953,14 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch (IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: " + ioe.getMessage());
             }
 
             if (responseObject.containsKey("id")) {
                 return responseObject.getInt("id");
             }
-            logger.logMessage(json);
+            logger.logBody(json);
             throw new AnsibleTowerException("Did not get an ID from the request. Template response can be found in the jenkins.log");
         } else if(response.getStatusLine().getStatusCode() == 400) {
             String json = null;
@@ -595,8 +969,8 @@ public class TowerConnector {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
             } catch(Exception e) {
-                logger.logMessage("Unable to parse 400 response from json to get details: "+ e.getMessage());
-                logger.logMessage(json);
+                logger.logMessage("Unable to parse 400 response from json to get details: ", e.getMessage());
+                logger.logBody(json);
             }
 
             /*
@@ -614,10 +988,49 @@ public class TowerConnector {
                 throw new AnsibleTowerException("Tower received a bad request (400 response code)\n" + json);
             }
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned ("+ response.getStatusLine().getStatusCode() +")");
         }
     }
 
+    /*
+        Asks Tower to run a job again only against the hosts that failed in it and returns the ID of the new job.
+     */
+    public int relaunchFailedHosts(int jobID) throws AnsibleTowerException {
+        JSONObject postBody = new JSONObject();
+        postBody.put("hosts", "failed");
+        HttpResponse response = makeRequest(POST, "/jobs/"+ jobID +"/relaunch/", postBody);
+
+        if(response.getStatusLine().getStatusCode() == 201) {
+            JSONObject responseObject;
+            String json;
+            try {
+                json = EntityUtils.toString(response.getEntity());
+                responseObject = JSONObject.fromObject(json);
+            } catch(IOException | JSONException ioe) {
+                throw new AnsibleTowerException("Unable to read response and convert it into json: " + ioe.getMessage());
+            }
+
+            if (responseObject.containsKey("id")) {
+                return responseObject.getInt("id");
+            }
+            logger.logBody(json);
+            throw new AnsibleTowerException("Did not get an ID from the relaunch request. Response can be found in the jenkins.log");
+        } else if(response.getStatusLine().getStatusCode() == 400) {
+            // For example {"hosts":["No failed hosts found."]} or a relaunch which needs passwords
+            String json;
+            try {
+                json = EntityUtils.toString(response.getEntity());
+            } catch(IOException ioe) {
+                json = ioe.getMessage();
+            }
+            throw new AnsibleTowerException("Tower refused to relaunch job "+ jobID +": "+ json);
+        } else {
+            releaseResponse(response);
+            throw new AnsibleTowerException("Unexpected error code returned when relaunching job ("+ response.getStatusLine().getStatusCode() +")");
+        }
+    }
+
     public void checkTemplateType(String templateType) throws AnsibleTowerException {
         if(templateType.equalsIgnoreCase(JOB_TEMPLATE_TYPE)) { return; }
         if(templateType.equalsIgnoreCase(WORKFLOW_TEMPLATE_TYPE)) { return; }
@@ -637,10 +1050,11 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch(IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
             }
 
+            lastStatuses.put(jobID, responseObject.optString("status", null));
             if (responseObject.containsKey("finished")) {
                 String finished = responseObject.getString("finished");
                 if(finished == null || finished.equalsIgnoreCase("null")) {
@@ -648,7 +1062,7 @@ public class TowerConnector {
                 } else {
                     // Since we were finished we will now also check for stats
                     if(responseObject.containsKey(ARTIFACTS)) {
-                        logger.logMessage("Processing artifacts");
+                        logger.logMessage(() -> "Processing artifacts");
                         JSONObject artifacts = responseObject.getJSONObject(ARTIFACTS);
                         if(artifacts.containsKey("JENKINS_EXPORT")) {
                             JSONArray exportVariables = artifacts.getJSONArray("JENKINS_EXPORT");
@@ -666,13 +1080,259 @@ public class TowerConnector {
                     return true;
                 }
             }
-            logger.logMessage(json);
+            logger.logBody(json);
             throw new AnsibleTowerException("Did not get a failed status from the request. Job response can be found in the jenkins.log");
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned (" + response.getStatusLine().getStatusCode() + ")");
         }
     }
 
+    /*
+        Loads many jobs of the same type with one request (per 200 jobs) instead of one request per job.
+        The job objects are returned keyed by their ID, jobs which Tower did not return are missing from the map.
+     */
+    public HashMap<Integer, JSONObject> getJobStatuses(Collection<Integer> jobIDs, String templateType) throws AnsibleTowerException {
+        checkTemplateType(templateType);
+
+        String apiEndPoint = "/jobs/";
+        if(templateType.equalsIgnoreCase(WORKFLOW_TEMPLATE_TYPE)) { apiEndPoint = "/workflow_jobs/"; }
+        return getStatuses(apiEndPoint, jobIDs);
+    }
+
+    private HashMap<Integer, JSONObject> getStatuses(String apiEndPoint, Collection<Integer> ids) throws AnsibleTowerException {
+        HashMap<Integer, JSONObject> statuses = new HashMap<Integer, JSONObject>();
+        List<Integer> idList = new ArrayList<Integer>(ids);
+        for(int start = 0; start < idList.size(); start += MAX_PAGE_SIZE) {
+            StringBuilder idFilter = new StringBuilder();
+            for(Integer id : idList.subList(start, Math.min(start + MAX_PAGE_SIZE, idList.size()))) {
+                if(idFilter.length() > 0) { idFilter.append(","); }
+                idFilter.append(id);
+            }
+
+            HttpResponse response = makeRequest(GET, apiEndPoint +"?id__in="+ idFilter +"&page_size="+ MAX_PAGE_SIZE);
+            if(response.getStatusLine().getStatusCode() != 200) {
+                releaseResponse(response);
+                throw new AnsibleTowerException("Unexpected error code returned ("+ response.getStatusLine().getStatusCode() +")");
+            }
+            JSONObject responseObject;
+            try {
+                responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
+            } catch(IOException | JSONException ioe) {
+                throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
+            }
+            if(!responseObject.containsKey("results")) {
+                throw new AnsibleTowerException("Response for statuses does not contain results");
+            }
+            for(Object aResult : responseObject.getJSONArray("results")) {
+                JSONObject anItem = (JSONObject) aResult;
+                statuses.put(anItem.getInt("id"), anItem);
+            }
+        }
+        return statuses;
+    }
+
+    /*
+        Returns the SCM revision the project was last updated to, or an empty string if Tower does not know it.
+        Returns null if the project updates on launch: the revision a job runs is then only known once it started.
+     */
+    public String getProjectRevision(int projectID) throws AnsibleTowerException {
+        JSONObject project = getCachedJSON("/projects/"+ projectID +"/", "Unexpected error code returned when loading project");
+        if(project.optBoolean("scm_update_on_launch", false)) { return null; }
+        String revision = project.optString("scm_revision", "");
+        return revision.equals("null") ? "" : revision;
+    }
+
+    /*
+        Returns the names of all of the hosts in an inventory (given by name or ID) in the order Tower created them.
+     */
+    public List<String> getInventoryHosts(String inventory) throws AnsibleTowerException {
+        if(inventory == null || inventory.isEmpty()) {
+            throw new AnsibleTowerException("Inventory can not be null");
+        }
+        try {
+            inventory = convertPotentialStringToID(inventory, "/inventories/");
+        } catch(AnsibleTowerItemDoesNotExist atidne) {
+            throw new AnsibleTowerException("Inventory "+ inventory +" does not exist in tower");
+        } catch(AnsibleTowerException ate) {
+            throw new AnsibleTowerException("Unable to find inventory: "+ ate.getMessage());
+        }
+
+        List<String> hosts = new ArrayList<String>();
+        int lastID = 0;
+        boolean keepChecking = true;
+        while(keepChecking) {
+            HttpResponse response = makeRequest(GET, "/inventories/"+ inventory +"/hosts/?order_by=id&id__gt="+ lastID +"&page_size="+ MAX_PAGE_SIZE);
+            if(response.getStatusLine().getStatusCode() != 200) {
+                releaseResponse(response);
+                throw new AnsibleTowerException("Unexpected error code returned when loading inventory hosts ("+ response.getStatusLine().getStatusCode() +")");
+            }
+            JSONObject responseObject;
+            try {
+                responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
+            } catch(IOException | JSONException ioe) {
+                throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
+            }
+            if(!responseObject.containsKey("results")) {
+                throw new AnsibleTowerException("Response for inventory hosts does not contain results");
+            }
+            JSONArray results = responseObject.getJSONArray("results");
+            for(Object aResult : results) {
+                JSONObject aHost = (JSONObject) aResult;
+                hosts.add(aHost.getString("name"));
+                lastID = Math.max(lastID, aHost.getInt("id"));
+            }
+            keepChecking = results.size() == MAX_PAGE_SIZE;
+        }
+        return hosts;
+    }
+
+    /*
+        Waits until Tower has capacity for another job (see TowerAdmissionController), returns how long we waited in ms
+     */
+    public long awaitCapacity(int maxLoadPercent, long deadline) throws AnsibleTowerException, InterruptedException {
+        return TowerAdmissionController.forUrl(url).awaitAdmission(this::getInstanceGroupLoad, maxLoadPercent, deadline);
+    }
+
+    /*
+        Returns the consumed capacity of all of the instance groups as a percentage of their total capacity.
+        Throws AnsibleTowerAdmissionUnavailable if no capacity is visible at all (the user can not see any instance
+        group or every node is offline), the load is unknown then rather than full.
+     */
+    public double getInstanceGroupLoad() throws AnsibleTowerException {
+        HttpResponse response = makeRequest(GET, "/instance_groups/?page_size="+ MAX_PAGE_SIZE);
+        if(response.getStatusLine().getStatusCode() != 200) {
+            releaseResponse(response);
+            throw new AnsibleTowerException("Unexpected error code returned when loading instance groups ("+ response.getStatusLine().getStatusCode() +")");
+        }
+        JSONObject responseObject;
+        try {
+            responseObject = JSONObject.fromObject(EntityUtils.toString(response.getEntity()));
+        } catch(IOException | JSONException ioe) {
+            throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
+        }
+        if(!responseObject.containsKey("results")) {
+            throw new AnsibleTowerException("Response for instance groups does not contain results");
+        }
+
+        long capacity = 0;
+        long consumedCapacity = 0;
+        for(Object aResult : responseObject.getJSONArray("results")) {
+            JSONObject instanceGroup = (JSONObject) aResult;
+            capacity += instanceGroup.optLong("capacity", 0);
+            consumedCapacity += instanceGroup.optLong("consumed_capacity", 0);
+        }
+        if(capacity <= 0) {
+            throw new AnsibleTowerAdmissionUnavailable("Tower shows no instance group with any capacity to this user");
+        }
+        return consumedCapacity * 100.0 / capacity;
+    }
+
+    /*
+        Starts a sync of an inventory source (given by name or ID) and returns the ID of the inventory update
+     */
+    public int updateInventorySource(String inventorySource) throws AnsibleTowerException {
+        if(inventorySource == null || inventorySource.isEmpty()) {
+            throw new AnsibleTowerException("Inventory source can not be null");
+        }
+        try {
+            inventorySource = convertPotentialStringToID(inventorySource, "/inventory_sources/");
+        } catch(AnsibleTowerItemDoesNotExist atidne) {
+            throw new AnsibleTowerException("Inventory source "+ inventorySource +" does not exist in tower");
+        } catch(AnsibleTowerException ate) {
+            throw new AnsibleTowerException("Unable to find inventory source: "+ ate.getMessage());
+        }
+        return startUpdate("/inventory_sources/"+ inventorySource +"/update/", "inventory_update");
+    }
+
+    public JSONObject getProject(String project) throws AnsibleTowerException {
+        if(project == null || project.isEmpty()) {
+            throw new AnsibleTowerException("Project can not be null");
+        }
+        try {
+            return rawLookupByString(project, "/projects/");
+        } catch(AnsibleTowerItemDoesNotExist atidne) {
+            throw new AnsibleTowerException("Project "+ project +" does not exist in tower");
+        } catch(AnsibleTowerException ate) {
+            throw new AnsibleTowerException("Unable to find project: "+ ate.getMessage());
+        }
+    }
+
+    /*
+        Starts an SCM update of the project and returns the ID of the project update
+     */
+    public int updateProject(int projectID) throws AnsibleTowerException {
+        return startUpdate("/projects/"+ projectID +"/update/", "project_update");
+    }
+
+    public HashMap<Integer, JSONObject> getProjectUpdateStatuses(Collection<Integer> updateIDs) throws AnsibleTowerException {
+        return getStatuses("/project_updates/", updateIDs);
+    }
+
+    public String getProjectUpdateURL(int updateID) {
+        return url +"/#/jobs/project/"+ updateID;
+    }
+
+    public HashMap<Integer, JSONObject> getInventoryUpdateStatuses(Collection<Integer> updateIDs) throws AnsibleTowerException {
+        return getStatuses("/inventory_updates/", updateIDs);
+    }
+
+    private int startUpdate(String apiEndPoint, String updateKey) throws AnsibleTowerException {
+        HttpResponse response = makeRequest(POST, apiEndPoint);
+        int statusCode = response.getStatusLine().getStatusCode();
+        if(statusCode == 200 || statusCode == 201 || statusCode == 202) {
+            JSONObject responseObject;
+            String json;
+            try {
+                json = EntityUtils.toString(response.getEntity());
+                responseObject = JSONObject.fromObject(json);
+            } catch(IOException | JSONException ioe) {
+                throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
+            }
+            if(responseObject.containsKey(updateKey)) { return responseObject.getInt(updateKey); }
+            if(responseObject.containsKey("id")) { return responseObject.getInt("id"); }
+            logger.logBody(json);
+            throw new AnsibleTowerException("Did not get an ID from the update request. Response can be found in the jenkins.log");
+        } else if(statusCode == 405) {
+            releaseResponse(response);
+            throw new AnsibleTowerException("Tower does not allow this to be updated (405 response code)");
+        } else {
+            releaseResponse(response);
+            throw new AnsibleTowerException("Unexpected error code returned when starting update ("+ statusCode +")");
+        }
+    }
+
+    public static boolean isFinished(JSONObject job) {
+        if(!job.containsKey("finished")) { return false; }
+        String finished = job.getString("finished");
+        return finished != null && !finished.equalsIgnoreCase("null");
+    }
+
+    public void cancelJob(int jobID, String templateType) throws AnsibleTowerException {
+        checkTemplateType(templateType);
+
+        String apiEndPoint = "/jobs/"+ jobID +"/cancel/";
+        if(templateType.equalsIgnoreCase(WORKFLOW_TEMPLATE_TYPE)) { apiEndPoint = "/workflow_jobs/"+ jobID +"/cancel/"; }
+        cancel(apiEndPoint, "Job "+ jobID);
+    }
+
+    public void cancelInventoryUpdate(int updateID) throws AnsibleTowerException {
+        cancel("/inventory_updates/"+ updateID +"/cancel/", "Inventory update "+ updateID);
+    }
+
+    private void cancel(String apiEndPoint, String description) throws AnsibleTowerException {
+        HttpResponse response = makeRequest(POST, apiEndPoint);
+        int statusCode = response.getStatusLine().getStatusCode();
+        releaseResponse(response);
+
+        // Tower answers 202 when the cancel was accepted and 405 when the job is no longer running
+        if(statusCode == 405) {
+            logger.logMessage(description, " could not be canceled, it is not running anymore");
+        } else if(statusCode != 200 && statusCode != 202) {
+            throw new AnsibleTowerException("Unexpected error code returned when canceling "+ description.toLowerCase() +" ("+ statusCode +")");
+        }
+    }
+
     /**
      * @deprecated
      * Use isJobCompleted
@@ -706,11 +1366,11 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch(IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
             }
 
-            logger.logMessage(json);
+            logger.logBody(json);
 
             if(responseObject.containsKey("results")) {
                 for(Object anEventObject : responseObject.getJSONArray("results")) {
@@ -742,7 +1402,7 @@ public class TowerConnector {
                     }
 
                     if(eventId > this.logIdForWorkflows.get(jobID)) { this.logIdForWorkflows.put(jobID, eventId); }
-                    jenkinsLogger.println(job.getString("name") +" => "+ job.getString("status") +" "+ this.getJobURL(job.getInt("id"), JOB_TEMPLATE_TYPE));
+                    jenkinsLogger.println(logPrefix + job.getString("name") +" => "+ job.getString("status") +" "+ this.getJobURL(job.getInt("id"), JOB_TEMPLATE_TYPE));
 
                     if(importWorkflowChildLogs) {
                         if(templateType.getString(UNIFIED_JOB_TYPE).equalsIgnoreCase("job")) {
@@ -753,21 +1413,23 @@ public class TowerConnector {
                         } else if(templateType.getString(UNIFIED_JOB_TYPE).equalsIgnoreCase("inventory_update")) {
                             logInventorySync(job.getInt("id"));
                         } else {
-                            jenkinsLogger.println("Unknown job type in workflow: "+ templateType.getString(UNIFIED_JOB_TYPE));
+                            jenkinsLogger.println(logPrefix +"Unknown job type in workflow: "+ templateType.getString(UNIFIED_JOB_TYPE));
                         }
                     }
                     // Print two spaces to put some space between this and the next task.
-                    jenkinsLogger.println("");
-                    jenkinsLogger.println("");
+                    jenkinsLogger.println(logPrefix);
+                    jenkinsLogger.println(logPrefix);
                 }
             }
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned ("+ response.getStatusLine().getStatusCode() +")");
         }
 
     }
 
-    private void logLine(String output) throws AnsibleTowerException {
+    // Package private for the benchmarks
+    void logLine(String output) throws AnsibleTowerException {
         String[] lines = output.split("\\r\\n");
         for(String line : lines) {
             if(removeColor) {
@@ -775,7 +1437,7 @@ public class TowerConnector {
                 line = removeColor(line);
             }
             if(logTowerEvents) {
-                jenkinsLogger.println(line);
+                jenkinsLogger.println(logPrefix + line);
             }
             // Even if we don't log, we are going to see if this line contains the string JENKINS_EXPORT VAR=value
             if(line.matches("^.*JENKINS_EXPORT.*$")) {
@@ -788,12 +1450,13 @@ public class TowerConnector {
         }
     }
 
-    private String removeColor(String coloredLine) {
+    // Package private for the benchmarks
+    String removeColor(String coloredLine) {
         return coloredLine.replaceAll("\u001B\\[[;\\d]*m", "");
     }
 
 
-    private void logInventorySync(int syncID) throws AnsibleTowerException {
+    public void logInventorySync(int syncID) throws AnsibleTowerException {
         // These are not normal logs, so we don't need to paginate
         String apiURL = "/inventory_updates/"+ syncID +"/";
         HttpResponse response = makeRequest(GET, apiURL);
@@ -803,22 +1466,23 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch(IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
             }
 
-            logger.logMessage(json);
+            logger.logBody(json);
 
             if(responseObject.containsKey("result_stdout")) {
                 logLine(responseObject.getString("result_stdout"));
             }
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned ("+ response.getStatusLine().getStatusCode() +")");
         }
     }
 
 
-    private void logProjectSync(int syncID) throws AnsibleTowerException {
+    public void logProjectSync(int syncID) throws AnsibleTowerException {
         // These are not normal logs, so we don't need to paginate
         String apiURL = "/project_updates/"+ syncID +"/";
         HttpResponse response = makeRequest(GET, apiURL);
@@ -828,16 +1492,17 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch(IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
             }
 
-            logger.logMessage(json);
+            logger.logBody(json);
 
             if(responseObject.containsKey("result_stdout")) {
                 logLine(responseObject.getString("result_stdout"));
             }
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned ("+ response.getStatusLine().getStatusCode() +")");
         }
     }
@@ -855,11 +1520,11 @@ public class TowerConnector {
                 try {
                     json = EntityUtils.toString(response.getEntity());
                     responseObject = JSONObject.fromObject(json);
-                } catch (IOException ioe) {
+                } catch(IOException | JSONException ioe) {
                     throw new AnsibleTowerException("Unable to read response and convert it into json: " + ioe.getMessage());
                 }
 
-                logger.logMessage(json);
+                logger.logBody(json);
 
                 if(responseObject.containsKey("next") && responseObject.getString("next") == null || responseObject.getString("next").equalsIgnoreCase("null")) {
                     keepChecking = false;
@@ -869,17 +1534,38 @@ public class TowerConnector {
                         Integer eventId = ((JSONObject) anEvent).getInt("id");
                         String stdOut = ((JSONObject) anEvent).getString("stdout");
                         logLine(stdOut);
+                        recordHostFailure(jobID, (JSONObject) anEvent);
                         if (eventId > this.logIdForJobs.get(jobID)) {
                             this.logIdForJobs.put(jobID, eventId);
                         }
                     }
                 }
             } else {
+                releaseResponse(response);
                 throw new AnsibleTowerException("Unexpected error code returned (" + response.getStatusLine().getStatusCode() + ")");
             }
         }
     }
 
+    private void recordHostFailure(int jobID, JSONObject event) {
+        String eventType = event.optString("event", "");
+        if(!eventType.equals("runner_on_failed") && !eventType.equals("runner_on_unreachable")) { return; }
+
+        // A failure on a task with ignore_errors does not stop the play so we don't count it either
+        JSONObject eventData = event.optJSONObject("event_data");
+        if(eventData != null && eventData.optBoolean("ignore_errors", false)) { return; }
+
+        String host = event.optString("host_name", "");
+        if((host.isEmpty() || host.equals("null")) && eventData != null) { host = eventData.optString("host", ""); }
+        if(host.isEmpty() || host.equals("null")) { return; }
+
+        if(!failedHosts.containsKey(jobID)) { failedHosts.put(jobID, new LinkedHashMap<String, String>()); }
+        if(!failedHosts.get(jobID).containsKey(host)) {
+            String reason = eventType.equals("runner_on_unreachable") ? "unreachable" : "failed";
+            failedHosts.get(jobID).put(host, reason +" on task '"+ event.optString("task", "") +"'");
+        }
+    }
+
     public boolean isJobFailed(int jobID, String templateType) throws AnsibleTowerException {
         checkTemplateType(templateType);
 
@@ -893,16 +1579,17 @@ public class TowerConnector {
             try {
                 json = EntityUtils.toString(response.getEntity());
                 responseObject = JSONObject.fromObject(json);
-            } catch(IOException ioe) {
+            } catch(IOException | JSONException ioe) {
                 throw new AnsibleTowerException("Unable to read response and convert it into json: "+ ioe.getMessage());
             }
 
             if (responseObject.containsKey("failed")) {
                 return responseObject.getBoolean("failed");
             }
-            logger.logMessage(json);
+            logger.logBody(json);
             throw new AnsibleTowerException("Did not get a failed status from the request. Job response can be found in the jenkins.log");
         } else {
+            releaseResponse(response);
             throw new AnsibleTowerException("Unexpected error code returned (" + response.getStatusLine().getStatusCode() + ")");
         }
     }
@@ -925,7 +1612,7 @@ public class TowerConnector {
     }
 
     private String getAuthToken() throws AnsibleTowerException {
-        logger.logMessage("Getting auth token for "+ this.username);
+        logger.logMessage("Getting auth token for ", this.username);
 
         String tokenURI = url + this.buildEndpoint("/authtoken/");
         HttpPost tokenRequest = new HttpPost(tokenURI);
@@ -942,15 +1629,22 @@ public class TowerConnector {
 
         tokenRequest.setHeader("Content-Type", "application/json");
 
-        DefaultHttpClient httpClient = getHttpClient();
         HttpResponse response;
+        TowerTrace.Span span = startSpan(tokenRequest, "/authtoken/");
         try {
-            logger.logMessage("Calling for token at "+ tokenURI);
-            response = httpClient.execute(tokenRequest);
-        } catch(Exception e) {
+            logger.logMessage("Calling for token at ", tokenURI);
+            response = execute(tokenRequest, false, span);
+            if(span != null) { span.setAttribute("http.status_code", response.getStatusLine().getStatusCode()); }
+        } catch(IOException e) {
+            if(span != null) { span.setError(e.getMessage()); }
             throw new AnsibleTowerException("Unable to make request for an authtoken: "+ e.getMessage());
+        } finally {
+            if(span != null) { span.end(); }
         }
 
+        if(response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+            releaseResponse(response);
+        }
         if(response.getStatusLine().getStatusCode() == 400) {
             throw new AnsibleTowerException("Username/password invalid");
         } else if(response.getStatusLine().getStatusCode() == 404) {
@@ -964,15 +1658,15 @@ public class TowerConnector {
         try {
             json = EntityUtils.toString(response.getEntity());
             responseObject = JSONObject.fromObject(json);
-        } catch (IOException ioe) {
+        } catch(IOException | JSONException ioe) {
             throw new AnsibleTowerException("Unable to read response and convert it into json: " + ioe.getMessage());
         }
 
         if (responseObject.containsKey("token")) {
-            logger.logMessage("AuthToken acquired");
+            logger.logMessage(() -> "AuthToken acquired");
             return responseObject.getString("token");
         }
-        logger.logMessage(json);
+        logger.logBody(json);
         throw new AnsibleTowerException("Did not get a token from the request. Template response can be found in the jenkins.log");
     }
 }
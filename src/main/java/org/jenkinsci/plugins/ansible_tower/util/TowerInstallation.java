@@ -18,6 +18,7 @@ import hudson.util.ListBoxModel;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
@@ -32,6 +33,10 @@ public class TowerInstallation extends AbstractDescribableImpl<TowerInstallation
     private final String towerCredentialsId;
     private final boolean towerTrustCert;
     private final boolean enableDebugging;
+    // Timeouts are in seconds, 0 means use the default from TowerConnector
+    private int connectTimeout = 0;
+    private int readTimeout = 0;
+    private int requestTimeout = 0;
 
     @DataBoundConstructor
     public TowerInstallation(String towerDisplayName, String towerURL, String towerCredentialsId, boolean towerTrustCert, boolean enableDebugging) {
@@ -47,12 +52,37 @@ public class TowerInstallation extends AbstractDescribableImpl<TowerInstallation
     public String getTowerCredentialsId() { return this.towerCredentialsId; }
     public boolean getTowerTrustCert() { return this.towerTrustCert; }
     public boolean getEnableDebugging() { return this.enableDebugging; }
+    public int getConnectTimeout() { return this.connectTimeout; }
+    public int getReadTimeout() { return this.readTimeout; }
+    public int getRequestTimeout() { return this.requestTimeout; }
+    public String getPrewarmStatus() { return TowerPrewarmer.getStatus(this.towerDisplayName); }
+    public String getConnectionPoolKey() { return TowerConnector.getPoolKey(this.towerURL, this.towerTrustCert, this.connectTimeout, this.readTimeout); }
+
+    @DataBoundSetter
+    public void setConnectTimeout(int connectTimeout) { this.connectTimeout = connectTimeout; }
+    @DataBoundSetter
+    public void setReadTimeout(int readTimeout) { this.readTimeout = readTimeout; }
+    @DataBoundSetter
+    public void setRequestTimeout(int requestTimeout) { this.requestTimeout = requestTimeout; }
 
     public TowerConnector getTowerConnector() {
-        return TowerInstallation.getTowerConnectorStatic(this.towerURL, this.towerCredentialsId, this.towerTrustCert, this.enableDebugging);
+        return getTowerConnector(null);
+    }
+
+    // Every request of the connector, including the ones made while it is created, gets a span in the trace
+    public TowerConnector getTowerConnector(TowerTrace trace) {
+        return TowerInstallation.getTowerConnectorStatic(this.towerURL, this.towerCredentialsId, this.towerTrustCert, this.enableDebugging, this.connectTimeout, this.readTimeout, this.requestTimeout, trace);
     }
 
     public static TowerConnector getTowerConnectorStatic(String towerURL, String towerCredentialsId, boolean trustCert, boolean enableDebugging) {
+        return getTowerConnectorStatic(towerURL, towerCredentialsId, trustCert, enableDebugging, 0, 0, 0);
+    }
+
+    public static TowerConnector getTowerConnectorStatic(String towerURL, String towerCredentialsId, boolean trustCert, boolean enableDebugging, int connectTimeout, int readTimeout, int requestTimeout) {
+        return getTowerConnectorStatic(towerURL, towerCredentialsId, trustCert, enableDebugging, connectTimeout, readTimeout, requestTimeout, null);
+    }
+
+    public static TowerConnector getTowerConnectorStatic(String towerURL, String towerCredentialsId, boolean trustCert, boolean enableDebugging, int connectTimeout, int readTimeout, int requestTimeout, TowerTrace trace) {
         String username = null;
         String password = null;
         String oauth_token = null;
@@ -71,7 +101,7 @@ public class TowerInstallation extends AbstractDescribableImpl<TowerInstallation
                 }
             }
         }
-        TowerConnector testConnector = new TowerConnector(towerURL, username, password, oauth_token, trustCert, enableDebugging);
+        TowerConnector testConnector = new TowerConnector(towerURL, username, password, oauth_token, trustCert, enableDebugging, connectTimeout, readTimeout, requestTimeout, trace);
         return testConnector;
     }
 
@@ -82,10 +112,13 @@ public class TowerInstallation extends AbstractDescribableImpl<TowerInstallation
                 @QueryParameter("towerURL") final String towerURL,
                 @QueryParameter("towerCredentialsId") final String towerCredentialsId,
                 @QueryParameter("towerTrustCert") final boolean towerTrustCert,
-                @QueryParameter("enableDebugging") final boolean enableDebugging
+                @QueryParameter("enableDebugging") final boolean enableDebugging,
+                @QueryParameter("connectTimeout") final int connectTimeout,
+                @QueryParameter("readTimeout") final int readTimeout,
+                @QueryParameter("requestTimeout") final int requestTimeout
         ) {
             TowerLogger.writeMessage("Starting to test connection with ("+ towerURL +") and ("+ towerCredentialsId +") and ("+ towerTrustCert +") with debugging ("+ enableDebugging +")");
-            TowerConnector testConnector = TowerInstallation.getTowerConnectorStatic(towerURL, towerCredentialsId, towerTrustCert, enableDebugging);
+            TowerConnector testConnector = TowerInstallation.getTowerConnectorStatic(towerURL, towerCredentialsId, towerTrustCert, enableDebugging, connectTimeout, readTimeout, requestTimeout);
             try {
                 testConnector.testConnection();
                 return FormValidation.ok("Success");
@@ -0,0 +1,269 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Watches one Tower job (or project update) on behalf of every build that is waiting for it.
+    A single background poller fetches the job's events and status, the output is fanned out to the console of each
+    build that asked for it. Builds which attach late first get the output seen so far.
+    The poller stops once the job is done or when no build is waiting for it anymore (the job itself is left alone).
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerNotResponding;
+
+public class TowerJobMonitor {
+    private static final long POLL_INTERVAL = 3000;
+    private static final int MAX_REPLAY_LINES = 10000;
+    private static final HashMap<String, TowerJobMonitor> monitors = new HashMap<String, TowerJobMonitor>();
+    private static final ExecutorService pollers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Ansible Tower job monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String key;
+    private final TowerConnector connector;
+    private final int jobID;
+    private final String templateType;
+    private final boolean importWorkflowChildLogs;
+    private final LinkedList<String> lines = new LinkedList<String>();
+    private final List<Subscriber> subscribers = new ArrayList<Subscriber>();
+    private int droppedLines = 0;
+    private int attached = 0;
+    private boolean stopped = false;
+    private boolean done = false;
+    private boolean successful = false;
+    private Map<String, String> exports = new HashMap<String, String>();
+    private String error = null;
+
+    private TowerJobMonitor(String key, TowerConnector connector, int jobID, String templateType, boolean removeColor, boolean importWorkflowChildLogs) {
+        this.key = key;
+        this.connector = connector;
+        this.jobID = jobID;
+        this.templateType = templateType;
+        this.importWorkflowChildLogs = importWorkflowChildLogs;
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(removeColor);
+        try {
+            connector.setJenkinsLogger(new PrintStream(new LineSink(), true, "UTF-8"));
+        } catch(UnsupportedEncodingException uee) {
+            // UTF-8 is always there
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /*
+        Returns the monitor for the key, starting one (with a connector from the factory) if nobody is watching yet.
+        Every attach must be followed by a follow() which releases it again.
+        The connector is made outside of the lock since that can take a while (credentials lookup), if another build
+        started a monitor for the key in the meantime we join that one and drop ours.
+     */
+    public static TowerJobMonitor attach(String key, Supplier<TowerConnector> connectorFactory, int jobID, String templateType, boolean removeColor, boolean importWorkflowChildLogs) {
+        TowerJobMonitor monitor = join(key);
+        if(monitor != null) { return monitor; }
+
+        TowerJobMonitor candidate = new TowerJobMonitor(key, connectorFactory.get(), jobID, templateType, removeColor, importWorkflowChildLogs);
+        synchronized(monitors) {
+            monitor = join(key);
+            if(monitor != null) { return monitor; }
+            monitors.put(key, candidate);
+            pollers.submit(candidate::poll);
+            synchronized(candidate) { candidate.attached++; }
+            return candidate;
+        }
+    }
+
+    // The running monitor for the key with us attached to it, or null if there is none
+    private static TowerJobMonitor join(String key) {
+        synchronized(monitors) {
+            TowerJobMonitor monitor = monitors.get(key);
+            if(monitor != null) {
+                synchronized(monitor) { monitor.attached++; }
+            }
+            return monitor;
+        }
+    }
+
+    public static class Result {
+        private final boolean successful;
+        private final Map<String, String> exports;
+
+        private Result(boolean successful, Map<String, String> exports) {
+            this.successful = successful;
+            this.exports = exports;
+        }
+
+        public boolean isSuccessful() { return successful; }
+        public Map<String, String> getExports() { return exports; }
+    }
+
+    /*
+        Copies the job output to the logger (if importLogs is set) until the job is done and returns its result
+     */
+    public Result follow(PrintStream logger, boolean importLogs, long deadline) throws AnsibleTowerException, InterruptedException {
+        Subscriber subscriber = new Subscriber(logger, importLogs);
+        try {
+            // Holding the subscriber keeps lines published in the meantime behind the replay
+            synchronized(subscriber) {
+                List<String> replay;
+                int dropped;
+                synchronized(this) {
+                    replay = importLogs ? new ArrayList<String>(lines) : Collections.<String>emptyList();
+                    dropped = droppedLines;
+                    subscribers.add(subscriber);
+                }
+                if(importLogs && dropped > 0) { logger.println("("+ dropped +" earlier lines are not shown)"); }
+                for(String line : replay) { logger.println(line); }
+            }
+
+            synchronized(this) {
+                while(!done) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0) {
+                        throw new AnsibleTowerException("Tower job "+ jobID +" did not complete in time");
+                    }
+                    wait(Math.min(remaining, POLL_INTERVAL));
+                }
+                if(error != null) { throw new AnsibleTowerException(error); }
+                return new Result(successful, exports);
+            }
+        } finally {
+            detach(subscriber);
+        }
+    }
+
+    public synchronized int getAttached() { return attached; }
+
+    // For a build which attached but is not going to follow after all
+    public void leave() { detach(null); }
+
+    private void detach(Subscriber subscriber) {
+        synchronized(monitors) {
+            synchronized(this) {
+                subscribers.remove(subscriber);
+                attached--;
+                if(attached <= 0 && !done) {
+                    // Nobody is waiting anymore, stop polling. The next build to attach starts over.
+                    stopped = true;
+                    monitors.remove(key, this);
+                }
+            }
+        }
+    }
+
+    private void poll() {
+        try {
+            while(!isStopped()) {
+                try {
+                    if(templateType.equalsIgnoreCase(TowerConnector.PROJECT_UPDATE_TYPE)) {
+                        // Project updates have no events, their output is only complete once they are done
+                        JSONObject status = connector.getProjectUpdateStatuses(Collections.singletonList(jobID)).get(jobID);
+                        if(status != null && TowerConnector.isFinished(status)) {
+                            connector.logProjectSync(jobID);
+                            finish(!status.optBoolean("failed", false), new HashMap<String, String>(), null);
+                            return;
+                        }
+                    } else {
+                        connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+                        if(connector.isJobCompleted(jobID, templateType)) {
+                            connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+                            boolean failed = connector.isJobFailed(jobID, templateType);
+                            finish(!failed, new HashMap<String, String>(connector.getJenkinsExports()), null);
+                            return;
+                        }
+                    }
+                } catch(AnsibleTowerNotResponding atnr) {
+                    // The job keeps running while Tower is unreachable, the builds give up at their own deadline
+                }
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch(AnsibleTowerException ate) {
+            finish(false, new HashMap<String, String>(), ate.getMessage());
+        } catch(InterruptedException ie) {
+            finish(false, new HashMap<String, String>(), "Monitoring of Tower job "+ jobID +" was interrupted");
+        } catch(RuntimeException re) {
+            finish(false, new HashMap<String, String>(), "Monitoring of Tower job "+ jobID +" failed: "+ re);
+        } finally {
+            // Builds waiting for the job must never be left waiting for a poller which is gone
+            if(!isDone()) {
+                finish(false, new HashMap<String, String>(), "Monitoring of Tower job "+ jobID +" stopped unexpectedly");
+            }
+        }
+    }
+
+    private synchronized boolean isStopped() { return stopped; }
+    private synchronized boolean isDone() { return done; }
+
+    private void finish(boolean successful, Map<String, String> exports, String error) {
+        synchronized(monitors) {
+            synchronized(this) {
+                this.successful = successful;
+                this.exports = exports;
+                this.error = error;
+                this.done = true;
+                monitors.remove(key, this);
+                notifyAll();
+            }
+        }
+    }
+
+    // Only the poller publishes; writing to the consoles happens outside the lock so a slow one does not hold up attach and detach
+    private void publish(String line) {
+        List<Subscriber> receivers;
+        synchronized(this) {
+            lines.add(line);
+            if(lines.size() > MAX_REPLAY_LINES) {
+                lines.removeFirst();
+                droppedLines++;
+            }
+            receivers = new ArrayList<Subscriber>(subscribers);
+        }
+        for(Subscriber subscriber : receivers) {
+            subscriber.println(line);
+        }
+    }
+
+    private static class Subscriber {
+        private final PrintStream logger;
+        private final boolean importLogs;
+
+        private Subscriber(PrintStream logger, boolean importLogs) {
+            this.logger = logger;
+            this.importLogs = importLogs;
+        }
+
+        private synchronized void println(String line) {
+            if(importLogs) { logger.println(line); }
+        }
+    }
+
+    // Collects what the connector prints and hands it out a line at a time
+    private class LineSink extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            if(b == '\n') {
+                String line = new String(buffer.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+                buffer.reset();
+                publish(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+            } else {
+                buffer.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Lets builds which ask for the exact same launch at the same time share one Tower job.
+    Launches are keyed on a hash of the Tower, the user and all of the expanded launch parameters.
+    The first build to ask owns the launch and submits the template, everyone asking while it is in flight waits for
+    the job ID and then follows that job instead of starting their own.
+    A launch stops being shared as soon as any build watching it is done with it, so the next build starts a new job.
+    The launch also counts who is still watching the job: a build which gives up early (abort, timeout, fail fast)
+    only cancels the job when nobody else is following it anymore.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TowerLaunchCoalescer {
+    private static final ConcurrentHashMap<String, Launch> inFlight = new ConcurrentHashMap<String, Launch>();
+
+    /*
+        Returns a new launch owned by the caller, or null if someone else already owns a launch with this key
+     */
+    public static Launch claim(String key) {
+        Launch launch = new Launch(key);
+        return inFlight.putIfAbsent(key, launch) == null ? launch : null;
+    }
+
+    /*
+        Returns the launch in flight for this key, or null if there is none
+     */
+    public static Launch find(String key) {
+        return inFlight.get(key);
+    }
+
+    public static class Launch {
+        private final String key;
+        private final CountDownLatch submitted = new CountDownLatch(1);
+        private volatile int jobID = -1;
+        private volatile String jobURL = null;
+        private volatile boolean notNeeded = false;
+        // The owner and every build following it which is not done with the job yet
+        private int watchers = 1;
+        private boolean open = true;
+
+        private Launch(String key) {
+            this.key = key;
+        }
+
+        public int getJobID()         { return jobID; }
+        public String getJobURL()     { return jobURL; }
+        // True once the owner found there was nothing to launch, follow returns false for such a launch
+        public boolean isNotNeeded()  { return notNeeded; }
+
+        // Called by the owner once Tower has accepted the job
+        public void launched(int jobID, String jobURL) {
+            this.jobID = jobID;
+            this.jobURL = jobURL;
+            submitted.countDown();
+        }
+
+        // Called by the owner if the job could not be launched, anyone waiting will try again themselves
+        public void failed() {
+            close();
+            submitted.countDown();
+        }
+
+        // Called by the owner if nothing has to be launched after all, anyone waiting can take that answer as theirs
+        public void notNeeded() {
+            notNeeded = true;
+            close();
+            submitted.countDown();
+        }
+
+        /*
+            Called once by every build watching the job when it is done with it.
+            Returns true if no other build is watching the job anymore.
+         */
+        public synchronized boolean finished() {
+            close();
+            watchers--;
+            return watchers <= 0;
+        }
+
+        private synchronized void close() {
+            open = false;
+            inFlight.remove(key, this);
+        }
+
+        /*
+            Waits until the owner has launched the job (true) or given up (false).
+            A launch which stopped being shared in the meantime can not be followed anymore either.
+         */
+        public boolean follow(long deadline) throws InterruptedException {
+            long timeout = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.currentTimeMillis());
+            if(!submitted.await(timeout, TimeUnit.MILLISECONDS) || jobID < 0) {
+                return false;
+            }
+            synchronized(this) {
+                if(!open) { return false; }
+                watchers++;
+            }
+            return true;
+        }
+    }
+}
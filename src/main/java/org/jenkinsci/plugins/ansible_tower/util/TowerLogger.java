@@ -1,20 +1,67 @@
 package org.jenkinsci.plugins.ansible_tower.util;
 
 /*
-    This class is intended for potential future use. All non-Jenkins logging in the other classes
-    flow through here.
+    All non-Jenkins logging in the other classes flows through here, into java.util.logging under
+    org.jenkinsci.plugins.ansible_tower (so it shows up in the Jenkins system log and can be recorded there).
+    Debug messages are written when debugging is enabled for the installation (logged at INFO) or when the logger is
+    set to FINE in Jenkins. Otherwise the message is not built: it is passed as a supplier or as a text and a detail
+    which are only concatenated once we know it will be written. A supplier which captures variables is still
+    allocated on every call, as is a detail which has to be computed or boxed, so callers on hot paths pass
+    something which already exists or check isEnabled first. Response bodies are cut to MAX_BODY_LENGTH characters.
  */
 
+import java.net.URI;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 public class TowerLogger {
+    private static final Logger LOGGER = Logger.getLogger("org.jenkinsci.plugins.ansible_tower");
+    static final int MAX_BODY_LENGTH = 2000;
+
     private boolean debugging = false;
+    private String installation = "";
+
     public void setDebugging(boolean debugging) { this.debugging = debugging; }
-    public void logMessage(String message) {
-        if(debugging) {
-            writeMessage(message);
-        }
+    public boolean isDebugging() { return debugging; }
+    // Put in front of every message so the output of different Towers can be told apart
+    public void setInstallation(String installation) { this.installation = installation == null ? "" : installation; }
+
+    public boolean isEnabled() {
+        return debugging || LOGGER.isLoggable(Level.FINE);
+    }
+
+    public void logMessage(Supplier<String> message) {
+        if(isEnabled()) { write(message.get()); }
+    }
+
+    public void logMessage(String text, Object detail) {
+        if(isEnabled()) { write(text + detail); }
+    }
+
+    public void logRequest(String method, URI uri) {
+        if(isEnabled()) { write(method +" "+ uri); }
+    }
+
+    public void logResponse(String method, URI uri, int statusCode, long millis) {
+        if(isEnabled()) { write(method +" "+ uri +" completed with ("+ statusCode +") in "+ millis +" ms"); }
+    }
+
+    public void logBody(String body) {
+        if(isEnabled()) { write(truncate(body)); }
+    }
+
+    static String truncate(String body) {
+        if(body == null || body.length() <= MAX_BODY_LENGTH) { return body; }
+        return body.substring(0, MAX_BODY_LENGTH) +"... ("+ (body.length() - MAX_BODY_LENGTH) +" more characters)";
+    }
+
+    private void write(String message) {
+        LOGGER.log(debugging ? Level.INFO : Level.FINE, "[Ansible-Tower] "+ (installation.isEmpty() ? "" : "["+ installation +"] ") + message);
     }
 
+    // Always written, for things an administrator should see without turning on debugging
     public static void writeMessage(String message) {
-        System.out.println("[Ansible-Tower] "+ message);
+        LOGGER.info("[Ansible-Tower] "+ message);
     }
 }
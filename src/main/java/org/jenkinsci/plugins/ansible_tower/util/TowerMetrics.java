@@ -0,0 +1,249 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Counts what the plugin asks of each Tower: requests by endpoint category and status code, latency histograms,
+    bytes sent and received, retries, response cache hits and the requests currently in flight.
+    There is one registry per Tower URL, everything is recorded from TowerConnector.execute so every request
+    (including logging in) is seen exactly once per attempt.
+    The numbers are exposed to the Metrics plugin (TowerMetricsProvider) and in the Prometheus text format
+    (TowerMetricsAction).
+    A connector which polls from the build agent counts into a registry of its own, which is sent back and added
+    to the one of its Tower here.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+public class TowerMetrics implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final String LAUNCH = "launch";
+    public static final String STATUS = "status";
+    public static final String JOB_EVENTS = "job_events";
+    public static final String WORKFLOW_NODES = "workflow_nodes";
+    public static final String LOOKUP = "lookup";
+    public static final String AUTH = "auth";
+    public static final String[] CATEGORIES = { LAUNCH, STATUS, JOB_EVENTS, WORKFLOW_NODES, LOOKUP, AUTH };
+    // Upper bounds in seconds, Tower calls range from a few ms (status) to many seconds (big event pages)
+    static final double[] BUCKETS = { 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+    // What is recorded when no response came back at all (connection refused, timeout)
+    public static final String NO_RESPONSE = "error";
+
+    private static final ConcurrentHashMap<String, TowerMetrics> registries = new ConcurrentHashMap<String, TowerMetrics>();
+    private static final Pattern UNIFIED_JOB = Pattern.compile(".*/(jobs|workflow_jobs|inventory_updates|project_updates)/(\\d+/)?");
+    private static final Pattern CONTROL = Pattern.compile(".*/(launch|relaunch|update|cancel)/");
+
+    private final String url;
+    private final ConcurrentHashMap<String, Category> categories = new ConcurrentHashMap<String, Category>();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    TowerMetrics(String url) {
+        this.url = url;
+    }
+
+    public static TowerMetrics forUrl(String url) {
+        return registries.computeIfAbsent(url == null ? "" : url, TowerMetrics::new);
+    }
+
+    public static Collection<TowerMetrics> all() {
+        return new ArrayList<TowerMetrics>(registries.values());
+    }
+
+    /*
+        Sorts a request into one of the CATEGORIES by its method and path (query strings are ignored)
+     */
+    static String categorize(String method, String path) {
+        if(path == null) { return LOOKUP; }
+        if(path.endsWith("/authtoken/") || path.endsWith("/o/token/") || path.contains("/tokens/")) { return AUTH; }
+        if(path.contains("/workflow_nodes/")) { return WORKFLOW_NODES; }
+        if(path.contains("/job_events/") || path.contains("/events/") || path.contains("/stdout/")) { return JOB_EVENTS; }
+        if("POST".equalsIgnoreCase(method) && CONTROL.matcher(path).matches()) { return LAUNCH; }
+        if(path.endsWith("/instance_groups/") || UNIFIED_JOB.matcher(path).matches()) { return STATUS; }
+        return LOOKUP;
+    }
+
+    public String getUrl() { return url; }
+
+    Category category(String category) {
+        return categories.computeIfAbsent(category, k -> new Category());
+    }
+
+    // Returns what requestFinished needs to work out the latency
+    public long requestStarted(String category) {
+        category(category).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void requestFinished(String category, String status, long startedAt) {
+        Category c = category(category);
+        c.inFlight.decrementAndGet();
+        c.observe(System.nanoTime() - startedAt);
+        c.byStatus.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void recordRetry(String category)                 { category(category).retries.incrementAndGet(); }
+    public void recordRequestBytes(String category, long n)  { if(n > 0) { category(category).requestBytes.addAndGet(n); } }
+    public void recordResponseBytes(String category, long n) { if(n > 0) { category(category).responseBytes.addAndGet(n); } }
+    public void recordCacheHit()                             { cacheHits.incrementAndGet(); }
+
+    public long getCacheHits() { return cacheHits.get(); }
+
+    public Map<String, Category> getCategories() {
+        return new TreeMap<String, Category>(categories);
+    }
+
+    // Adds the counts of another registry (for the same Tower) to this one, except for what is still in flight
+    public void add(TowerMetrics other) {
+        for(Map.Entry<String, Category> category : other.categories.entrySet()) {
+            category(category.getKey()).add(category.getValue());
+        }
+        cacheHits.addAndGet(other.getCacheHits());
+    }
+
+    public static class Category implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final ConcurrentHashMap<String, AtomicLong> byStatus = new ConcurrentHashMap<String, AtomicLong>();
+        // One slot per bucket plus one for everything slower, not cumulative
+        private final AtomicLong[] buckets = new AtomicLong[BUCKETS.length + 1];
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        private Category() {
+            for(int i = 0; i < buckets.length; i++) { buckets[i] = new AtomicLong(); }
+        }
+
+        private void observe(long nanos) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while(bucket < BUCKETS.length && seconds > BUCKETS[bucket]) { bucket++; }
+            buckets[bucket].incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            count.incrementAndGet();
+        }
+
+        private void add(Category other) {
+            for(Map.Entry<String, AtomicLong> entry : other.byStatus.entrySet()) {
+                byStatus.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).addAndGet(entry.getValue().get());
+            }
+            for(int i = 0; i < buckets.length; i++) { buckets[i].addAndGet(other.buckets[i].get()); }
+            count.addAndGet(other.count.get());
+            totalNanos.addAndGet(other.totalNanos.get());
+            retries.addAndGet(other.retries.get());
+            requestBytes.addAndGet(other.requestBytes.get());
+            responseBytes.addAndGet(other.responseBytes.get());
+        }
+
+        public Map<String, Long> getRequestsByStatus() {
+            TreeMap<String, Long> requests = new TreeMap<String, Long>();
+            for(Map.Entry<String, AtomicLong> entry : byStatus.entrySet()) { requests.put(entry.getKey(), entry.getValue().get()); }
+            return requests;
+        }
+
+        public long getErrors() {
+            long errors = 0;
+            for(Map.Entry<String, AtomicLong> entry : byStatus.entrySet()) {
+                if(entry.getKey().equals(NO_RESPONSE) || entry.getKey().compareTo("400") >= 0) { errors += entry.getValue().get(); }
+            }
+            return errors;
+        }
+
+        // Cumulative counts, one per entry of BUCKETS followed by the total
+        public long[] getCumulativeBuckets() {
+            long[] cumulative = new long[BUCKETS.length + 1];
+            long running = 0;
+            for(int i = 0; i < cumulative.length; i++) {
+                running += buckets[i].get();
+                cumulative[i] = running;
+            }
+            return cumulative;
+        }
+
+        public long getCount()         { return count.get(); }
+        public double getTotalSeconds() { return totalNanos.get() / 1e9; }
+        public long getInFlight()      { return inFlight.get(); }
+        public long getRetries()       { return retries.get(); }
+        public long getRequestBytes()  { return requestBytes.get(); }
+        public long getResponseBytes() { return responseBytes.get(); }
+    }
+
+    /*
+        All of the registries in the Prometheus text exposition format (version 0.0.4)
+     */
+    public static String toPrometheus(Collection<TowerMetrics> registries) {
+        List<TowerMetrics> sorted = new ArrayList<TowerMetrics>(registries);
+        sorted.sort((a, b) -> a.url.compareTo(b.url));
+        StringBuilder out = new StringBuilder();
+
+        header(out, "ansible_tower_requests_total", "counter", "Requests sent to Tower by endpoint category and status code");
+        for(TowerMetrics metrics : sorted) {
+            for(Map.Entry<String, Category> category : metrics.getCategories().entrySet()) {
+                for(Map.Entry<String, Long> status : category.getValue().getRequestsByStatus().entrySet()) {
+                    sample(out, "ansible_tower_requests_total", labels(metrics.url, category.getKey()) + ",code=\"" + status.getKey() + "\"", status.getValue());
+                }
+            }
+        }
+
+        header(out, "ansible_tower_request_duration_seconds", "histogram", "Time until Tower answered, per attempt");
+        for(TowerMetrics metrics : sorted) {
+            for(Map.Entry<String, Category> category : metrics.getCategories().entrySet()) {
+                String labels = labels(metrics.url, category.getKey());
+                long[] cumulative = category.getValue().getCumulativeBuckets();
+                for(int i = 0; i < BUCKETS.length; i++) {
+                    sample(out, "ansible_tower_request_duration_seconds_bucket", labels + ",le=\"" + BUCKETS[i] + "\"", cumulative[i]);
+                }
+                sample(out, "ansible_tower_request_duration_seconds_bucket", labels + ",le=\"+Inf\"", cumulative[BUCKETS.length]);
+                out.append("ansible_tower_request_duration_seconds_sum{").append(labels).append("} ").append(category.getValue().getTotalSeconds()).append('\n');
+                sample(out, "ansible_tower_request_duration_seconds_count", labels, cumulative[BUCKETS.length]);
+            }
+        }
+
+        categoryCounter(out, sorted, "ansible_tower_request_bytes_total", "counter", "Bytes of request bodies sent to Tower", Category::getRequestBytes);
+        categoryCounter(out, sorted, "ansible_tower_response_bytes_total", "counter", "Bytes of response bodies received from Tower, as sent on the wire", Category::getResponseBytes);
+        categoryCounter(out, sorted, "ansible_tower_retries_total", "counter", "Requests which were sent again after a failure", Category::getRetries);
+        categoryCounter(out, sorted, "ansible_tower_requests_in_flight", "gauge", "Requests waiting for Tower to answer", Category::getInFlight);
+
+        header(out, "ansible_tower_cache_hits_total", "counter", "Lookups answered from the response cache after Tower confirmed them unchanged");
+        for(TowerMetrics metrics : sorted) {
+            sample(out, "ansible_tower_cache_hits_total", "tower=\"" + escape(metrics.url) + "\"", metrics.getCacheHits());
+        }
+        return out.toString();
+    }
+
+    private interface CategoryValue { long get(Category category); }
+
+    private static void categoryCounter(StringBuilder out, List<TowerMetrics> sorted, String name, String type, String help, CategoryValue value) {
+        header(out, name, type, help);
+        for(TowerMetrics metrics : sorted) {
+            for(Map.Entry<String, Category> category : metrics.getCategories().entrySet()) {
+                sample(out, name, labels(metrics.url, category.getKey()), value.get(category.getValue()));
+            }
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String labels(String url, String category) {
+        return "tower=\"" + escape(url) + "\",category=\"" + category + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Serves the Tower request metrics in the Prometheus text format at /ansible-tower-metrics/prometheus.
+    The labels contain the Tower URLs so only administrators may read it (scrape with an API token).
+ */
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+
+@Extension
+public class TowerMetricsAction implements RootAction {
+    @Override
+    public String getIconFileName() { return null; }
+
+    @Override
+    public String getDisplayName() { return "Ansible Tower Metrics"; }
+
+    @Override
+    public String getUrlName() { return "ansible-tower-metrics"; }
+
+    public void doPrometheus(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        rsp.getWriter().write(TowerMetrics.toPrometheus(TowerMetrics.all()));
+    }
+}
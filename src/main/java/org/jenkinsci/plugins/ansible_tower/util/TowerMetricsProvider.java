@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Publishes the Tower request metrics to the Metrics plugin (when it is installed).
+    The Metrics plugin reads the set once, so these gauges add up every Tower per endpoint category;
+    the breakdown per Tower is on the Prometheus endpoint of TowerMetricsAction.
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Extension(optional = true)
+public class TowerMetricsProvider extends MetricProvider {
+    private static final String PREFIX = "ansible-tower.";
+
+    private interface CategoryValue { long get(TowerMetrics.Category category); }
+
+    @Override
+    public MetricSet getMetricSet() {
+        final HashMap<String, Metric> metrics = new HashMap<String, Metric>();
+        for(final String category : TowerMetrics.CATEGORIES) {
+            String name = PREFIX + category + ".";
+            metrics.put(name + "requests", sum(category, TowerMetrics.Category::getCount));
+            metrics.put(name + "errors", sum(category, TowerMetrics.Category::getErrors));
+            metrics.put(name + "retries", sum(category, TowerMetrics.Category::getRetries));
+            metrics.put(name + "in-flight", sum(category, TowerMetrics.Category::getInFlight));
+            metrics.put(name + "request-bytes", sum(category, TowerMetrics.Category::getRequestBytes));
+            metrics.put(name + "response-bytes", sum(category, TowerMetrics.Category::getResponseBytes));
+            metrics.put(name + "mean-latency-seconds", (Gauge<Double>) () -> {
+                long count = 0;
+                double seconds = 0;
+                for(TowerMetrics registry : TowerMetrics.all()) {
+                    TowerMetrics.Category c = registry.getCategories().get(category);
+                    if(c != null) {
+                        count += c.getCount();
+                        seconds += c.getTotalSeconds();
+                    }
+                }
+                return count == 0 ? 0.0 : seconds / count;
+            });
+        }
+        metrics.put(PREFIX + "cache-hits", (Gauge<Long>) () -> {
+            long hits = 0;
+            for(TowerMetrics registry : TowerMetrics.all()) { hits += registry.getCacheHits(); }
+            return hits;
+        });
+        return new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() { return metrics; }
+        };
+    }
+
+    private static Gauge<Long> sum(final String category, final CategoryValue value) {
+        return () -> {
+            long total = 0;
+            for(TowerMetrics registry : TowerMetrics.all()) {
+                TowerMetrics.Category c = registry.getCategories().get(category);
+                if(c != null) { total += value.get(c); }
+            }
+            return total;
+        };
+    }
+}
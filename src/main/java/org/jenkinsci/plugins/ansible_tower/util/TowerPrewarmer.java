@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Warms up the connections to every configured Tower in the background (at startup and when the global config is
+    saved) so the first build does not pay for DNS, TLS, logging in and probing Tower.
+    The outcome for each installation is kept so it can be shown on the global config page.
+ */
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TowerPrewarmer {
+    private static final ConcurrentHashMap<String, String> statuses = new ConcurrentHashMap<String, String>();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Ansible Tower connection warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static void prewarm(List<TowerInstallation> installations) {
+        if(installations == null) { return; }
+        for(final TowerInstallation installation : installations) {
+            final String name = installation.getTowerDisplayName();
+            if(name == null) { continue; }
+            statuses.put(name, "Warming up");
+            executor.submit(() -> {
+                try {
+                    TowerConnector connector = installation.getTowerConnector();
+                    connector.prewarm();
+                    String version = connector.getTowerVersion() == null ? "unknown" : connector.getTowerVersion().getVersion();
+                    statuses.put(name, "Ready, Tower version "+ version +" (checked "+ now() +")");
+                } catch(Exception e) {
+                    TowerLogger.writeMessage("Failed to warm up connection to "+ name +": "+ e.getMessage());
+                    statuses.put(name, "Failed: "+ e.getMessage() +" (checked "+ now() +")");
+                }
+            });
+        }
+    }
+
+    public static String getStatus(String towerDisplayName) {
+        if(towerDisplayName == null) { return null; }
+        return statuses.get(towerDisplayName);
+    }
+
+    private static String now() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+    }
+}
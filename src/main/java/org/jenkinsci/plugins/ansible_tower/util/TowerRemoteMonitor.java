@@ -0,0 +1,142 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Watches a single Tower job from the build agent instead of the controller.
+    The agent polls Tower, pulls the events and does all of the line processing; only the finished log lines come back
+    to the controller, through the build log stream. Canceling the job stays with the controller, this only reports
+    why it stopped watching. The requests sent from the agent (counts, metrics and trace spans) come back with the
+    outcome, see TowerConnector.addRemoteTelemetry.
+ */
+
+import jenkins.security.MasterToSlaveCallable;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerNotResponding;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TowerRemoteMonitor extends MasterToSlaveCallable<TowerRemoteMonitor.Outcome, AnsibleTowerException> {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason { COMPLETED, FAILED_HOSTS, TIMED_OUT, INTERRUPTED }
+
+    private final TowerConnector.Settings settings;
+    private final int jobID;
+    private final String templateType;
+    private final String logPrefix;
+    private final boolean importTowerLogs;
+    private final boolean removeColor;
+    private final boolean importWorkflowChildLogs;
+    private final int failFastThreshold;
+    // Relative so that clock differences between the controller and the agent don't matter
+    private final long remainingMillis;
+    private final long pollInterval;
+    private final OutputStream log;
+
+    public TowerRemoteMonitor(
+            TowerConnector.Settings settings, int jobID, String templateType, String logPrefix, boolean importTowerLogs,
+            boolean removeColor, boolean importWorkflowChildLogs, int failFastThreshold, long remainingMillis,
+            long pollInterval, OutputStream log
+    ) {
+        this.settings = settings;
+        this.jobID = jobID;
+        this.templateType = templateType;
+        this.logPrefix = logPrefix;
+        this.importTowerLogs = importTowerLogs;
+        this.removeColor = removeColor;
+        this.importWorkflowChildLogs = importWorkflowChildLogs;
+        this.failFastThreshold = failFastThreshold;
+        this.remainingMillis = remainingMillis;
+        this.pollInterval = pollInterval;
+        this.log = log;
+    }
+
+    public static class Outcome implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Reason reason;
+        private final HashMap<String, String> exports;
+        private final LinkedHashMap<String, String> failedHosts;
+        private final long requestCount;
+        private final long responseBytes;
+        private final TowerMetrics metrics;
+        private final TowerTrace trace;
+
+        private Outcome(Reason reason, TowerConnector connector, int jobID) {
+            this.reason = reason;
+            this.exports = new HashMap<String, String>(connector.getJenkinsExports());
+            this.failedHosts = new LinkedHashMap<String, String>(connector.getFailedHosts(jobID));
+            this.requestCount = connector.getRequestCount();
+            this.responseBytes = connector.getResponseBytes();
+            this.metrics = connector.getMetrics();
+            this.trace = connector.getTrace();
+            if (trace != null) {
+                trace.finish();
+            }
+        }
+
+        public Reason getReason() { return reason; }
+        public Map<String, String> getExports() { return exports; }
+        public Map<String, String> getFailedHosts() { return failedHosts; }
+        public long getRequestCount() { return requestCount; }
+        public long getResponseBytes() { return responseBytes; }
+        TowerMetrics getMetrics() { return metrics; }
+        TowerTrace getTrace() { return trace; }
+    }
+
+    @Override
+    public Outcome call() throws AnsibleTowerException {
+        long deadline = remainingMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + remainingMillis;
+        PrintStream logger;
+        try {
+            logger = new PrintStream(log, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AnsibleTowerException("Unable to open the build log on the agent: " + e.getMessage());
+        }
+        TowerConnector connector = settings.getTowerConnector();
+        connector.setLogTowerEvents(importTowerLogs);
+        connector.setJenkinsLogger(logger);
+        connector.setRemoveColor(removeColor);
+        connector.setLogPrefix(logPrefix);
+        boolean waitingForTower = false;
+        try {
+            while (true) {
+                if (Thread.interrupted()) {
+                    return new Outcome(Reason.INTERRUPTED, connector, jobID);
+                }
+                try {
+                    connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+                    if (failFastThreshold > 0 && connector.getFailedHosts(jobID).size() >= failFastThreshold) {
+                        return new Outcome(Reason.FAILED_HOSTS, connector, jobID);
+                    }
+                    // isJobCompleted also picks up the artifacts which end up in the exports
+                    if (connector.isJobCompleted(jobID, templateType)) {
+                        connector.logEvents(jobID, templateType, importWorkflowChildLogs);
+                        return new Outcome(Reason.COMPLETED, connector, jobID);
+                    }
+                    waitingForTower = false;
+                } catch (AnsibleTowerNotResponding e) {
+                    // Like on the controller: the job keeps running, Tower is asked again until the run timeout
+                    if (!waitingForTower) {
+                        logger.println(logPrefix + "WARNING: " + e.getMessage() + ", the job keeps running in Tower, waiting for it to respond");
+                        waitingForTower = true;
+                    }
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    return new Outcome(Reason.TIMED_OUT, connector, jobID);
+                }
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ie) {
+                    return new Outcome(Reason.INTERRUPTED, connector, jobID);
+                }
+            }
+        } finally {
+            logger.flush();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Aborts requests to Tower which run longer than the total request timeout.
+    The connect and socket timeouts only bound a single connect or read, so a Tower node which keeps trickling data
+    (or a proxy holding the connection open) could otherwise keep a build thread busy forever.
+ */
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class TowerRequestWatchdog {
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "Ansible Tower request watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Almost every request completes in time, don't keep the canceled tasks around until they would have fired
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public static ScheduledFuture<?> abortAfter(HttpUriRequest request, long millis) {
+        return timer.schedule(() -> request.abort(), millis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    A small LRU cache of Tower responses which carried an ETag or Last-Modified header.
+    There is one cache per Tower URL, shared by all builds running against it. It holds the parsed JSON so a
+    "304 Not Modified" from Tower skips both the body transfer and the JSON parse.
+    The cached objects are shared between builds, callers must treat them as read only.
+ */
+
+import net.sf.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TowerResponseCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final ConcurrentHashMap<String, TowerResponseCache> caches = new ConcurrentHashMap<String, TowerResponseCache>();
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    TowerResponseCache(final int maxEntries) {
+        // Access ordered so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static TowerResponseCache forUrl(String url) {
+        return caches.computeIfAbsent(url, k -> new TowerResponseCache(MAX_ENTRIES));
+    }
+
+    public synchronized Entry get(String key) { return entries.get(key); }
+    public synchronized void put(String key, Entry entry) { entries.put(key, entry); }
+    public synchronized void remove(String key) { entries.remove(key); }
+    public synchronized int size() { return entries.size(); }
+
+    public static class Entry {
+        private final String eTag;
+        private final String lastModified;
+        private final JSONObject body;
+
+        public Entry(String eTag, String lastModified, JSONObject body) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getETag() { return eTag; }
+        public String getLastModified() { return lastModified; }
+        public JSONObject getBody() { return body; }
+    }
+}
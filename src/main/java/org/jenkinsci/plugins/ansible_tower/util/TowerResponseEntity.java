@@ -0,0 +1,160 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Wraps the entity of every response from Tower.
+    If Tower compressed the body (we always ask for gzip or deflate) it is decompressed here while it is being read,
+    so callers see plain content and the body is never held in memory in both forms.
+    The request watchdog keeps running until the body has been read (and the stream closed) so the total request
+    timeout also covers the body transfer and not only waiting for the headers.
+    The bytes read from the wire (before decompression) are reported to the given counter for the metrics.
+ */
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class TowerResponseEntity extends HttpEntityWrapper {
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final Future<?> watchdog;
+    private final LongConsumer wireBytes;
+    private final String encoding;
+
+    public TowerResponseEntity(HttpEntity wrapped, Future<?> watchdog) {
+        this(wrapped, watchdog, n -> {});
+    }
+
+    public TowerResponseEntity(HttpEntity wrapped, Future<?> watchdog, LongConsumer wireBytes) {
+        super(wrapped);
+        this.watchdog = watchdog;
+        this.wireBytes = wireBytes;
+        Header contentEncoding = wrapped.getContentEncoding();
+        String encoding = null;
+        if(contentEncoding != null && contentEncoding.getValue() != null) {
+            encoding = contentEncoding.getValue().trim().toLowerCase();
+            if(!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) { encoding = null; }
+        }
+        this.encoding = encoding;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        InputStream content = super.getContent();
+        if(content == null) {
+            watchdog.cancel(false);
+            return null;
+        }
+        InputStream watchedContent = new FilterInputStream(content) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if(b != -1) { wireBytes.accept(1); }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if(count > 0) { wireBytes.accept(count); }
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    watchdog.cancel(false);
+                }
+            }
+        };
+        try {
+            if(encoding == null) {
+                return watchedContent;
+            } else if(encoding.equals("deflate")) {
+                return inflate(watchedContent);
+            } else {
+                return new GZIPInputStream(watchedContent);
+            }
+        } catch(IOException ioe) {
+            watchedContent.close();
+            throw ioe;
+        }
+    }
+
+    private InputStream inflate(InputStream content) throws IOException {
+        // "deflate" should be zlib wrapped but some servers send raw deflate data, the zlib header tells them apart
+        PushbackInputStream pushback = new PushbackInputStream(content, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        while(read < 2) {
+            int count = pushback.read(header, read, 2 - read);
+            if(count == -1) { break; }
+            read += count;
+        }
+        if(read > 0) { pushback.unread(header, 0, read); }
+        boolean zlibWrapped = read == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        final Inflater inflater = new Inflater(!zlibWrapped);
+        return new InflaterInputStream(pushback, inflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // We supplied the inflater so closing the stream won't free it
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    // Through getContent so the bytes written are the decompressed ones and the watchdog stops once they are written
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        InputStream content = getContent();
+        if(content == null) { return; }
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while((count = content.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            content.close();
+        }
+    }
+
+    @Override
+    public void consumeContent() throws IOException {
+        InputStream content = getContent();
+        if(content != null) { content.close(); }
+    }
+
+    // The body is always read off the connection, whatever the wrapped entity says
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return encoding == null ? super.getContentEncoding() : null;
+    }
+
+    @Override
+    public long getContentLength() {
+        // The length Tower sent is the compressed length
+        return encoding == null ? super.getContentLength() : -1;
+    }
+}
@@ -0,0 +1,102 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    The phases one run of a template went through, one after the other, with how long each took and how many
+    requests (and response bytes) it sent to Tower. The runner starts a phase when it moves on, which ends the one
+    before. The requests are counted by the connector so only the connector of this run is looked at.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TowerTimeline implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String CONFIGURATION = "Configuration and credentials";
+    public static final String TEMPLATE_LOOKUP = "Template lookup";
+    public static final String CAPACITY_WAIT = "Waiting for Tower capacity";
+    public static final String LAUNCH = "Launch";
+    public static final String PENDING = "Pending in Tower";
+    public static final String RUNNING = "Running in Tower";
+    public static final String AGENT_MONITOR = "Pending and running in Tower (watched from the agent)";
+    public static final String LOG_CATCH_UP = "Log import after completion";
+    public static final String EXPORTS = "Export injection and result";
+
+    private final String title;
+    private final long startedAt;
+    private final List<Phase> phases = new ArrayList<Phase>();
+    private transient TowerConnector connector = null;
+    private transient Phase current = null;
+    private transient long requestsAtStart = 0;
+    private transient long bytesAtStart = 0;
+
+    public TowerTimeline(String title) {
+        this.title = title;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    // The requests made until now by this connector belong to the phase which is running
+    public synchronized void setConnector(TowerConnector connector) {
+        this.connector = connector;
+    }
+
+    public synchronized void begin(String name) {
+        end();
+        current = new Phase(name, System.currentTimeMillis());
+        requestsAtStart = connector == null ? 0 : connector.getRequestCount();
+        bytesAtStart = connector == null ? 0 : connector.getResponseBytes();
+        phases.add(current);
+    }
+
+    public synchronized void end() {
+        if (current == null) {
+            return;
+        }
+        current.durationMillis = System.currentTimeMillis() - current.startedAt;
+        if (connector != null) {
+            current.requests = connector.getRequestCount() - requestsAtStart;
+            current.responseBytes = connector.getResponseBytes() - bytesAtStart;
+        }
+        current = null;
+    }
+
+    public synchronized String getCurrentPhase() {
+        return current == null ? null : current.name;
+    }
+
+    public String getTitle()     { return title; }
+    public long getStartedAt()   { return startedAt; }
+
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<Phase>(phases));
+    }
+
+    public synchronized long getTotalMillis() {
+        long total = 0;
+        for (Phase phase : phases) { total += phase.durationMillis; }
+        return total;
+    }
+
+    public static class Phase implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String name;
+        private final long startedAt;
+        private long durationMillis = 0;
+        private long requests = 0;
+        private long responseBytes = 0;
+
+        private Phase(String name, long startedAt) {
+            this.name = name;
+            this.startedAt = startedAt;
+        }
+
+        public String getName()          { return name; }
+        public long getStartedAt()       { return startedAt; }
+        public long getDurationMillis()  { return durationMillis; }
+        public long getRequests()        { return requests; }
+        public long getResponseBytes()   { return responseBytes; }
+        public String getDuration()      { return String.format("%.1f s", durationMillis / 1000.0); }
+    }
+}
@@ -0,0 +1,171 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    A trace of one run of the plugin, in the shape OpenTelemetry uses: a root span for the run, a span per phase
+    (lookup, launch, waiting, log import, exports) and a span per request to Tower under the phase which sent it.
+    The IDs follow W3C trace context so the traceparent header sent with each request can be matched with Tower's logs.
+    Nothing is exported while the run goes on; TowerTraceExporter writes all of the spans once the run has finished.
+    A trace can also be continued in another JVM (the build agent) under a span of this one, its spans are sent back
+    and added here with addSpans.
+ */
+
+import net.sf.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TowerTrace implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final String TRACEPARENT = "traceparent";
+
+    private final String traceId;
+    private final Span root;
+    private final List<Span> spans = new ArrayList<Span>();
+    private Span phase = null;
+
+    public TowerTrace(String name) {
+        this(name, randomHex(16), null);
+    }
+
+    // Continues the trace traceId, the root of this one is a child of the span parentSpanId
+    public TowerTrace(String name, String traceId, String parentSpanId) {
+        this.traceId = traceId;
+        this.root = new Span(name, parentSpanId);
+        spans.add(root);
+    }
+
+    public String getTraceId() { return traceId; }
+    public Span getRoot()      { return root; }
+
+    // Ends the running phase (if any) and starts the next one under the root
+    public synchronized void beginPhase(String name) {
+        endPhase();
+        phase = startSpan(name, root);
+    }
+
+    public synchronized void endPhase() {
+        if (phase != null) {
+            phase.end();
+            phase = null;
+        }
+    }
+
+    // A span under the running phase (or the root if there is none), may be called from any thread
+    public synchronized Span startSpan(String name) {
+        return startSpan(name, phase == null ? root : phase);
+    }
+
+    private Span startSpan(String name, Span parent) {
+        Span span = new Span(name, parent.spanId);
+        spans.add(span);
+        return span;
+    }
+
+    // The span new requests go under, for continuing the trace elsewhere
+    public synchronized String getCurrentSpanId() {
+        return (phase == null ? root : phase).spanId;
+    }
+
+    // The spans of a trace which continued this one in another JVM
+    public synchronized void addSpans(TowerTrace continued) {
+        spans.addAll(continued.getSpans());
+    }
+
+    public synchronized void finish() {
+        endPhase();
+        root.end();
+    }
+
+    public synchronized List<Span> getSpans() {
+        return Collections.unmodifiableList(new ArrayList<Span>(spans));
+    }
+
+    private static String randomHex(int bytes) {
+        StringBuilder hex = new StringBuilder(bytes * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) {
+            hex.append(String.format("%02x", random.nextInt(256)));
+        }
+        return hex.toString();
+    }
+
+    public class Span implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String spanId;
+        private final String parentSpanId;
+        private final String name;
+        private final long startedAt;
+        private long endedAt = 0;
+        private String error = null;
+        private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        // Bodies are read after the request span has ended, the count is picked up when exporting
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        private Span(String name, String parentSpanId) {
+            this.spanId = randomHex(8);
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        public String getSpanId()       { return spanId; }
+        public String getParentSpanId() { return parentSpanId; }
+        public String getName()         { return name; }
+
+        // The W3C traceparent value which makes Tower's side of the request part of this span
+        public String getTraceParent() {
+            return "00-" + traceId + "-" + spanId + "-01";
+        }
+
+        public synchronized void setAttribute(String key, Object value) {
+            attributes.put(key, value);
+        }
+
+        public synchronized void setError(String error) {
+            this.error = error;
+        }
+
+        public void addResponseBytes(long bytes) {
+            responseBytes.addAndGet(bytes);
+        }
+
+        public synchronized void end() {
+            if (endedAt == 0) {
+                endedAt = System.currentTimeMillis();
+            }
+        }
+
+        public synchronized JSONObject toJSON() {
+            JSONObject span = new JSONObject();
+            span.put("traceId", traceId);
+            span.put("spanId", spanId);
+            if (parentSpanId != null) {
+                span.put("parentSpanId", parentSpanId);
+            }
+            span.put("name", name);
+            span.put("startTimeUnixNano", startedAt * 1000000L);
+            span.put("endTimeUnixNano", (endedAt == 0 ? System.currentTimeMillis() : endedAt) * 1000000L);
+            JSONObject exported = new JSONObject();
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                exported.put(attribute.getKey(), attribute.getValue());
+            }
+            if (responseBytes.get() > 0) {
+                exported.put("http.response_content_length", responseBytes.get());
+            }
+            span.put("attributes", exported);
+            JSONObject status = new JSONObject();
+            status.put("code", error == null ? "OK" : "ERROR");
+            if (error != null) {
+                status.put("message", error);
+            }
+            span.put("status", status);
+            return span;
+        }
+    }
+}
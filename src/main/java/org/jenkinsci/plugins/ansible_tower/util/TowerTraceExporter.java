@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    Writes finished traces without needing a collector: one JSON object per span per line (the OTLP span fields),
+    either appended to a file or written to the Jenkins system log. The target comes from the global configuration:
+    empty turns tracing off, "log" writes to the system log, anything else is a file (relative to JENKINS_HOME).
+    Once the file has grown past MAX_FILE_BYTES it is moved to <file>.1 (replacing the one before) and a new one is
+    started, so at most twice that is kept on disk.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+public class TowerTraceExporter {
+    public static final String LOG = "log";
+    public static final long MAX_FILE_BYTES = 50L * 1024 * 1024;
+
+    private final String target;
+    private final File baseDir;
+    private final long maxFileBytes;
+
+    public TowerTraceExporter(String target, File baseDir) {
+        this(target, baseDir, MAX_FILE_BYTES);
+    }
+
+    TowerTraceExporter(String target, File baseDir, long maxFileBytes) {
+        this.target = target == null ? "" : target.trim();
+        this.baseDir = baseDir;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public boolean isEnabled() {
+        return !target.isEmpty();
+    }
+
+    File getFile() {
+        File file = new File(target);
+        if (!file.isAbsolute() && baseDir != null) {
+            file = new File(baseDir, target);
+        }
+        return file;
+    }
+
+    public void export(TowerTrace trace) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (target.equalsIgnoreCase(LOG)) {
+            for (TowerTrace.Span span : trace.getSpans()) {
+                TowerLogger.writeMessage("trace " + span.toJSON().toString());
+            }
+            return;
+        }
+        // Runs in different builds finish at the same time, their lines must not interleave
+        synchronized (TowerTraceExporter.class) {
+            File file = getFile();
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            if (file.length() >= maxFileBytes) {
+                rotate(file);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                for (TowerTrace.Span span : trace.getSpans()) {
+                    writer.write(span.toJSON().toString());
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                TowerLogger.writeMessage("Unable to write the trace to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void rotate(File file) {
+        File previous = new File(file.getPath() + ".1");
+        if ((previous.exists() && !previous.delete()) || !file.renameTo(previous)) {
+            TowerLogger.writeMessage("Unable to move the trace file " + file + " out of the way, appending to it");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class AnsibleTowerRunnerTest {
+
+    @Test
+    public void shardsAreContiguousAndBalanced() {
+        List<String> hosts = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+        List<List<String>> shards = AnsibleTowerRunner.splitIntoShards(hosts, 3);
+        Assert.assertThat(shards.size(), CoreMatchers.is(3));
+        Assert.assertThat(shards.get(0), CoreMatchers.is(Arrays.asList("a", "b", "c", "d")));
+        Assert.assertThat(shards.get(1), CoreMatchers.is(Arrays.asList("e", "f", "g")));
+        Assert.assertThat(shards.get(2), CoreMatchers.is(Arrays.asList("h", "i", "j")));
+    }
+
+    @Test
+    public void neverMoreShardsThanHosts() {
+        List<List<String>> shards = AnsibleTowerRunner.splitIntoShards(Arrays.asList("a", "b"), 5);
+        Assert.assertThat(shards.size(), CoreMatchers.is(2));
+        Assert.assertThat(shards.get(0), CoreMatchers.is(Arrays.asList("a")));
+        Assert.assertThat(shards.get(1), CoreMatchers.is(Arrays.asList("b")));
+    }
+}
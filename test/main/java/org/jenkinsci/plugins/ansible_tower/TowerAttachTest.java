@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Builds waiting for a job which was launched somewhere else (AnsibleTowerRunner.attachToJob) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TowerAttachTest {
+    private static final String JOB = "/api/v2/jobs/N/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 2000);
+        tower.setEvents(30, 1);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    // The job is started outside of Jenkins, the builds only know its ID
+    private int launch() throws Exception {
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        return connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+    }
+
+    private static class Build {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final Properties results = new Properties();
+        private boolean successful;
+
+        private String getLog() throws Exception { return output.toString("UTF-8"); }
+    }
+
+    // Attaches the given number of builds to the job at the same time and waits for all of them
+    private List<Build> attach(int jobID, int builds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(builds);
+        List<Build> attached = new ArrayList<Build>();
+        List<Future<Boolean>> runs = new ArrayList<Future<Boolean>>();
+        try {
+            for (int i = 0; i < builds; i++) {
+                Build build = new Build();
+                attached.add(build);
+                runs.add(executor.submit(() -> new AnsibleTowerRunner().attachToJob(
+                        new PrintStream(build.output, true, "UTF-8"), "mock", Integer.toString(jobID),
+                        TowerConnector.JOB_TEMPLATE_TYPE, true, true, true, false, new EnvVars(), null, null, build.results
+                )));
+            }
+            for (int i = 0; i < builds; i++) {
+                attached.get(i).successful = runs.get(i).get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return attached;
+    }
+
+    @Test
+    public void buildsWaitingForTheSameJobShareTheOutput() throws Exception {
+        int jobID = launch();
+        List<Build> builds = attach(jobID, 3);
+
+        String logs = "";
+        for (Build build : builds) {
+            Assert.assertThat(build.getLog(), build.successful, CoreMatchers.is(true));
+            Assert.assertThat(build.getLog(), CoreMatchers.containsString("ok: [host-0.example.com] => (item=0.0)"));
+            Assert.assertThat(build.getLog(), CoreMatchers.containsString("(item=29.0)"));
+            Assert.assertThat(build.results.getProperty("JOB_RESULT"), CoreMatchers.is("SUCCESS"));
+            Assert.assertThat(build.results.getProperty("JOB_ID"), CoreMatchers.is(Integer.toString(jobID)));
+            logs += build.getLog();
+        }
+        Assert.assertThat(logs, CoreMatchers.containsString("other build(s) waiting for it"));
+        // One poller every three seconds, three builds polling on their own would ask at least three times as often
+        Assert.assertTrue(tower.getRequestCount("GET", JOB) <= 3);
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void aFailedJobFailsTheBuild() throws Exception {
+        tower.setJobsFail(true);
+        int jobID = launch();
+        Build build = attach(jobID, 1).get(0);
+
+        Assert.assertThat(build.getLog(), build.successful, CoreMatchers.is(false));
+        Assert.assertThat(build.getLog(), CoreMatchers.containsString("Tower failed to complete the requested job"));
+        Assert.assertThat(build.results.getProperty("JOB_RESULT"), CoreMatchers.is("FAILED"));
+    }
+
+    @Test
+    public void aJobWhichIsGoneFailsTheBuild() throws Exception {
+        Build build = attach(9999, 1).get(0);
+
+        Assert.assertThat(build.getLog(), build.successful, CoreMatchers.is(false));
+        Assert.assertThat(build.getLog(), CoreMatchers.containsString("ERROR: Failed to follow the Tower job"));
+    }
+
+    @Test
+    public void aJobIdWhichIsNotANumberFailsTheBuild() throws Exception {
+        Build build = new Build();
+        build.successful = new AnsibleTowerRunner().attachToJob(
+                new PrintStream(build.output, true, "UTF-8"), "mock", "latest", TowerConnector.JOB_TEMPLATE_TYPE,
+                false, true, true, false, new EnvVars(), null, null, build.results
+        );
+
+        Assert.assertThat(build.successful, CoreMatchers.is(false));
+        Assert.assertThat(build.getLog(), CoreMatchers.containsString("ERROR: latest is not a job ID"));
+        Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(0L));
+    }
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Check mode runs whose results are remembered (AnsibleTowerRunner with checkResultCacheMinutes) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TowerCheckModeTest {
+    private static final Pattern JOB_URL = Pattern.compile("Template Job URL: \\S*/(\\d+)");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private String template;
+    private int templateID;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        // A name of its own, the remembered results outlive the test
+        template = "Check " + System.nanoTime();
+        templateID = tower.addJobTemplate(template);
+        tower.setJobDuration(0, 500);
+        tower.setEvents(5, 1);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private boolean check(ByteArrayOutputStream output) throws Exception {
+        AnsibleTowerRunner runner = new AnsibleTowerRunner();
+        runner.setPollInterval(100);
+        runner.setCheckResultCacheMinutes(10);
+        return runner.runJobTemplate(
+                new PrintStream(output, true, "UTF-8"), "mock", template, "check", null, null, null, null, null,
+                null, true, true, true, new EnvVars(), TowerConnector.JOB_TEMPLATE_TYPE, false, null, null,
+                new Properties()
+        );
+    }
+
+    @Test
+    public void aFinishedCheckIsNotRunAgain() throws Exception {
+        Assert.assertThat(check(new ByteArrayOutputStream()), CoreMatchers.is(true));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        Assert.assertThat(check(output), CoreMatchers.is(true));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("Using the result of check job"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void aCheckOfAProjectWhichUpdatesOnLaunchIsRunAgain() throws Exception {
+        int project = tower.addProject("Playbooks", "1111111111111111111111111111111111111111");
+        tower.setTemplateProject(templateID, project);
+        tower.setUpdateOnLaunch(project, true);
+        Assert.assertThat(check(new ByteArrayOutputStream()), CoreMatchers.is(true));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        Assert.assertThat(check(output), CoreMatchers.is(true));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("the project updates on launch"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(2));
+    }
+
+    @Test
+    public void aCanceledCheckIsNotRemembered() throws Exception {
+        tower.setJobDuration(0, 60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Future<Boolean> canceled = executor.submit(() -> check(output));
+            long giveUpAt = System.currentTimeMillis() + 30000;
+            Matcher url = JOB_URL.matcher("");
+            while (!url.reset(output.toString("UTF-8")).find()) {
+                Assert.assertTrue("The check was never launched", System.currentTimeMillis() < giveUpAt);
+                Thread.sleep(50);
+            }
+            // Someone cancels the job in Tower
+            new TowerConnector(tower.getUrl(), "admin", "password").cancelJob(Integer.parseInt(url.group(1)), TowerConnector.JOB_TEMPLATE_TYPE);
+            Assert.assertThat(output.toString("UTF-8"), canceled.get(60, TimeUnit.SECONDS), CoreMatchers.is(false));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        tower.setJobDuration(0, 500);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Assert.assertThat(check(output), CoreMatchers.is(true));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.not(CoreMatchers.containsString("Using the result of check job")));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(2));
+    }
+}
@@ -0,0 +1,163 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Builds which ask for the same launch at the same time (AnsibleTowerRunner with coalesceLaunches) against a
+    MockTower: they share one job, and the job is only canceled once no build is following it anymore.
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TowerCoalesceTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private ExecutorService executor;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 3000);
+        tower.setEvents(30, 1);
+        executor = Executors.newCachedThreadPool();
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        tower.stop();
+    }
+
+    private static class Build {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private Future<Boolean> result;
+
+        private String getLog() throws Exception { return output.toString("UTF-8"); }
+    }
+
+    private Build start() {
+        Build build = new Build();
+        build.result = executor.submit(() -> {
+            AnsibleTowerRunner runner = new AnsibleTowerRunner();
+            runner.setPollInterval(100);
+            runner.setCoalesceLaunches(true);
+            return runner.runJobTemplate(
+                    new PrintStream(build.output, true, "UTF-8"), "mock", "Deploy", null, null, null, null, null, null,
+                    null, true, true, true, new EnvVars(), TowerConnector.JOB_TEMPLATE_TYPE, false, null, null,
+                    new Properties()
+            );
+        });
+        return build;
+    }
+
+    private static void waitFor(Build build, String line) throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 30000;
+        while (!build.getLog().contains(line)) {
+            Assert.assertTrue("The build never logged " + line + ":\n" + build.getLog(), System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(50);
+        }
+    }
+
+    // The owner has launched the job and the follower is watching it
+    private List<Build> startOwnerAndFollower() throws Exception {
+        List<Build> builds = new ArrayList<Build>();
+        builds.add(start());
+        waitFor(builds.get(0), "Template Job URL:");
+        builds.add(start());
+        waitFor(builds.get(1), "which another build launched with the same parameters");
+        return builds;
+    }
+
+    // Interrupts the build like an abort does and waits for it to have cleaned up
+    private static void abort(Build build) throws Exception {
+        build.result.cancel(true);
+        waitFor(build, "Got interrupted");
+        Thread.sleep(500);
+    }
+
+    @Test
+    public void buildsAskingForTheSameLaunchShareTheJob() throws Exception {
+        List<Build> builds = startOwnerAndFollower();
+
+        for (Build build : builds) {
+            Assert.assertThat(build.getLog(), build.result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+            Assert.assertThat(build.getLog(), CoreMatchers.containsString("(item=29.0)"));
+        }
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void theFollowersShareOnePoller() throws Exception {
+        Assert.assertThat(start().result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+        long alone = tower.getRequestCount();
+
+        List<Build> builds = startOwnerAndFollower();
+        for (int i = 0; i < 2; i++) {
+            Build follower = start();
+            waitFor(follower, "which another build launched with the same parameters");
+            builds.add(follower);
+        }
+        for (Build build : builds) {
+            Assert.assertThat(build.getLog(), build.result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+            Assert.assertThat(build.getLog(), CoreMatchers.containsString("(item=29.0)"));
+        }
+        long shared = tower.getRequestCount() - alone;
+        Assert.assertThat("Four builds sent " + shared + " requests, one alone " + alone, shared < 2 * alone, CoreMatchers.is(true));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(2));
+    }
+
+    @Test
+    public void theNextBuildStartsItsOwnJob() throws Exception {
+        Assert.assertThat(start().result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+        Build next = start();
+
+        Assert.assertThat(next.getLog(), next.result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+        Assert.assertThat(next.getLog(), CoreMatchers.not(CoreMatchers.containsString("another build launched")));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(2));
+    }
+
+    @Test
+    public void anAbortedOwnerLeavesTheJobToItsFollower() throws Exception {
+        List<Build> builds = startOwnerAndFollower();
+        abort(builds.get(0));
+
+        Assert.assertThat(builds.get(0).getLog(), CoreMatchers.containsString("other builds which asked for the same launch are still following it"));
+        Build follower = builds.get(1);
+        Assert.assertThat(follower.getLog(), follower.result.get(60, TimeUnit.SECONDS), CoreMatchers.is(true));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void theLastBuildToGiveUpCancelsTheJob() throws Exception {
+        List<Build> builds = startOwnerAndFollower();
+        abort(builds.get(0));
+        abort(builds.get(1));
+
+        Assert.assertThat(builds.get(0).getLog(), CoreMatchers.not(CoreMatchers.containsString("is now canceled")));
+        waitFor(builds.get(1), "is now canceled");
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+}
@@ -0,0 +1,253 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Whole runs through AnsibleTowerRunner against a MockTower which misbehaves: the build has to get the right result,
+    in bounded time, without launching a job twice and without leaving a thread behind.
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerCircuitBreaker;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.jenkinsci.plugins.ansible_tower.util.TowerInstallation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class TowerFaultTest {
+    private static final String JOB = "/api/v2/jobs/N/";
+    private static final String JOB_EVENTS = "/api/v2/jobs/N/job_events/";
+    private static final String LAUNCH = "/api/v2/job_templates/N/launch/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private String log;
+    private long elapsed;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(100, 1000);
+        tower.setEvents(60, 1);
+
+        TowerInstallation installation = tower.installInto(j);
+        installation.setConnectTimeout(1);
+        installation.setReadTimeout(1);
+        installation.setRequestTimeout(3);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private boolean runTemplate() throws Exception {
+        return runTemplate(runner -> {});
+    }
+
+    // Runs the template like a build would and fails the test if the run does not end within a minute
+    private boolean runTemplate(Consumer<AnsibleTowerRunner> configure) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long startedAt = System.currentTimeMillis();
+        try {
+            Future<Boolean> run = executor.submit(() -> {
+                AnsibleTowerRunner runner = new AnsibleTowerRunner();
+                runner.setPollInterval(100);
+                configure.accept(runner);
+                return runner.runJobTemplate(
+                        new PrintStream(output, true, "UTF-8"), "mock", "Deploy", null, null, null, null, null, null,
+                        null, true, true, true, new EnvVars(), TowerConnector.JOB_TEMPLATE_TYPE, false, null, null,
+                        new Properties()
+                );
+            });
+            return run.get(60, TimeUnit.SECONDS);
+        } finally {
+            elapsed = System.currentTimeMillis() - startedAt;
+            log = output.toString("UTF-8");
+            executor.shutdownNow();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertThat(pluginThreads(), CoreMatchers.is(new ArrayList<String>()));
+        }
+    }
+
+    // Threads (other than this one) which are still somewhere in the runner or the connector
+    private static List<String> pluginThreads() {
+        List<String> found = new ArrayList<String>();
+        for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+            if (thread.getKey() == Thread.currentThread()) {
+                continue;
+            }
+            for (StackTraceElement frame : thread.getValue()) {
+                if (frame.getClassName().startsWith(AnsibleTowerRunner.class.getName()) || frame.getClassName().startsWith(TowerConnector.class.getName())) {
+                    found.add(thread.getKey().getName());
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void runSucceedsWithoutFaults() throws Exception {
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(log, CoreMatchers.containsString("ok: [host-0.example.com] => (item=0.0)"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void transientServerErrorsDoNotFailTheBuild() throws Exception {
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "GET", JOB, 2);
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "GET", JOB_EVENTS, 1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(tower.getFaultsInjected(), CoreMatchers.is(3));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void unresponsiveTowerDuringTheJobDoesNotFailTheBuild() throws Exception {
+        tower.setJobDuration(0, 2000);
+        Thread outage = new Thread(() -> {
+            while (tower.getLaunchCount() == 0) {
+                try { Thread.sleep(10); } catch (InterruptedException e) { return; }
+            }
+            TowerCircuitBreaker breaker = TowerCircuitBreaker.forUrl(tower.getUrl());
+            for (int i = 0; i < 5; i++) {
+                breaker.recordFailure();
+            }
+        });
+        outage.start();
+        boolean successful = runTemplate();
+        outage.join();
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(log, CoreMatchers.containsString("waiting for it to respond"));
+        Assert.assertThat(log, CoreMatchers.containsString("ok: [host-0.example.com] => (item=0.0)"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void noVisibleCapacityLaunchesWithoutWaiting() throws Exception {
+        tower.setCapacity(0);
+        boolean successful = runTemplate(runner -> runner.setMaxTowerLoad(50));
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(log, CoreMatchers.containsString("launching without waiting for capacity"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void tokenExpiringDuringTheJobIsRenewed() throws Exception {
+        tower.injectFault(MockTower.Fault.EXPIRE_TOKENS, "GET", JOB_EVENTS, 1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(tower.getRequestCount("POST", "/api/v2/authtoken/"), CoreMatchers.is(2L));
+    }
+
+    @Test
+    public void droppedLaunchFailsTheBuildWithoutLaunchingTwice() throws Exception {
+        tower.injectFault(MockTower.Fault.DROP_CONNECTION, "POST", LAUNCH, 1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(tower.getRequestCount("POST", LAUNCH), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void launchClosedBeforeTheResponseFailsTheBuildWithoutLaunchingTwice() throws Exception {
+        tower.injectFault(MockTower.Fault.CLOSE_BEFORE_RESPONSE, "POST", LAUNCH, 1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(tower.getRequestCount("POST", LAUNCH), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void failFastFailsTheBuildEvenIfTheCancelIsNotConfirmed() throws Exception {
+        tower.setJobDuration(0, 5000);
+        tower.setEvents(20, 1);
+        tower.setJobsFail(true);
+        tower.setFailingEvent(0);
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "POST", "/api/v2/jobs/N/cancel/", -1);
+        boolean successful = runTemplate(runner -> runner.setFailFastThreshold(1));
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("reaches the fail fast threshold of 1"));
+        Assert.assertThat(log, CoreMatchers.containsString("was canceled by the fail fast threshold"));
+    }
+
+    @Test
+    public void failFastCancelsTheJobAndFailsTheBuild() throws Exception {
+        tower.setJobDuration(0, 5000);
+        tower.setEvents(20, 1);
+        tower.setJobsFail(true);
+        tower.setFailingEvent(0);
+        boolean successful = runTemplate(runner -> runner.setFailFastThreshold(1));
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("is now canceled"));
+        Assert.assertTrue("Waited for the job to finish", elapsed < 5000);
+    }
+
+    @Test
+    public void failFastIsRefusedForWorkflows() throws Exception {
+        tower.addWorkflowTemplate("Release");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AnsibleTowerRunner runner = new AnsibleTowerRunner();
+        runner.setFailFastThreshold(1);
+        boolean successful = runner.runJobTemplate(
+                new PrintStream(output, true, "UTF-8"), "mock", "Release", null, null, null, null, null, null, null,
+                false, false, true, new EnvVars(), TowerConnector.WORKFLOW_TEMPLATE_TYPE, false, null, null,
+                new Properties()
+        );
+        log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("fail fast threshold can only be used with job templates"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(0));
+    }
+
+    @Test
+    public void malformedEventPageFailsTheBuild() throws Exception {
+        tower.injectFault(MockTower.Fault.MALFORMED_JSON, "GET", JOB_EVENTS, 1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("ERROR: Failed to get job events from tower"));
+    }
+
+    @Test
+    public void hungTowerFailsTheBuildInBoundedTime() throws Exception {
+        tower.setJobDuration(0, 60000);
+        tower.injectFault(MockTower.Fault.HANG, "GET", JOB, -1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("ERROR: Failed to get job status from Tower"));
+        Assert.assertThat("The run took " + elapsed + " ms", elapsed < 20000, CoreMatchers.is(true));
+    }
+
+    @Test
+    public void slowEventPagesFailTheBuildInBoundedTime() throws Exception {
+        tower.setEvents(400, 2);
+        tower.setSlowBodyMillis(200);
+        tower.injectFault(MockTower.Fault.SLOW_BODY, "GET", JOB_EVENTS, -1);
+        boolean successful = runTemplate();
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat("The run took " + elapsed + " ms", elapsed < 20000, CoreMatchers.is(true));
+    }
+}
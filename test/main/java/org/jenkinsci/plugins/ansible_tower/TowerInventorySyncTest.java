@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Syncing several inventory sources (AnsibleTowerRunner.syncInventorySources) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TowerInventorySyncTest {
+    private static final String UPDATE = "/api/v2/inventory_sources/N/update/";
+    private static final String CANCEL = "/api/v2/inventory_updates/N/cancel/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addInventorySource("Cloud");
+        tower.addInventorySource("Datacenter");
+        tower.setJobDuration(0, 60000);
+        tower.setEvents(3, 1);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private boolean sync(String sources) throws Exception {
+        AnsibleTowerRunner runner = new AnsibleTowerRunner();
+        runner.setPollInterval(100);
+        return runner.syncInventorySources(
+                new PrintStream(output, true, "UTF-8"), "mock", sources, true, true, true, new EnvVars(), new Properties()
+        );
+    }
+
+    private void waitForCancels(long cancels) throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 30000;
+        while (tower.getRequestCount("POST", CANCEL) < cancels) {
+            Assert.assertTrue("The syncs were not canceled:\n" + output.toString("UTF-8"), System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void aSourceWhichCanNotBeSyncedCancelsTheOnesStartedBeforeIt() throws Exception {
+        boolean successful = sync("Cloud, Missing, Datacenter");
+
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("[Missing] ERROR: Unable to start the inventory sync"));
+        Assert.assertThat(log, CoreMatchers.containsString("Canceling the inventory syncs which were already started"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getRequestCount("POST", CANCEL), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void anInterruptWhileStartingCancelsTheSyncsWhichWereStarted() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            tower.setLatency(1000, 0);
+            Future<Boolean> result = executor.submit(() -> sync("Cloud, Datacenter"));
+
+            // The first sync is on its way, the build notices the abort once Tower answered it
+            long giveUpAt = System.currentTimeMillis() + 30000;
+            while (tower.getRequestCount("POST", UPDATE) < 1) {
+                Assert.assertTrue("Nothing was synced", System.currentTimeMillis() < giveUpAt);
+                Thread.sleep(20);
+            }
+            tower.setLatency(0, 0);
+            result.cancel(true);
+
+            waitForCancels(1);
+            Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("Got interrupted, canceling the running inventory syncs"));
+            Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(1L));
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
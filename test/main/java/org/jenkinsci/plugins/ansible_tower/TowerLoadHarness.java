@@ -0,0 +1,194 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Runs the same template many times at once through AnsibleTowerRunner, the way that many builds would, against a
+    MockTower and reports what that cost: requests per second Tower had to answer, CPU used by the process and by the
+    threads running the builds, the peak heap and how long the runs took to complete (percentiles).
+    The runs need a Jenkins (the installations and credentials are looked up in it), see TowerLoadTest.
+ */
+
+import hudson.EnvVars;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TowerLoadHarness {
+    private final MockTower tower;
+    private final String towerServer;
+    private final String template;
+    private final String templateType;
+    private int runs = 10;
+    private int concurrency = 10;
+    private long pollInterval = 250;
+    private boolean importTowerLogs = true;
+
+    public TowerLoadHarness(MockTower tower, String towerServer, String template, String templateType) {
+        this.tower = tower;
+        this.towerServer = towerServer;
+        this.template = template;
+        this.templateType = templateType;
+    }
+
+    public void setRuns(int runs)                         { this.runs = runs; }
+    // How many runs are going on at the same time, like the number of executors building the job
+    public void setConcurrency(int concurrency)           { this.concurrency = concurrency; }
+    public void setPollInterval(long pollInterval)        { this.pollInterval = pollInterval; }
+    public void setImportTowerLogs(boolean importLogs)    { this.importTowerLogs = importLogs; }
+
+    public Report run() throws InterruptedException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(
+                () -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max), 0, 50, TimeUnit.MILLISECONDS
+        );
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long requestsAtStart = tower.getRequestCount();
+        long processCpuAtStart = getProcessCpuTime();
+        long startedAt = System.nanoTime();
+        List<Future<Outcome>> futures = new ArrayList<Future<Outcome>>();
+        for (int i = 0; i < runs; i++) {
+            futures.add(pool.submit(() -> {
+                ByteArrayOutputStream log = new ByteArrayOutputStream();
+                AnsibleTowerRunner runner = new AnsibleTowerRunner();
+                runner.setPollInterval(pollInterval);
+                long cpuAtStart = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+                long runStartedAt = System.nanoTime();
+                boolean successful = runner.runJobTemplate(
+                        new PrintStream(log, true, "UTF-8"), towerServer, template, null, null, null, null, null, null,
+                        null, false, importTowerLogs, true, new EnvVars(), templateType, true, null, null, new Properties()
+                );
+                Outcome outcome = new Outcome();
+                outcome.millis = (System.nanoTime() - runStartedAt) / 1000000;
+                outcome.cpuNanos = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() - cpuAtStart : 0;
+                outcome.successful = successful;
+                outcome.log = successful ? null : log.toString("UTF-8");
+                return outcome;
+            }));
+        }
+
+        Report report = new Report();
+        List<Long> latencies = new ArrayList<Long>();
+        try {
+            for (Future<Outcome> future : futures) {
+                Outcome outcome;
+                try {
+                    outcome = future.get();
+                } catch (ExecutionException e) {
+                    outcome = new Outcome();
+                    outcome.log = String.valueOf(e.getCause());
+                }
+                latencies.add(outcome.millis);
+                report.runnerCpuMillis += outcome.cpuNanos / 1000000;
+                if (!outcome.successful) {
+                    report.failures++;
+                    if (report.firstFailure == null) { report.firstFailure = outcome.log; }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            sampler.shutdownNow();
+        }
+
+        report.runs = runs;
+        report.concurrency = concurrency;
+        report.wallMillis = (System.nanoTime() - startedAt) / 1000000;
+        report.requests = tower.getRequestCount() - requestsAtStart;
+        long processCpu = getProcessCpuTime();
+        report.processCpuMillis = processCpu < 0 || processCpuAtStart < 0 ? -1 : (processCpu - processCpuAtStart) / 1000000;
+        report.peakHeapBytes = peakHeap.get();
+        Collections.sort(latencies);
+        report.latencies = latencies;
+        return report;
+    }
+
+    // The CPU time of the whole JVM (including Jenkins and the mock) in ns, or -1 if the JVM does not tell
+    private static long getProcessCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static class Outcome {
+        private long millis = 0;
+        private long cpuNanos = 0;
+        private boolean successful = false;
+        private String log = null;
+    }
+
+    public static class Report {
+        private int runs;
+        private int concurrency;
+        private int failures = 0;
+        private String firstFailure = null;
+        private long wallMillis;
+        private long requests;
+        private long processCpuMillis;
+        private long runnerCpuMillis = 0;
+        private long peakHeapBytes;
+        private List<Long> latencies;
+
+        public int getRuns()              { return runs; }
+        public int getFailures()          { return failures; }
+        // The build log of the first run which failed, null if all of them were successful
+        public String getFirstFailure()   { return firstFailure; }
+        public long getWallMillis()       { return wallMillis; }
+        public long getRequests()         { return requests; }
+        public long getProcessCpuMillis() { return processCpuMillis; }
+        public long getRunnerCpuMillis()  { return runnerCpuMillis; }
+        public long getPeakHeapBytes()    { return peakHeapBytes; }
+
+        public double getRequestsPerSecond() {
+            return wallMillis == 0 ? 0 : requests * 1000.0 / wallMillis;
+        }
+
+        // Share of all of the cores the process kept busy while the runs were going on
+        public double getProcessCpuPercent() {
+            if (processCpuMillis < 0 || wallMillis == 0) { return -1; }
+            return processCpuMillis * 100.0 / wallMillis / Runtime.getRuntime().availableProcessors();
+        }
+
+        // The completion time (ms) below which the given percentage of the runs finished
+        public long getLatencyPercentile(double percentile) {
+            if (latencies == null || latencies.isEmpty()) { return 0; }
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+            return latencies.get(Math.max(0, Math.min(latencies.size() - 1, index)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d runs (%d at a time), %d failed, in %.1f s%n" +
+                    "  requests:   %d (%.1f per second)%n" +
+                    "  cpu:        %d ms for the process (%.1f%% of %d cores), %d ms in the runs%n" +
+                    "  heap:       %.1f MB at the peak%n" +
+                    "  completion: p50 %d ms, p95 %d ms, p99 %d ms, max %d ms",
+                    runs, concurrency, failures, wallMillis / 1000.0,
+                    requests, getRequestsPerSecond(),
+                    processCpuMillis, getProcessCpuPercent(), Runtime.getRuntime().availableProcessors(), runnerCpuMillis,
+                    peakHeapBytes / (1024.0 * 1024.0),
+                    getLatencyPercentile(50), getLatencyPercentile(95), getLatencyPercentile(99), getLatencyPercentile(100)
+            );
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    By default a few runs to show the runner gets through concurrent builds against the mock. For a real load test
+    raise the numbers, e.g. mvn test -Dtest=TowerLoadTest -Dtower.load.runs=500 -Dtower.load.concurrency=100
+    (-Dtower.load.latency=50 adds 50 ms to every response, -Dtower.load.events=2000 makes every job log that much).
+ */
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.logging.Logger;
+
+public class TowerLoadTest {
+    // The report is for the one raising the numbers, the assertions only check that every run got through
+    private static final Logger LOGGER = Logger.getLogger(TowerLoadTest.class.getName());
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.addWorkflowTemplate("Deploy everything");
+        tower.setJobDuration(200, 1000);
+        tower.setEvents(Integer.getInteger("tower.load.events", 50), 2);
+        tower.setLatency(Long.getLong("tower.load.latency", 0L), Long.getLong("tower.load.latency", 0L) / 2);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private TowerLoadHarness harness(String template, String templateType) {
+        TowerLoadHarness harness = new TowerLoadHarness(tower, "mock", template, templateType);
+        harness.setRuns(Integer.getInteger("tower.load.runs", 10));
+        harness.setConcurrency(Integer.getInteger("tower.load.concurrency", 10));
+        return harness;
+    }
+
+    @Test
+    public void concurrentJobTemplateRuns() throws Exception {
+        TowerLoadHarness harness = harness("Deploy", TowerConnector.JOB_TEMPLATE_TYPE);
+        TowerLoadHarness.Report report = harness.run();
+        LOGGER.info("Job templates: " + report);
+        Assert.assertThat(report.getFirstFailure(), CoreMatchers.nullValue());
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(report.getRuns()));
+    }
+
+    @Test
+    public void concurrentWorkflowRuns() throws Exception {
+        tower.setNodesPerWorkflow(3);
+        TowerLoadHarness harness = harness("Deploy everything", TowerConnector.WORKFLOW_TEMPLATE_TYPE);
+        TowerLoadHarness.Report report = harness.run();
+        LOGGER.info("Workflows: " + report);
+        Assert.assertThat(report.getFirstFailure(), CoreMatchers.nullValue());
+        // Every workflow launches a job per node
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(report.getRuns() * 4));
+    }
+}
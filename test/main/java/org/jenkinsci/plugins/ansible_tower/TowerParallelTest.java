@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Templates launched at the same time (AnsibleTowerRunner.runJobTemplates) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TowerParallelTest {
+    private static final String LAUNCH = "/api/v2/job_templates/N/launch/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private ExecutorService executor;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.addJobTemplate("Migrate");
+        tower.setJobDuration(0, 60000);
+        tower.setEvents(10, 1);
+        executor = Executors.newSingleThreadExecutor();
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        tower.stop();
+    }
+
+    @Test
+    public void anInterruptWhileLaunchingCancelsTheJobsWhichWereLaunched() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<AnsibleTowerTemplateSpec> templates = new ArrayList<AnsibleTowerTemplateSpec>();
+        templates.add(new AnsibleTowerTemplateSpec("Deploy"));
+        templates.add(new AnsibleTowerTemplateSpec("Migrate"));
+        tower.setLatency(1000, 0);
+        Future<Boolean> result = executor.submit(() -> new AnsibleTowerRunner().runJobTemplates(
+                new PrintStream(output, true, "UTF-8"), "mock", templates, true, true, true, false, new EnvVars(),
+                null, null, new ArrayList<Properties>()
+        ));
+
+        // Both launch requests are on their way, Tower only answers them once the build was aborted
+        long giveUpAt = System.currentTimeMillis() + 30000;
+        while (tower.getRequestCount("POST", LAUNCH) < 2) {
+            Assert.assertTrue("The templates were never launched", System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(20);
+        }
+        tower.setLatency(0, 0);
+        result.cancel(true);
+
+        giveUpAt = System.currentTimeMillis() + 60000;
+        while (count(output.toString("UTF-8"), "is now canceled") < 2) {
+            Assert.assertTrue("The jobs were not canceled:\n" + output.toString("UTF-8"), System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(100);
+        }
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, CoreMatchers.containsString("Got interrupted while launching templates"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(2));
+    }
+
+    @Test
+    public void shardingATemplateWhichIgnoresTheLimitLaunchesNothing() throws Exception {
+        tower.setAskLimitOnLaunch(tower.addJobTemplate("Patch"), false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AnsibleTowerRunner runner = new AnsibleTowerRunner();
+        runner.setShards(2);
+        runner.setShardHosts("web1,web2,web3");
+        boolean successful = runner.runJobTemplate(
+                new PrintStream(output, true, "UTF-8"), "mock", "Patch", null, null, null, null, null, null, null,
+                false, false, true, new EnvVars(), TowerConnector.JOB_TEMPLATE_TYPE, false, null, null, new Properties()
+        );
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("Sharding needs prompt for limit on launch"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(0));
+    }
+
+    private static int count(String log, String line) {
+        int count = 0;
+        for (int at = log.indexOf(line); at >= 0; at = log.indexOf(line, at + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Bringing a project to an expected revision (AnsibleTowerRunner.syncProject) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+
+public class TowerProjectSyncTest {
+    private static final String UPDATE = "/api/v2/projects/N/update/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private int projectID;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final Properties results = new Properties();
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        projectID = tower.addProject("Playbooks", "aaa111");
+        tower.setJobDuration(0, 500);
+        tower.setEvents(3, 1);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private boolean sync(String revision) throws Exception {
+        return new AnsibleTowerRunner().syncProject(
+                new PrintStream(output, true, "UTF-8"), "mock", "Playbooks", revision, true, true, true,
+                new EnvVars(), results
+        );
+    }
+
+    @Test
+    public void aProjectAtTheRevisionIsNotUpdated() throws Exception {
+        Assert.assertThat(output.toString("UTF-8"), sync("aaa111"), CoreMatchers.is(true));
+        Assert.assertThat(results.getProperty("SCM_REVISION"), CoreMatchers.is("aaa111"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(0L));
+    }
+
+    @Test
+    public void aShortRevisionMatchesTheFullOne() throws Exception {
+        Assert.assertThat(output.toString("UTF-8"), sync("AAA1"), CoreMatchers.is(true));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("no update needed"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(0L));
+        // Nothing ran but the results are all there
+        Assert.assertThat(results.getProperty("JOB_ID"), CoreMatchers.is(""));
+        Assert.assertThat(results.getProperty("JOB_URL"), CoreMatchers.is(""));
+        Assert.assertThat(results.getProperty("JOB_RESULT"), CoreMatchers.is("SUCCESS"));
+    }
+
+    @Test
+    public void anUpdateToAShortRevisionChecksItByPrefix() throws Exception {
+        tower.setScmHead(projectID, "ccc333ddd444");
+
+        boolean successful = sync("ccc333");
+
+        Assert.assertThat(output.toString("UTF-8"), successful, CoreMatchers.is(true));
+        Assert.assertThat(results.getProperty("SCM_REVISION"), CoreMatchers.is("ccc333ddd444"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void anUpdateRunningForAnotherRevisionIsNotFollowed() throws Exception {
+        // Started before the wanted revision was pushed
+        tower.setScmHead(projectID, "bbb222");
+        tower.setJobDuration(0, 2000);
+        new TowerConnector(tower.getUrl(), "admin", "password").updateProject(projectID);
+        tower.setScmHead(projectID, "ccc333");
+
+        boolean successful = sync("ccc333");
+
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(true));
+        Assert.assertThat(log, CoreMatchers.containsString("may not bring revision ccc333, requesting another update"));
+        Assert.assertThat(results.getProperty("SCM_REVISION"), CoreMatchers.is("ccc333"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(2L));
+    }
+
+    @Test
+    public void anUpdateToAnotherRevisionFailsTheStep() throws Exception {
+        tower.setScmHead(projectID, "bbb222");
+
+        boolean successful = sync("ccc333");
+
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("updated to revision bbb222 instead of the expected ccc333"));
+        Assert.assertThat(results.getProperty("JOB_RESULT"), CoreMatchers.is("FAILED"));
+        Assert.assertThat(results.getProperty("SCM_REVISION"), CoreMatchers.is("bbb222"));
+    }
+
+    @Test
+    public void withoutARevisionTheRunningUpdateIsFollowed() throws Exception {
+        tower.setJobDuration(0, 2000);
+        new TowerConnector(tower.getUrl(), "admin", "password").updateProject(projectID);
+
+        Assert.assertThat(output.toString("UTF-8"), sync(""), CoreMatchers.is(true));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("following it instead of starting another one"));
+        Assert.assertThat(tower.getRequestCount("POST", UPDATE), CoreMatchers.is(1L));
+    }
+}
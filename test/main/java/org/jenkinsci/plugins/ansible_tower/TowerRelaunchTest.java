@@ -0,0 +1,120 @@
+package org.jenkinsci.plugins.ansible_tower;
+
+/*
+    Relaunching the failed hosts of several jobs (AnsibleTowerRunner.relaunchFailedHosts) against a MockTower
+ */
+
+import hudson.EnvVars;
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.util.MockTower;
+import org.jenkinsci.plugins.ansible_tower.util.TowerConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TowerRelaunchTest {
+    private static final String RELAUNCH = "/api/v2/jobs/N/relaunch/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private MockTower tower;
+    private final List<Integer> failedJobs = new ArrayList<Integer>();
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setEvents(10, 1);
+
+        // Two jobs which are already over and failed, their relaunches keep running
+        tower.setJobsFail(true);
+        tower.setJobDuration(0, 0);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        for (int i = 0; i < 2; i++) {
+            failedJobs.add(connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE));
+        }
+        tower.setJobDuration(0, 60000);
+
+        tower.installInto(j);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private boolean relaunch(String jobIDs, ByteArrayOutputStream output) throws Exception {
+        return new AnsibleTowerRunner().relaunchFailedHosts(
+                new PrintStream(output, true, "UTF-8"), "mock", jobIDs, true, true, true, new EnvVars(), null, null,
+                new Properties()
+        );
+    }
+
+    @Test
+    public void aRelaunchWhichFailsCancelsTheOnesBeforeIt() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean successful = relaunch(failedJobs.get(0) + ",9999", output);
+
+        String log = output.toString("UTF-8");
+        Assert.assertThat(log, successful, CoreMatchers.is(false));
+        Assert.assertThat(log, CoreMatchers.containsString("[relaunch of 9999] ERROR: Unable to relaunch job"));
+        Assert.assertThat(log, CoreMatchers.containsString("Canceling the jobs which were already relaunched"));
+        Assert.assertThat(log, CoreMatchers.containsString("is now canceled"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(3));
+    }
+
+    @Test
+    public void anIdWhichIsNotANumberRelaunchesNothing() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean successful = relaunch(failedJobs.get(0) + ",latest", output);
+
+        Assert.assertThat(successful, CoreMatchers.is(false));
+        Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("ERROR: latest is not a job ID"));
+        Assert.assertThat(tower.getRequestCount("POST", RELAUNCH), CoreMatchers.is(0L));
+    }
+
+    @Test
+    public void anInterruptBetweenRelaunchesCancelsTheOnesAlreadyRelaunched() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            tower.setLatency(1000, 0);
+            Future<Boolean> result = executor.submit(() -> relaunch(failedJobs.get(0) + "," + failedJobs.get(1), output));
+
+            // The first relaunch is on its way, the build notices the abort once Tower answered it
+            long giveUpAt = System.currentTimeMillis() + 30000;
+            while (tower.getRequestCount("POST", RELAUNCH) < 1) {
+                Assert.assertTrue("Nothing was relaunched", System.currentTimeMillis() < giveUpAt);
+                Thread.sleep(20);
+            }
+            tower.setLatency(0, 0);
+            result.cancel(true);
+
+            giveUpAt = System.currentTimeMillis() + 60000;
+            while (!output.toString("UTF-8").contains("is now canceled")) {
+                Assert.assertTrue("The relaunch was not canceled:\n" + output.toString("UTF-8"), System.currentTimeMillis() < giveUpAt);
+                Thread.sleep(100);
+            }
+            Assert.assertThat(output.toString("UTF-8"), CoreMatchers.containsString("Got interrupted while relaunching jobs"));
+            Assert.assertThat(tower.getRequestCount("POST", RELAUNCH), CoreMatchers.is(1L));
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,851 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+/*
+    A Tower which runs inside the test: it answers the parts of the API TowerConnector uses (ping, authtoken, the oAuth
+    probe, lookups by name and ID, launching templates, job and workflow job status, paginated job_events,
+    workflow_nodes, project and inventory updates, credential types and instance groups) from memory.
+    Jobs are not run, their state follows the clock: a job is pending for pendingMillis, running for runningMillis and
+    then finished. While it runs its events appear evenly, eventsPerJob of them in total.
+    Every response can be held back by latencyMillis (plus up to latencyJitterMillis) to play a Tower under load.
+    Faults can be injected for requests matching a method and path (see Fault), to test how the plugin copes with a
+    Tower which errors, hangs, answers slowly, drops connections (before or during the response), sends broken JSON or
+    forgets its tokens.
+    The settings are read when a job is launched (durations, events) or a request comes in (latency) so they can be
+    changed while the test runs.
+ */
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.ansible_tower.AnsibleTowerGlobalConfig;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MockTower {
+    public static final String API = "/api/v2";
+    public static final String JOBS = "jobs";
+    public static final String WORKFLOW_JOBS = "workflow_jobs";
+    public static final String PROJECT_UPDATES = "project_updates";
+    public static final String INVENTORY_UPDATES = "inventory_updates";
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final String GREEN = "\u001B[0;32m";
+    private static final String RED = "\u001B[1;31m";
+    private static final String RESET = "\u001B[0m";
+
+    public enum Fault {
+        // 503 without doing anything
+        SERVER_ERROR,
+        // Never answers, the request is held until the mock is stopped
+        HANG,
+        // The right answer, a few bytes at a time with slowBodyMillis between them
+        SLOW_BODY,
+        // Does what was asked, then cuts the connection half way through the body
+        DROP_CONNECTION,
+        // Does what was asked, then closes the connection before sending a single byte of the response
+        CLOSE_BEFORE_RESPONSE,
+        // Does what was asked, then sends only the first half of the JSON
+        MALFORMED_JSON,
+        // Forgets every token handed out so far, the request (and any other until a new login) gets a 401
+        EXPIRE_TOKENS
+    }
+
+    private static class FaultRule {
+        private final Fault fault;
+        private final String method;
+        private final String path;
+        private final AtomicInteger remaining;
+
+        FaultRule(Fault fault, String method, String path, int times) {
+            this.fault = fault;
+            this.method = method;
+            this.path = path;
+            this.remaining = new AtomicInteger(times);
+        }
+
+        boolean take(String method, String path) {
+            if(this.method != null && !this.method.equals(method)) { return false; }
+            if(this.path != null && !this.path.equals(path)) { return false; }
+            if(remaining.get() < 0) { return true; }
+            return remaining.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final List<FaultRule> faults = new CopyOnWriteArrayList<FaultRule>();
+    private volatile long slowBodyMillis = 100;
+    private final AtomicInteger faultsInjected = new AtomicInteger();
+
+    private volatile String version = "3.3.0";
+    private volatile boolean authtokenSupported = true;
+    private volatile boolean oAuthSupported = true;
+    private volatile long latencyMillis = 0;
+    private volatile long latencyJitterMillis = 0;
+    private volatile long pendingMillis = 0;
+    private volatile long runningMillis = 1000;
+    private volatile int eventsPerJob = 20;
+    private volatile int linesPerEvent = 1;
+    private volatile int nodesPerWorkflow = 2;
+    private volatile boolean jobsFail = false;
+    private volatile int failingEvent = -1;
+    private volatile int capacity = 100;
+
+    private final AtomicInteger ids = new AtomicInteger(100);
+    private final AtomicInteger eventIds = new AtomicInteger(1);
+    // Lookups by collection (job_templates, inventories, ...), each item has at least an id and a name
+    private final Map<String, List<JSONObject>> items = new ConcurrentHashMap<String, List<JSONObject>>();
+    private final Map<Integer, MockJob> jobs = new ConcurrentHashMap<Integer, MockJob>();
+    private final Map<Integer, Integer> projectUpdates = new ConcurrentHashMap<Integer, Integer>();
+    private final Map<Integer, String> scmHeads = new ConcurrentHashMap<Integer, String>();
+    private final Map<Integer, String> updateRevisions = new ConcurrentHashMap<Integer, String>();
+    private final Map<String, Boolean> tokens = new ConcurrentHashMap<String, Boolean>();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    public MockTower() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "MockTower request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        addItem("credential_types", 1, "Machine").put("kind", "ssh");
+        addItem("credential_types", 3, "Vault").put("kind", "vault");
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /*
+        Makes this Tower the only installation of the Jenkins, named "mock" and logging in as admin/password with the
+        "tower" credentials. The installation is returned for the tests which need other timeouts, changes to it are
+        picked up by the next connector made from it.
+     */
+    public TowerInstallation installInto(JenkinsRule j) throws IOException {
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "tower", "", "admin", "password")
+        );
+        TowerInstallation installation = new TowerInstallation("mock", getUrl(), "tower", false, false);
+        List<TowerInstallation> installations = new ArrayList<TowerInstallation>();
+        installations.add(installation);
+        AnsibleTowerGlobalConfig config = AnsibleTowerGlobalConfig.get();
+        config.setTowerInstallation(installations);
+        config.save();
+        return installation;
+    }
+
+    public void stop() {
+        stopped.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public void setVersion(String version)                    { this.version = version; }
+    // Without authtoken the connector falls back to basic auth (Tower 3.3 and later)
+    public void setAuthtokenSupported(boolean supported)      { this.authtokenSupported = supported; }
+    public void setOAuthSupported(boolean supported)          { this.oAuthSupported = supported; }
+    public void setLatency(long millis, long jitterMillis)    { this.latencyMillis = millis; this.latencyJitterMillis = jitterMillis; }
+    public void setJobDuration(long pending, long running)    { this.pendingMillis = pending; this.runningMillis = running; }
+    public void setEvents(int perJob, int linesPerEvent)      { this.eventsPerJob = perJob; this.linesPerEvent = linesPerEvent; }
+    public void setNodesPerWorkflow(int nodes)                { this.nodesPerWorkflow = nodes; }
+    public void setJobsFail(boolean fail)                     { this.jobsFail = fail; }
+    // Which event of a failing job reports the failed host, -1 (the default) for the last one
+    public void setFailingEvent(int index)                    { this.failingEvent = index; }
+    // How many jobs fit into the single instance group before it is full
+    public void setCapacity(int jobs)                         { this.capacity = jobs; }
+
+    /*
+        The next times requests (-1 for all of them) matching the method and path get the fault.
+        The path is written like in getRequestCounts, e.g. "/api/v2/jobs/N/", null matches any method or path.
+     */
+    public void injectFault(Fault fault, String method, String path, int times) {
+        faults.add(new FaultRule(fault, method, path, times));
+    }
+
+    public void clearFaults() { faults.clear(); }
+
+    public int getFaultsInjected() { return faultsInjected.get(); }
+
+    public void setSlowBodyMillis(long millis) { this.slowBodyMillis = millis; }
+
+    // Like the EXPIRE_TOKENS fault but right now
+    public void expireTokens() { tokens.clear(); }
+
+    private Fault takeFault(String method, String path) {
+        for(FaultRule rule : faults) {
+            if(rule.take(method, path)) {
+                faultsInjected.incrementAndGet();
+                return rule.fault;
+            }
+        }
+        return null;
+    }
+
+    public int addJobTemplate(String name) {
+        JSONObject template = addItem("job_templates", ids.incrementAndGet(), name);
+        template.put("ask_variables_on_launch", true);
+        template.put("ask_limit_on_launch", true);
+        template.put("ask_inventory_on_launch", true);
+        template.put("ask_credential_on_launch", true);
+        return template.getInt("id");
+    }
+
+    // Like turning off prompt for limit on launch in Tower, the limit of a launch is then ignored
+    public void setAskLimitOnLaunch(int templateID, boolean ask) {
+        for(JSONObject template : items.get("job_templates")) {
+            if(template.getInt("id") == templateID) { template.put("ask_limit_on_launch", ask); }
+        }
+    }
+
+    public int addWorkflowTemplate(String name) {
+        JSONObject template = addItem("workflow_job_templates", ids.incrementAndGet(), name);
+        template.put("ask_variables_on_launch", true);
+        return template.getInt("id");
+    }
+
+    public int addInventory(String name, String... hosts) {
+        JSONObject inventory = addItem("inventories", ids.incrementAndGet(), name);
+        inventory.put("hosts", JSONArray.fromObject(Arrays.asList(hosts)));
+        return inventory.getInt("id");
+    }
+
+    // kind is one of ssh, vault or anything else for an extra credential
+    public int addCredential(String name, String kind) {
+        JSONObject credential = addItem("credentials", ids.incrementAndGet(), name);
+        int type = kind.equals("ssh") ? 1 : kind.equals("vault") ? 3 : 5;
+        credential.put("credential_type", type);
+        return credential.getInt("id");
+    }
+
+    public int addProject(String name, String revision) {
+        JSONObject project = addItem("projects", ids.incrementAndGet(), name);
+        project.put("scm_revision", revision);
+        project.put("status", "successful");
+        return project.getInt("id");
+    }
+
+    // Like picking the project of a job template in Tower
+    public void setTemplateProject(int templateID, int projectID) { findItem("job_templates", templateID).put("project", projectID); }
+
+    // Like setting update revision on launch on the project in Tower
+    public void setUpdateOnLaunch(int projectID, boolean update) { findItem("projects", projectID).put("scm_update_on_launch", update); }
+
+    // The revision the updates of the project which start from now on bring it to, without it they keep its revision
+    public void setScmHead(int projectID, String revision) { scmHeads.put(projectID, revision); }
+
+    public int addInventorySource(String name) {
+        return addItem("inventory_sources", ids.incrementAndGet(), name).getInt("id");
+    }
+
+    private JSONObject addItem(String collection, int id, String name) {
+        JSONObject item = new JSONObject();
+        item.put("id", id);
+        item.put("name", name);
+        items.computeIfAbsent(collection, k -> new CopyOnWriteArrayList<JSONObject>()).add(item);
+        return item;
+    }
+
+    public long getRequestCount() { return requestCount.get(); }
+
+    // Requests by method and path with the IDs replaced by N, e.g. "GET /api/v2/jobs/N/job_events/"
+    public Map<String, Long> getRequestCounts() {
+        TreeMap<String, Long> counts = new TreeMap<String, Long>();
+        for(Map.Entry<String, AtomicLong> entry : requests.entrySet()) { counts.put(entry.getKey(), entry.getValue().get()); }
+        return counts;
+    }
+
+    public long getRequestCount(String method, String path) {
+        AtomicLong count = requests.get(method + " " + path);
+        return count == null ? 0 : count.get();
+    }
+
+    // The jobs which have been launched, of every type
+    public int getLaunchCount() { return jobs.size(); }
+
+    public boolean isCanceled(int jobID) {
+        MockJob job = jobs.get(jobID);
+        return job != null && job.canceledAt > 0;
+    }
+
+    /*
+        Everything below is the request handling
+     */
+
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body == null ? null : body.toString();
+        }
+    }
+
+    private static Response notFound() {
+        return new Response(404, new JSONObject().element("detail", "Not found."));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String requestPath = path.replaceAll("/\\d+/", "/N/");
+            requestCount.incrementAndGet();
+            requests.computeIfAbsent(method + " " + requestPath, k -> new AtomicLong()).incrementAndGet();
+
+            long delay = latencyMillis + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+            if(delay > 0) { Thread.sleep(delay); }
+
+            Fault fault = takeFault(method, requestPath);
+            if(fault == Fault.HANG) {
+                stopped.await(10, TimeUnit.MINUTES);
+                return;
+            }
+            if(fault == Fault.SERVER_ERROR) {
+                send(exchange, new Response(503, new JSONObject().element("detail", "Service Unavailable")));
+                return;
+            }
+            if(fault == Fault.EXPIRE_TOKENS) {
+                expireTokens();
+            }
+
+            Response response = route(method, path, parseQuery(exchange.getRequestURI().getRawQuery()),
+                    exchange.getRequestHeaders().getFirst("Authorization"), readBody(exchange));
+            if(fault == Fault.MALFORMED_JSON && response.body != null) {
+                response = new Response(response.status, response.body.substring(0, response.body.length() / 2));
+            }
+            if(fault == Fault.CLOSE_BEFORE_RESPONSE) {
+                // Closing an exchange which has not sent its headers closes the connection
+                return;
+            }
+            if(fault == Fault.DROP_CONNECTION) {
+                sendHalf(exchange, response);
+            } else if(fault == Fault.SLOW_BODY) {
+                sendSlowly(exchange, response);
+            } else {
+                send(exchange, response);
+            }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch(RuntimeException e) {
+            send(exchange, new Response(500, new JSONObject().element("detail", String.valueOf(e))));
+        } catch(IOException e) {
+            // The client went away (timed out or aborted), or we cut the connection on purpose
+        } finally {
+            try {
+                exchange.close();
+            } catch(RuntimeException e) {
+                // Closing a response which was cut short complains, the connection is gone either way
+            }
+        }
+    }
+
+    private static byte[] startResponse(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = (response.body == null ? "" : response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        return body;
+    }
+
+    private static void sendHalf(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = startResponse(exchange, response);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body, 0, body.length / 2);
+        out.flush();
+        // Closing with bytes missing makes the server drop the connection
+        out.close();
+    }
+
+    private void sendSlowly(HttpExchange exchange, Response response) throws IOException, InterruptedException {
+        byte[] body = startResponse(exchange, response);
+        try(OutputStream out = exchange.getResponseBody()) {
+            for(int sent = 0; sent < body.length; sent += 16) {
+                out.write(body, sent, Math.min(16, body.length - sent));
+                out.flush();
+                if(stopped.await(slowBodyMillis, TimeUnit.MILLISECONDS)) { return; }
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        if(response.body == null || exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try(InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1) { body.write(buffer, 0, read); }
+        }
+        return body.toString("UTF-8");
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        HashMap<String, String> parameters = new HashMap<String, String>();
+        if(query == null || query.isEmpty()) { return parameters; }
+        for(String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            // Repeated keys (or__kind=ssh&or__kind=vault) only matter for the credential types, which ignore them
+            parameters.put(URLDecoder.decode(parts[0], "UTF-8"), parts.length > 1 ? URLDecoder.decode(parts[1], "UTF-8") : "");
+        }
+        return parameters;
+    }
+
+    private boolean isAuthorized(String authorization) {
+        if(authorization == null) { return false; }
+        if(authorization.startsWith("Basic ")) { return true; }
+        String[] parts = authorization.split(" ", 2);
+        return parts.length == 2 && tokens.containsKey(parts[1]);
+    }
+
+    private Response route(String method, String path, Map<String, String> query, String authorization, String body) {
+        if(path.equals("/api/o/") || path.equals("/api/o")) {
+            return new Response(oAuthSupported ? 200 : 404, null);
+        }
+        if(!path.startsWith(API + "/")) { return notFound(); }
+        List<String> segments = new ArrayList<String>();
+        for(String segment : path.substring(API.length()).split("/")) {
+            if(!segment.isEmpty()) { segments.add(segment); }
+        }
+        if(segments.isEmpty()) { return notFound(); }
+
+        String collection = segments.get(0);
+        if(collection.equals("ping")) {
+            return new Response(200, new JSONObject().element("version", version).element("ha", false));
+        }
+        if(collection.equals("authtoken")) {
+            if(!authtokenSupported) { return notFound(); }
+            JSONObject credentials = JSONObject.fromObject(body.isEmpty() ? "{}" : body);
+            if(credentials.optString("username", "").isEmpty()) {
+                return new Response(400, new JSONObject().element("non_field_errors", JSONArray.fromObject(Collections.singletonList("Unable to login with provided credentials."))));
+            }
+            String token = UUID.randomUUID().toString().replace("-", "");
+            tokens.put(token, true);
+            return new Response(200, new JSONObject().element("token", token).element("expires", Instant.now().plusSeconds(1800).toString()));
+        }
+        if(!isAuthorized(authorization)) {
+            return new Response(401, new JSONObject().element("detail", "Authentication credentials were not provided."));
+        }
+
+        Integer id = null;
+        if(segments.size() > 1) {
+            try {
+                id = Integer.parseInt(segments.get(1));
+            } catch(NumberFormatException nfe) {
+                return notFound();
+            }
+        }
+        String action = segments.size() > 2 ? segments.get(2) : null;
+        long now = System.currentTimeMillis();
+
+        if(collection.equals("me")) {
+            return new Response(200, page(Collections.singletonList(new JSONObject().element("id", 1).element("username", "admin")), null));
+        }
+        if(collection.equals("instance_groups")) {
+            return new Response(200, page(Collections.singletonList(instanceGroup(now)), null));
+        }
+        if(isUnifiedJob(collection)) {
+            return routeJob(method, collection, id, action, query, now);
+        }
+
+        if(method.equals("POST") && id != null && action != null) {
+            if(collection.endsWith("job_templates") && action.equals("launch")) {
+                JSONObject template = findItem(collection, id);
+                if(template == null) { return notFound(); }
+                return launch(collection, template, JSONObject.fromObject(body.isEmpty() ? "{}" : body), now);
+            }
+            if(collection.equals("projects") && action.equals("update")) {
+                JSONObject project = findItem(collection, id);
+                if(project == null) { return notFound(); }
+                MockJob update = startJob(PROJECT_UPDATES, "Update of " + project.getString("name"), 0, now);
+                projectUpdates.put(id, update.id);
+                if(scmHeads.containsKey(id)) { updateRevisions.put(update.id, scmHeads.get(id)); }
+                return new Response(202, new JSONObject().element("id", update.id).element("project_update", update.id));
+            }
+            if(collection.equals("inventory_sources") && action.equals("update")) {
+                JSONObject source = findItem(collection, id);
+                if(source == null) { return notFound(); }
+                MockJob update = startJob(INVENTORY_UPDATES, "Sync of " + source.getString("name"), 0, now);
+                return new Response(202, new JSONObject().element("id", update.id).element("inventory_update", update.id));
+            }
+            return new Response(405, new JSONObject().element("detail", "Method \"POST\" not allowed."));
+        }
+        if(!method.equals("GET")) {
+            return new Response(405, new JSONObject().element("detail", "Method \"" + method + "\" not allowed."));
+        }
+
+        if(collection.equals("inventories") && id != null && "hosts".equals(action)) {
+            return inventoryHosts(id, query);
+        }
+        if(id != null) {
+            JSONObject item = findItem(collection, id);
+            if(item == null) { return notFound(); }
+            if(collection.equals("projects")) { return new Response(200, project(item, now)); }
+            return new Response(200, item);
+        }
+        List<JSONObject> found = new ArrayList<JSONObject>();
+        for(JSONObject item : items.getOrDefault(collection, Collections.<JSONObject>emptyList())) {
+            if(!query.containsKey("name") || item.getString("name").equals(query.get("name"))) { found.add(item); }
+        }
+        return new Response(200, page(found, null));
+    }
+
+    private static boolean isUnifiedJob(String collection) {
+        return collection.equals(JOBS) || collection.equals(WORKFLOW_JOBS) || collection.equals(PROJECT_UPDATES) || collection.equals(INVENTORY_UPDATES);
+    }
+
+    private JSONObject findItem(String collection, int id) {
+        for(JSONObject item : items.getOrDefault(collection, Collections.<JSONObject>emptyList())) {
+            if(item.getInt("id") == id) { return item; }
+        }
+        return null;
+    }
+
+    private static JSONObject page(List<?> results, String next) {
+        JSONObject page = new JSONObject();
+        page.put("count", results.size());
+        page.put("next", next == null ? JSONNull.getInstance() : next);
+        page.put("previous", JSONNull.getInstance());
+        page.put("results", JSONArray.fromObject(results));
+        return page;
+    }
+
+    private static int pageSize(Map<String, String> query) {
+        try {
+            return Math.max(1, Math.min(200, Integer.parseInt(query.getOrDefault("page_size", "" + DEFAULT_PAGE_SIZE))));
+        } catch(NumberFormatException nfe) {
+            return DEFAULT_PAGE_SIZE;
+        }
+    }
+
+    private static int intParameter(Map<String, String> query, String name) {
+        try {
+            return Integer.parseInt(query.getOrDefault(name, "0"));
+        } catch(NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+    private JSONObject instanceGroup(long now) {
+        int busy = 0;
+        for(MockJob job : jobs.values()) {
+            if(!job.isFinished(now) && job.type.equals(JOBS)) { busy++; }
+        }
+        return new JSONObject().element("id", 1).element("name", "tower")
+                .element("capacity", capacity * 10).element("consumed_capacity", busy * 10)
+                .element("jobs_running", busy);
+    }
+
+    private JSONObject project(JSONObject item, long now) {
+        JSONObject project = JSONObject.fromObject(item);
+        Integer updateID = projectUpdates.get(item.getInt("id"));
+        MockJob update = updateID == null ? null : jobs.get(updateID);
+        JSONObject summaryFields = new JSONObject();
+        if(update != null) {
+            project.put("status", update.status(now));
+            if(update.isFinished(now) && !update.isFailed(now) && updateRevisions.containsKey(update.id)) {
+                project.put("scm_revision", updateRevisions.get(update.id));
+            }
+            if(!update.isFinished(now)) {
+                summaryFields.put("current_update", new JSONObject().element("id", update.id).element("status", update.status(now)));
+            }
+        }
+        project.put("summary_fields", summaryFields);
+        return project;
+    }
+
+    private Response inventoryHosts(int id, Map<String, String> query) {
+        JSONObject inventory = findItem("inventories", id);
+        if(inventory == null) { return notFound(); }
+        int after = intParameter(query, "id__gt");
+        int size = pageSize(query);
+        List<JSONObject> hosts = new ArrayList<JSONObject>();
+        JSONArray names = inventory.getJSONArray("hosts");
+        // Host IDs are the position in the inventory, starting at 1
+        for(int i = after; i < names.size() && hosts.size() < size; i++) {
+            hosts.add(new JSONObject().element("id", i + 1).element("name", names.getString(i)));
+        }
+        return new Response(200, page(hosts, null));
+    }
+
+    private Response launch(String collection, JSONObject template, JSONObject postBody, long now) {
+        if(postBody.containsKey("extra_vars") && postBody.getString("extra_vars").trim().startsWith("{") && !isJSON(postBody.getString("extra_vars"))) {
+            return new Response(400, new JSONObject().element("extra_vars", JSONArray.fromObject(Collections.singletonList("Must be valid JSON or YAML."))));
+        }
+        if(collection.equals("workflow_job_templates")) {
+            MockJob workflow = startJob(WORKFLOW_JOBS, template.getString("name"), template.getInt("id"), now);
+            for(int i = 0; i < nodesPerWorkflow; i++) {
+                workflow.children.add(startJob(JOBS, template.getString("name") + " node " + (i + 1), 0, now));
+            }
+            return new Response(201, new JSONObject().element("id", workflow.id).element("workflow_job", workflow.id));
+        }
+        JSONObject ignored = new JSONObject();
+        if(postBody.containsKey("limit") && !template.optBoolean("ask_limit_on_launch")) {
+            ignored.put("limit", postBody.get("limit"));
+        }
+        MockJob job = startJob(JOBS, template.getString("name"), template.getInt("id"), now);
+        return new Response(201, new JSONObject().element("id", job.id).element("job", job.id)
+                .element("ignored_fields", ignored));
+    }
+
+    private static boolean isJSON(String text) {
+        try {
+            JSONObject.fromObject(text);
+            return true;
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    private MockJob startJob(String type, String name, int templateID, long now) {
+        int events = type.equals(WORKFLOW_JOBS) ? 0 : eventsPerJob;
+        MockJob job = new MockJob(ids.incrementAndGet(), type, name, templateID, now, pendingMillis, runningMillis,
+                eventIds.getAndAdd(Math.max(events, 1)), events, linesPerEvent, jobsFail, failingEvent);
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    private Response routeJob(String method, String collection, Integer id, String action, Map<String, String> query, long now) {
+        if(id == null) {
+            if(!method.equals("GET")) { return new Response(405, null); }
+            List<JSONObject> found = new ArrayList<JSONObject>();
+            if(query.containsKey("id__in")) {
+                for(String anID : query.get("id__in").split(",")) {
+                    MockJob job = jobs.get(Integer.parseInt(anID.trim()));
+                    if(job != null && job.type.equals(collection)) { found.add(job.toJSON(now)); }
+                }
+            } else {
+                for(MockJob job : jobs.values()) {
+                    if(job.type.equals(collection)) { found.add(job.toJSON(now)); }
+                }
+            }
+            return new Response(200, page(found, null));
+        }
+
+        MockJob job = jobs.get(id);
+        if(job == null || !job.type.equals(collection)) { return notFound(); }
+        if(action == null) {
+            return method.equals("GET") ? new Response(200, job.toJSON(now)) : new Response(405, null);
+        }
+        if(action.equals("cancel") && method.equals("POST")) {
+            if(job.isFinished(now)) {
+                return new Response(405, new JSONObject().element("detail", "Method \"POST\" not allowed."));
+            }
+            job.cancel(now);
+            return new Response(202, null);
+        }
+        if(action.equals("relaunch") && method.equals("POST") && collection.equals(JOBS)) {
+            MockJob relaunched = startJob(JOBS, job.name, job.templateID, now);
+            return new Response(201, new JSONObject().element("id", relaunched.id).element("job", relaunched.id));
+        }
+        if(action.equals("job_events") && method.equals("GET") && collection.equals(JOBS)) {
+            return jobEvents(job, query, now);
+        }
+        if(action.equals("workflow_nodes") && method.equals("GET") && collection.equals(WORKFLOW_JOBS)) {
+            return workflowNodes(job, query, now);
+        }
+        return notFound();
+    }
+
+    private Response jobEvents(MockJob job, Map<String, String> query, long now) {
+        int after = intParameter(query, "id__gt");
+        int size = pageSize(query);
+        int emitted = job.emittedEvents(now);
+        int first = Math.max(job.firstEventId, after + 1);
+        int last = job.firstEventId + emitted - 1;
+        List<JSONObject> events = new ArrayList<JSONObject>();
+        for(int eventID = first; eventID <= last && events.size() < size; eventID++) {
+            events.add(job.event(eventID - job.firstEventId));
+        }
+        String next = null;
+        if(!events.isEmpty() && first + events.size() - 1 < last) {
+            next = API + "/jobs/" + job.id + "/job_events/?id__gt=" + (first + events.size() - 1) + "&page=2";
+        }
+        JSONObject page = page(events, next);
+        page.put("count", Math.max(0, last - Math.max(job.firstEventId, after + 1) + 1));
+        return new Response(200, page);
+    }
+
+    private Response workflowNodes(MockJob workflow, Map<String, String> query, long now) {
+        int after = intParameter(query, "id__gt");
+        List<JSONObject> nodes = new ArrayList<JSONObject>();
+        for(MockJob child : workflow.children) {
+            // A node gets the ID of its job, so they are ordered like the jobs were launched
+            if(child.id <= after) { continue; }
+            JSONObject job = new JSONObject().element("id", child.id).element("name", child.name)
+                    .element("status", child.status(now)).element("failed", child.isFailed(now));
+            JSONObject template = new JSONObject().element("id", child.templateID).element("name", child.name)
+                    .element("unified_job_type", "job");
+            JSONObject node = new JSONObject();
+            node.put("id", child.id);
+            node.put("job", child.id);
+            node.put("workflow_job", workflow.id);
+            node.put("summary_fields", new JSONObject().element("job", job).element("unified_job_template", template));
+            nodes.add(node);
+        }
+        return new Response(200, page(nodes, null));
+    }
+
+    private class MockJob {
+        private final int id;
+        private final String type;
+        private final String name;
+        private final int templateID;
+        private final long createdAt;
+        private final long pendingMillis;
+        private final long runningMillis;
+        private final int firstEventId;
+        private final int eventCount;
+        private final int linesPerEvent;
+        private final boolean fails;
+        private final int failingEvent;
+        private final List<MockJob> children = new CopyOnWriteArrayList<MockJob>();
+        private volatile long canceledAt = 0;
+
+        private MockJob(int id, String type, String name, int templateID, long createdAt, long pendingMillis,
+                        long runningMillis, int firstEventId, int eventCount, int linesPerEvent, boolean fails, int failingEvent) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.templateID = templateID;
+            this.createdAt = createdAt;
+            this.pendingMillis = pendingMillis;
+            this.runningMillis = runningMillis;
+            this.firstEventId = firstEventId;
+            this.eventCount = eventCount;
+            this.linesPerEvent = linesPerEvent;
+            this.fails = fails;
+            this.failingEvent = failingEvent < 0 || failingEvent >= eventCount ? eventCount - 1 : failingEvent;
+        }
+
+        private long startedAt()  { return createdAt + pendingMillis; }
+        private long finishedAt() { return canceledAt > 0 ? canceledAt : startedAt() + runningMillis; }
+
+        private void cancel(long now) {
+            canceledAt = now;
+            for(MockJob child : children) {
+                if(!child.isFinished(now)) { child.cancel(now); }
+            }
+        }
+
+        private boolean isFinished(long now) {
+            return now >= finishedAt();
+        }
+
+        private boolean isFailed(long now) {
+            return isFinished(now) && (canceledAt > 0 || fails);
+        }
+
+        private String status(long now) {
+            if(canceledAt > 0) { return "canceled"; }
+            if(now < startedAt()) { return "pending"; }
+            if(now < finishedAt()) { return "running"; }
+            return fails ? "failed" : "successful";
+        }
+
+        private int emittedEvents(long now) {
+            if(now < startedAt()) { return 0; }
+            if(isFinished(now) || runningMillis <= 0) {
+                // A canceled job keeps what it had written until then
+                if(canceledAt == 0) { return eventCount; }
+                now = canceledAt;
+            }
+            return (int) Math.min(eventCount, eventCount * (now - startedAt()) / Math.max(1, runningMillis));
+        }
+
+        private JSONObject event(int index) {
+            String host = "host-" + (index % 10) + ".example.com";
+            boolean failed = fails && index == failingEvent;
+            StringBuilder stdout = new StringBuilder();
+            for(int line = 0; line < linesPerEvent; line++) {
+                if(line > 0) { stdout.append("\r\n"); }
+                stdout.append(failed ? RED + "fatal: [" + host + "]: FAILED! => {\"changed\": false}" + RESET
+                        : GREEN + "ok: [" + host + "] => (item=" + index + "." + line + ")" + RESET);
+            }
+            JSONObject event = new JSONObject();
+            event.put("id", firstEventId + index);
+            event.put("counter", index + 1);
+            event.put("job", id);
+            event.put("event", failed ? "runner_on_failed" : "runner_on_ok");
+            event.put("host_name", host);
+            event.put("task", "task " + index);
+            event.put("stdout", stdout.toString());
+            event.put("event_data", new JSONObject().element("host", host).element("task", "task " + index));
+            return event;
+        }
+
+        private JSONObject toJSON(long now) {
+            boolean finished = isFinished(now);
+            JSONObject job = new JSONObject();
+            job.put("id", id);
+            job.put("type", type.substring(0, type.length() - 1));
+            job.put("name", name);
+            job.put("status", status(now));
+            job.put("failed", isFailed(now));
+            job.put("created", Instant.ofEpochMilli(createdAt).toString());
+            job.put("started", now < startedAt() ? JSONNull.getInstance() : Instant.ofEpochMilli(Math.min(startedAt(), finishedAt())).toString());
+            job.put("finished", finished ? Instant.ofEpochMilli(finishedAt()).toString() : JSONNull.getInstance());
+            job.put("elapsed", (Math.min(now, finishedAt()) - createdAt) / 1000.0);
+            if(templateID > 0) { job.put("unified_job_template", templateID); }
+            if(type.equals(JOBS)) {
+                job.put("artifacts", new JSONObject());
+            }
+            if(type.equals(PROJECT_UPDATES) || type.equals(INVENTORY_UPDATES)) {
+                StringBuilder stdout = new StringBuilder();
+                for(int i = 0; i < emittedEvents(now); i++) {
+                    if(i > 0) { stdout.append("\r\n"); }
+                    stdout.append(event(i).getString("stdout"));
+                }
+                job.put("result_stdout", stdout.toString());
+            }
+            return job;
+        }
+    }
+}
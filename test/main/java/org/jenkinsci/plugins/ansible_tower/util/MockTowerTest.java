@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class MockTowerTest {
+    private MockTower tower;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private static void waitForCompletion(TowerConnector connector, int jobID, String templateType) throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while(!connector.isJobCompleted(jobID, templateType)) {
+            Assert.assertTrue("The job did not complete", System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void connectorLogsInAndReadsTheVersion() throws Exception {
+        tower.setVersion("3.2.4");
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        Assert.assertThat(connector.getTowerVersion().getVersion(), CoreMatchers.is("3.2.4"));
+        connector.testConnection();
+        Assert.assertThat(tower.getRequestCount("POST", "/api/v2/authtoken/"), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void prewarmingDoesNotAskForTheVersionAgain() throws Exception {
+        new TowerConnector(tower.getUrl(), "admin", "password").prewarm();
+        Assert.assertThat(tower.getRequestCount("GET", "/api/v2/ping/"), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getRequestCount("GET", "/api/v2/me/"), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void basicAuthIsUsedWithoutAuthtoken() throws Exception {
+        tower.setAuthtokenSupported(false);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        connector.testConnection();
+    }
+
+    @Test
+    public void jobEventsArePaginatedUntilTheJobIsDone() throws Exception {
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 300);
+        tower.setEvents(60, 1);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        connector.setJenkinsLogger(new PrintStream(log, true, "UTF-8"));
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(true);
+
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        int jobID = connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+        waitForCompletion(connector, jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+        connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+
+        String[] lines = log.toString("UTF-8").split("\n");
+        Assert.assertThat(lines.length, CoreMatchers.is(60));
+        Assert.assertThat(lines[0].trim(), CoreMatchers.is("ok: [host-0.example.com] => (item=0.0)"));
+        Assert.assertThat(connector.isJobFailed(jobID, TowerConnector.JOB_TEMPLATE_TYPE), CoreMatchers.is(false));
+        // 25 events per page
+        Assert.assertThat(tower.getRequestCount("GET", "/api/v2/jobs/N/job_events/") >= 3, CoreMatchers.is(true));
+    }
+
+    @Test
+    public void failedJobsReportTheFailedHost() throws Exception {
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 0);
+        tower.setEvents(5, 1);
+        tower.setJobsFail(true);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        connector.setJenkinsLogger(new PrintStream(new ByteArrayOutputStream()));
+
+        int jobID = connector.submitTemplate(connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id"),
+                null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+        waitForCompletion(connector, jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+        connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+        Assert.assertThat(connector.isJobFailed(jobID, TowerConnector.JOB_TEMPLATE_TYPE), CoreMatchers.is(true));
+        Assert.assertThat(connector.getFailedHosts(jobID).keySet().iterator().next(), CoreMatchers.is("host-4.example.com"));
+    }
+
+    @Test
+    public void workflowNodesFollowTheirJobs() throws Exception {
+        tower.addWorkflowTemplate("Deploy everything");
+        tower.setNodesPerWorkflow(3);
+        tower.setJobDuration(0, 100);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        connector.setJenkinsLogger(new PrintStream(log, true, "UTF-8"));
+
+        int templateID = connector.getJobTemplate("Deploy everything", TowerConnector.WORKFLOW_TEMPLATE_TYPE).getInt("id");
+        int jobID = connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.WORKFLOW_TEMPLATE_TYPE);
+        waitForCompletion(connector, jobID, TowerConnector.WORKFLOW_TEMPLATE_TYPE);
+        connector.logEvents(jobID, TowerConnector.WORKFLOW_TEMPLATE_TYPE, false);
+        Assert.assertThat(log.toString("UTF-8"), CoreMatchers.containsString("Deploy everything node 3 => successful"));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(4));
+    }
+}
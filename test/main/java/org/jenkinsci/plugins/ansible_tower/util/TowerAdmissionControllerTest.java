@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerAdmissionUnavailable;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TowerAdmissionControllerTest {
+
+    @Test
+    public void admitsRightAwayWhenBelowLoad() throws Exception {
+        TowerAdmissionController controller = new TowerAdmissionController(1000, 0, 60000);
+        long waited = controller.awaitAdmission(() -> 10, 50, Long.MAX_VALUE);
+        Assert.assertThat(waited < 1000, CoreMatchers.is(true));
+        Assert.assertThat(controller.getWaiting(), CoreMatchers.is(0));
+    }
+
+    @Test
+    public void waitsUntilLoadDrops() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        TowerAdmissionController controller = new TowerAdmissionController(20, 0, 60000);
+        controller.awaitAdmission(() -> calls.incrementAndGet() < 3 ? 90 : 10, 50, Long.MAX_VALUE);
+        Assert.assertThat(calls.get(), CoreMatchers.is(3));
+    }
+
+    @Test(expected = AnsibleTowerException.class)
+    public void givesUpAtTheDeadline() throws Exception {
+        TowerAdmissionController controller = new TowerAdmissionController(20, 0, 60000);
+        controller.awaitAdmission(() -> 90, 50, System.currentTimeMillis() + 100);
+    }
+
+    @Test(expected = AnsibleTowerException.class)
+    public void givesUpWithoutADeadline() throws Exception {
+        TowerAdmissionController controller = new TowerAdmissionController(20, 0, 100);
+        controller.awaitAdmission(() -> 90, 50, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void anUnknownLoadLetsTheNextOneInLine() throws Exception {
+        TowerAdmissionController controller = new TowerAdmissionController(20, 0, 60000);
+        try {
+            controller.awaitAdmission(() -> { throw new AnsibleTowerAdmissionUnavailable("no instance groups"); }, 50, Long.MAX_VALUE);
+            Assert.fail("The load is unknown");
+        } catch (AnsibleTowerAdmissionUnavailable e) {
+            Assert.assertThat(controller.getWaiting(), CoreMatchers.is(0));
+        }
+        controller.awaitAdmission(() -> 10, 50, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void releasesEveryWaitingLaunch() throws Exception {
+        final TowerAdmissionController controller = new TowerAdmissionController(10, 20, 60000);
+        final List<Integer> admitted = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            final int id = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    controller.awaitAdmission(() -> 10, 50, Long.MAX_VALUE);
+                    admitted.add(id);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            // Make sure each thread is queued before the next one arrives
+            while (controller.getWaiting() <= i && admitted.size() <= i) {
+                Thread.sleep(1);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        Assert.assertThat(admitted.size(), CoreMatchers.is(4));
+    }
+}
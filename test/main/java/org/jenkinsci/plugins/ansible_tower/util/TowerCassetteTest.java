@@ -0,0 +1,167 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class TowerCassetteTest {
+    private static final String REPLAY_URL = "http://replay.invalid";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockTower tower;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(50, 300);
+        tower.setEvents(60, 2);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+        TowerCassettePlayer.uninstall(REPLAY_URL);
+    }
+
+    // Launches the template and imports the log the way the runner does, returning what went to the Jenkins log
+    private static String runTemplate(TowerConnector connector, String extraVars, long pollInterval) throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        connector.setJenkinsLogger(new PrintStream(log, true, "UTF-8"));
+        connector.setLogTowerEvents(true);
+        connector.setRemoveColor(true);
+
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        int jobID = connector.submitTemplate(templateID, extraVars, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while(true) {
+            connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+            if(connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE)) { break; }
+            Assert.assertTrue("The job did not complete", System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(pollInterval);
+        }
+        connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+        log.write(("failed: "+ connector.isJobFailed(jobID, TowerConnector.JOB_TEMPLATE_TYPE)).getBytes(StandardCharsets.UTF_8));
+        return log.toString("UTF-8");
+    }
+
+    private File record(String extraVars) throws Exception {
+        TowerCassette cassette = new TowerCassette(new File(folder.getRoot(), "run"+ TowerCassette.EXTENSION));
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        connector.setCassette(cassette);
+        runTemplate(connector, extraVars, 50);
+        cassette.finish(TowerConnector.JOB_TEMPLATE_TYPE, 1);
+        return cassette.getFile();
+    }
+
+    private static String readCassette(File file) throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) { content.write(buffer, 0, read); }
+        }
+        return content.toString("UTF-8");
+    }
+
+    @Test
+    public void recordedRunReplaysTheSameWithoutTower() throws Exception {
+        TowerCassette cassette = new TowerCassette(new File(folder.getRoot(), "run"+ TowerCassette.EXTENSION));
+        TowerConnector recording = new TowerConnector(tower.getUrl(), "admin", "password");
+        recording.setCassette(cassette);
+        String recordedLog = runTemplate(recording, null, 50);
+        cassette.finish(TowerConnector.JOB_TEMPLATE_TYPE, 1);
+        long requestsToTower = tower.getRequestCount();
+        tower.stop();
+
+        TowerCassettePlayer player = TowerCassettePlayer.load(cassette.getFile());
+        player.setSpeed(0);
+        TowerCassettePlayer.install(REPLAY_URL, player);
+        String replayedLog = runTemplate(new TowerConnector(REPLAY_URL, "admin", "password"), null, 0);
+
+        Assert.assertThat(replayedLog, CoreMatchers.is(recordedLog));
+        Assert.assertThat(recordedLog, CoreMatchers.containsString("failed: false"));
+        Assert.assertThat(player.getJobID(), CoreMatchers.is(1));
+        Assert.assertThat(player.getTowerVersion(), CoreMatchers.is(recording.getTowerVersion().getVersion()));
+        Assert.assertThat((long) player.getRecordedRequests(), CoreMatchers.is(cassette.getRequests()));
+        Assert.assertTrue(cassette.getRequests() <= requestsToTower);
+    }
+
+    @Test
+    public void replayKeepsTheRecordedTiming() throws Exception {
+        tower.setLatency(100, 0);
+        File file = record(null);
+        tower.stop();
+
+        TowerCassettePlayer player = TowerCassettePlayer.load(file);
+        TowerCassettePlayer.install(REPLAY_URL, player);
+        TowerConnector connector = new TowerConnector(REPLAY_URL, "admin", "password");
+        long startedAt = System.currentTimeMillis();
+        connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE);
+        Assert.assertTrue("The lookup was answered at once", System.currentTimeMillis() - startedAt >= 150);
+
+        player.rewind();
+        player.setSpeed(0);
+        startedAt = System.currentTimeMillis();
+        connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE);
+        Assert.assertTrue("The lookup was not sped up", System.currentTimeMillis() - startedAt < 150);
+    }
+
+    @Test
+    public void secretsAreNotRecorded() throws Exception {
+        String content = readCassette(record("db_password: hunter2\nregion: eu-west-1"));
+
+        Assert.assertThat(content, CoreMatchers.not(CoreMatchers.containsString("hunter2")));
+        Assert.assertThat(content, CoreMatchers.containsString("db_password: "+ TowerCassette.REDACTED));
+        Assert.assertThat(content, CoreMatchers.containsString("region: eu-west-1"));
+        Assert.assertThat(content, CoreMatchers.not(CoreMatchers.containsString("/authtoken/")));
+        Assert.assertThat(content, CoreMatchers.not(CoreMatchers.containsString("\"password\":\"password\"")));
+        // admin:password as sent in a basic auth header
+        Assert.assertThat(content, CoreMatchers.not(CoreMatchers.containsString("YWRtaW46cGFzc3dvcmQ=")));
+    }
+
+    @Test
+    public void bodiesAreRedactedWithoutOtherChanges() {
+        String body = "{\"id\":3,\"inputs\":{\"username\":\"deploy\",\"password\":\"s3cret\",\"ssh_key_data\":\"-----BEGIN\"},"
+                + "\"ask_password_on_launch\":true,\"become_password\":\"\","
+                + "\"extra_vars\":\"{\\\"api_token\\\": \\\"abc\\\", \\\"size\\\": 3}\"}";
+        String redacted = TowerCassette.redactBody(body);
+        Assert.assertThat(redacted, CoreMatchers.not(CoreMatchers.containsString("s3cret")));
+        Assert.assertThat(redacted, CoreMatchers.not(CoreMatchers.containsString("BEGIN")));
+        Assert.assertThat(redacted, CoreMatchers.not(CoreMatchers.containsString("abc")));
+        Assert.assertThat(redacted, CoreMatchers.containsString("\"username\":\"deploy\""));
+        Assert.assertThat(redacted, CoreMatchers.containsString("\"ask_password_on_launch\":true"));
+
+        String plain = "{\"count\": 1, \"results\": [{\"stdout\": \"{\\\"changed\\\": false}\"}]}";
+        Assert.assertThat(TowerCassette.redactBody(plain), CoreMatchers.sameInstance(plain));
+        Assert.assertThat(TowerCassette.redactBody("Identity added: /tmp/key"), CoreMatchers.is("Identity added: /tmp/key"));
+    }
+
+    @Test
+    public void requestsMissingFromTheCassetteFail() throws Exception {
+        File file = record(null);
+        TowerCassettePlayer.install(REPLAY_URL, TowerCassettePlayer.load(file));
+        TowerConnector connector = new TowerConnector(REPLAY_URL, "admin", "password");
+        try {
+            connector.getJobTemplate("Undeploy", TowerConnector.JOB_TEMPLATE_TYPE);
+            Assert.fail("A template which was never looked up was found");
+        } catch(AnsibleTowerException ate) {
+            Assert.assertThat(ate.getMessage(), CoreMatchers.containsString("The cassette has no response for GET /api/v2/job_templates/?name=Undeploy"));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class TowerCheckResultCacheTest {
+
+    @Test
+    public void returnsFreshEntries() {
+        TowerCheckResultCache cache = new TowerCheckResultCache(10);
+        cache.put("key", new TowerCheckResultCache.Entry(true, Collections.singletonMap("VAR", "value"), 12, "url"));
+        TowerCheckResultCache.Entry entry = cache.get("key", 60000);
+        Assert.assertThat(entry.isSuccessful(), CoreMatchers.is(true));
+        Assert.assertThat(entry.getExports().get("VAR"), CoreMatchers.is("value"));
+        Assert.assertThat(entry.getJobID(), CoreMatchers.is(12));
+    }
+
+    @Test
+    public void dropsEntriesOlderThanAllowed() throws Exception {
+        TowerCheckResultCache cache = new TowerCheckResultCache(10);
+        cache.put("key", new TowerCheckResultCache.Entry(false, Collections.<String, String>emptyMap(), 12, "url"));
+        Thread.sleep(20);
+        Assert.assertThat(cache.get("key", 10), CoreMatchers.nullValue());
+        Assert.assertThat(cache.size(), CoreMatchers.is(0));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        TowerCheckResultCache cache = new TowerCheckResultCache(2);
+        cache.put("a", new TowerCheckResultCache.Entry(true, Collections.<String, String>emptyMap(), 1, "url"));
+        cache.put("b", new TowerCheckResultCache.Entry(true, Collections.<String, String>emptyMap(), 2, "url"));
+        cache.get("a", 60000);
+        cache.put("c", new TowerCheckResultCache.Entry(true, Collections.<String, String>emptyMap(), 3, "url"));
+        Assert.assertThat(cache.get("a", 60000), CoreMatchers.notNullValue());
+        Assert.assertThat(cache.get("b", 60000), CoreMatchers.nullValue());
+    }
+}
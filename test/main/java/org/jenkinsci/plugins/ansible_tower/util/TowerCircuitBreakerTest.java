@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TowerCircuitBreakerTest {
+
+    @Test
+    public void staysClosedBelowThreshold() {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(3, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+        Assert.assertThat(breaker.isOpen(), CoreMatchers.is(false));
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(3, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+    }
+
+    @Test
+    public void opensAtThreshold() {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(3, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(false));
+        Assert.assertThat(breaker.getRemainingOpenSeconds() > 0, CoreMatchers.is(true));
+    }
+
+    @Test
+    public void onlyOneProbeWhenHalfOpen() throws Exception {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(false));
+        Thread.sleep(100);
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(false));
+    }
+
+    @Test
+    public void failedProbeReopens() throws Exception {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Thread.sleep(100);
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+        breaker.recordFailure();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(false));
+    }
+
+    @Test
+    public void successfulProbeCloses() throws Exception {
+        TowerCircuitBreaker breaker = new TowerCircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Thread.sleep(100);
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+        breaker.recordSuccess();
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+        Assert.assertThat(breaker.allowRequest(), CoreMatchers.is(true));
+    }
+}
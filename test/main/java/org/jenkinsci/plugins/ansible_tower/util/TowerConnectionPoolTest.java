@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TowerConnectionPoolTest {
+    private ServerSocket server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    // Reads every request and closes the connection without sending a byte back
+    @Before
+    public void startServer() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while(!server.isClosed()) {
+                try(Socket socket = server.accept()) {
+                    readRequest(socket.getInputStream());
+                    requests.incrementAndGet();
+                } catch(IOException e) {
+                    // Closed at the end of the test
+                }
+            }
+        }, "Dropping server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    private static void readRequest(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        int b;
+        while((b = in.read()) != -1) {
+            head.append((char) b);
+            if(head.toString().endsWith("\r\n\r\n")) { break; }
+        }
+        for(String line : head.toString().split("\r\n")) {
+            if(line.toLowerCase().startsWith("content-length:")) {
+                int length = Integer.parseInt(line.substring("content-length:".length()).trim());
+                for(int i = 0; i < length && in.read() != -1; i++) { }
+            }
+        }
+    }
+
+    @Test
+    public void postsAreNotResentWhenTheConnectionClosesBeforeTheResponse() throws Exception {
+        String url = "http://"+ server.getInetAddress().getHostAddress() +":"+ server.getLocalPort();
+        DefaultHttpClient client = TowerConnectionPool.getClient(url, false, 1000, 1000);
+        HttpPost launch = new HttpPost(url +"/api/v2/job_templates/7/launch/");
+        launch.setEntity(new StringEntity("{}"));
+        try {
+            client.execute(launch);
+            Assert.fail("The server never answers");
+        } catch(NoHttpResponseException e) {
+            // Expected, the launch may or may not have started in Tower
+        }
+        Assert.assertThat(requests.get(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void anInstallationUsesTheClientItsConnectorsAskFor() throws Exception {
+        MockTower tower = new MockTower();
+        try {
+            TowerInstallation installation = new TowerInstallation("pool", tower.getUrl() +"/", "", false, false);
+            installation.setReadTimeout(5);
+            TowerConnector connector = new TowerConnector(tower.getUrl() +"/", "admin", "password", null, false, false, 0, 5, 0);
+            Assert.assertThat(installation.getConnectionPoolKey(), CoreMatchers.is(connector.getPoolKey()));
+        } finally {
+            tower.stop();
+        }
+    }
+
+    @Test
+    public void clientsNotRetainedAreShutDown() throws Exception {
+        String url = "http://"+ server.getInetAddress().getHostAddress() +":"+ server.getLocalPort();
+        TowerConnectionPool.getClient(url, false, 1000, 1000);
+        TowerConnectionPool.getClient(url, false, 2000, 2000);
+        String kept = TowerConnectionPool.getKey(url, false, 2000, 2000);
+
+        TowerConnectionPool.retain(Collections.singletonList(kept));
+
+        Assert.assertThat(TowerConnectionPool.hasClient(TowerConnectionPool.getKey(url, false, 1000, 1000)), CoreMatchers.is(false));
+        Assert.assertThat(TowerConnectionPool.hasClient(kept), CoreMatchers.is(true));
+    }
+}
@@ -0,0 +1,192 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerNotResponding;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class TowerConnectorFaultTest {
+    private static final String JOB = "/api/v2/jobs/N/";
+    private static final String JOB_EVENTS = "/api/v2/jobs/N/job_events/";
+    private static final String LAUNCH = "/api/v2/job_templates/N/launch/";
+
+    private MockTower tower;
+    private TowerConnector connector;
+    private int templateID;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 0);
+        // One second to connect and between two reads, three seconds for a whole request
+        connector = new TowerConnector(tower.getUrl(), "admin", "password", null, false, false, 1, 1, 3);
+        connector.setJenkinsLogger(new PrintStream(new ByteArrayOutputStream()));
+        templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private int launch() throws AnsibleTowerException {
+        return connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+    }
+
+    @Test
+    public void serverErrorsOnPollsAreRetried() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "GET", JOB, 2);
+        Assert.assertThat(connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE), CoreMatchers.is(true));
+        Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(3L));
+    }
+
+    @Test
+    public void theRetriesOfARequestAreOneFailureForTheCircuitBreaker() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "GET", JOB, -1);
+        TowerCircuitBreaker breaker = TowerCircuitBreaker.forUrl(tower.getUrl());
+        for(int i = 1; i <= 5; i++) {
+            Assert.assertThat("Open after "+ (i - 1) +" failed requests", breaker.isOpen(), CoreMatchers.is(false));
+            try {
+                connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+                Assert.fail("Tower only answered with errors");
+            } catch(AnsibleTowerNotResponding e) {
+                Assert.fail("The breaker opened after "+ (i - 1) +" failed requests");
+            } catch(AnsibleTowerException e) {
+                // Every attempt failed
+            }
+        }
+        Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(20L));
+        Assert.assertThat(breaker.isOpen(), CoreMatchers.is(true));
+        try {
+            connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+            Assert.fail("The breaker is open");
+        } catch(AnsibleTowerNotResponding e) {
+            Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(20L));
+        }
+    }
+
+    @Test
+    public void serverErrorsOnLaunchAreNotRetried() throws Exception {
+        tower.injectFault(MockTower.Fault.SERVER_ERROR, "POST", LAUNCH, 1);
+        try {
+            launch();
+            Assert.fail("The launch should have failed");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("503"));
+        }
+        Assert.assertThat(tower.getRequestCount("POST", LAUNCH), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(0));
+    }
+
+    @Test
+    public void droppedLaunchResponseDoesNotLaunchTwice() throws Exception {
+        tower.injectFault(MockTower.Fault.DROP_CONNECTION, "POST", LAUNCH, 1);
+        try {
+            launch();
+            Assert.fail("The launch should have failed");
+        } catch(AnsibleTowerException e) {
+            // Tower launched the job but we never heard which one, sending the launch again would start a second one
+        }
+        Assert.assertThat(tower.getRequestCount("POST", LAUNCH), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void launchClosedBeforeTheResponseIsNotSentAgain() throws Exception {
+        // The HttpClient gets a NoHttpResponseException here, which it would retry on its own if we let it
+        tower.injectFault(MockTower.Fault.CLOSE_BEFORE_RESPONSE, "POST", LAUNCH, 1);
+        try {
+            launch();
+            Assert.fail("The launch should have failed");
+        } catch(AnsibleTowerException e) {
+            // Expected, Tower launched the job but never said so
+        }
+        Assert.assertThat(tower.getRequestCount("POST", LAUNCH), CoreMatchers.is(1L));
+        Assert.assertThat(tower.getLaunchCount(), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void pollClosedBeforeTheResponseIsRetried() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.CLOSE_BEFORE_RESPONSE, "GET", JOB, 1);
+        connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+        Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(2L));
+    }
+
+    @Test
+    public void droppedPageIsAnAnsibleTowerException() throws Exception {
+        tower.setEvents(200, 1);
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.DROP_CONNECTION, "GET", JOB_EVENTS, 1);
+        try {
+            connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+            Assert.fail("Reading the events should have failed");
+        } catch(AnsibleTowerException e) {
+            // Expected, a half page is not imported as if it was complete
+        }
+    }
+
+    @Test
+    public void hungRequestsAreBoundedByTheReadTimeout() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.HANG, "GET", JOB, -1);
+        long startedAt = System.currentTimeMillis();
+        try {
+            connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+            Assert.fail("Tower never answered");
+        } catch(AnsibleTowerException e) {
+            // Expected
+        }
+        // Four attempts of one second each plus at most 3.5 seconds of backoff between them
+        long elapsed = System.currentTimeMillis() - startedAt;
+        Assert.assertThat("Gave up after " + elapsed + " ms", elapsed < 12000, CoreMatchers.is(true));
+        Assert.assertThat(tower.getRequestCount("GET", JOB), CoreMatchers.is(4L));
+    }
+
+    @Test
+    public void slowBodiesAreBoundedByTheRequestTimeout() throws Exception {
+        tower.setEvents(200, 2);
+        tower.setSlowBodyMillis(200);
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.SLOW_BODY, "GET", JOB_EVENTS, -1);
+        long startedAt = System.currentTimeMillis();
+        try {
+            connector.logEvents(jobID, TowerConnector.JOB_TEMPLATE_TYPE, false);
+            Assert.fail("The page should have taken too long");
+        } catch(AnsibleTowerException e) {
+            // Expected, a byte every now and then keeps the read timeout from firing but not the request timeout
+        }
+        long elapsed = System.currentTimeMillis() - startedAt;
+        Assert.assertThat("Gave up after " + elapsed + " ms", elapsed < 8000, CoreMatchers.is(true));
+    }
+
+    @Test
+    public void malformedJSONIsAnAnsibleTowerException() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.MALFORMED_JSON, "GET", JOB, 1);
+        try {
+            connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE);
+            Assert.fail("The response was not JSON");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("convert it into json"));
+        }
+        Assert.assertThat(connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE), CoreMatchers.is(true));
+    }
+
+    @Test
+    public void expiredTokensAreRenewed() throws Exception {
+        int jobID = launch();
+        tower.injectFault(MockTower.Fault.EXPIRE_TOKENS, "GET", JOB, 1);
+        Assert.assertThat(connector.isJobCompleted(jobID, TowerConnector.JOB_TEMPLATE_TYPE), CoreMatchers.is(true));
+        Assert.assertThat(tower.getRequestCount("POST", "/api/v2/authtoken/"), CoreMatchers.is(2L));
+    }
+}
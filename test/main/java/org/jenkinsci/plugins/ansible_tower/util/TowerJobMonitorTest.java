@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TowerJobMonitorTest {
+    private MockTower tower;
+    private int jobID;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 500);
+        tower.setEvents(10, 1);
+        TowerConnector connector = new TowerConnector(tower.getUrl(), "admin", "password");
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        jobID = connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    @Test
+    public void aPollerWhichBreaksReleasesTheBuilds() throws Exception {
+        TowerJobMonitor monitor = TowerJobMonitor.attach("breaks", () -> new TowerConnector(tower.getUrl(), "admin", "password") {
+            @Override
+            public void logEvents(int jobID, String templateType, boolean importWorkflowChildLogs) {
+                throw new IllegalStateException("unexpected event");
+            }
+        }, jobID, TowerConnector.JOB_TEMPLATE_TYPE, true, false);
+        long startedAt = System.currentTimeMillis();
+        try {
+            monitor.follow(new PrintStream(new ByteArrayOutputStream()), true, startedAt + 60000);
+            Assert.fail("The poller failed");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("unexpected event"));
+        }
+        Assert.assertTrue("The build waited for the deadline", System.currentTimeMillis() - startedAt < 10000);
+    }
+
+    @Test
+    public void aSlowConnectorDoesNotHoldUpOtherJobs() throws Exception {
+        final CountDownLatch inFactory = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TowerJobMonitor[] racers = new TowerJobMonitor[2];
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int i = 0; i < 2; i++) {
+            final int racer = i;
+            threads.add(new Thread(() -> racers[racer] = TowerJobMonitor.attach("slow", () -> {
+                inFactory.countDown();
+                try { release.await(); } catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+                return new TowerConnector(tower.getUrl(), "admin", "password");
+            }, jobID, TowerConnector.JOB_TEMPLATE_TYPE, true, false)));
+        }
+        for(Thread thread : threads) { thread.start(); }
+        Assert.assertTrue("Both builds make a connector at once", inFactory.await(10, TimeUnit.SECONDS));
+
+        TowerJobMonitor other = TowerJobMonitor.attach("other", () -> new TowerConnector(tower.getUrl(), "admin", "password"),
+                jobID, TowerConnector.JOB_TEMPLATE_TYPE, true, false);
+        release.countDown();
+        for(Thread thread : threads) { thread.join(10000); }
+
+        Assert.assertThat(racers[1], CoreMatchers.sameInstance(racers[0]));
+        Assert.assertThat(racers[0].getAttached(), CoreMatchers.is(2));
+        long deadline = System.currentTimeMillis() + 30000;
+        Assert.assertTrue(other.follow(new PrintStream(new ByteArrayOutputStream()), false, deadline).isSuccessful());
+        Assert.assertTrue(racers[0].follow(new PrintStream(new ByteArrayOutputStream()), false, deadline).isSuccessful());
+        Assert.assertTrue(racers[1].follow(new PrintStream(new ByteArrayOutputStream()), false, deadline).isSuccessful());
+    }
+
+    @Test
+    public void aLateBuildGetsTheWholeLogOnce() throws Exception {
+        TowerJobMonitor first = TowerJobMonitor.attach("late", () -> new TowerConnector(tower.getUrl(), "admin", "password"),
+                jobID, TowerConnector.JOB_TEMPLATE_TYPE, true, false);
+        // Attached while the first one is still following, so both share the poller
+        TowerJobMonitor second = TowerJobMonitor.attach("late", () -> new TowerConnector(tower.getUrl(), "admin", "password"),
+                jobID, TowerConnector.JOB_TEMPLATE_TYPE, true, false);
+        Assert.assertThat(second, CoreMatchers.sameInstance(first));
+
+        ByteArrayOutputStream firstLog = new ByteArrayOutputStream();
+        Assert.assertTrue(first.follow(new PrintStream(firstLog, true, "UTF-8"), true, System.currentTimeMillis() + 30000).isSuccessful());
+        ByteArrayOutputStream secondLog = new ByteArrayOutputStream();
+        Assert.assertTrue(second.follow(new PrintStream(secondLog, true, "UTF-8"), true, System.currentTimeMillis() + 30000).isSuccessful());
+
+        Assert.assertThat(secondLog.toString("UTF-8"), CoreMatchers.is(firstLog.toString("UTF-8")));
+        String log = firstLog.toString("UTF-8");
+        Assert.assertThat(log.indexOf("(item=0.0)"), CoreMatchers.is(log.lastIndexOf("(item=0.0)")));
+        Assert.assertThat(log, CoreMatchers.containsString("(item=9.0)"));
+    }
+}
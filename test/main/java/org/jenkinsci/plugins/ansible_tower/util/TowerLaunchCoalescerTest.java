@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TowerLaunchCoalescerTest {
+
+    @Test
+    public void onlyTheFirstCallerOwnsTheLaunch() {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("owner-test");
+        Assert.assertThat(launch, CoreMatchers.notNullValue());
+        Assert.assertThat(TowerLaunchCoalescer.claim("owner-test"), CoreMatchers.nullValue());
+        Assert.assertThat(TowerLaunchCoalescer.find("owner-test"), CoreMatchers.sameInstance(launch));
+        launch.finished();
+        Assert.assertThat(TowerLaunchCoalescer.find("owner-test"), CoreMatchers.nullValue());
+    }
+
+    @Test
+    public void followersGetTheLaunchedJob() throws Exception {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("follow-test");
+        launch.launched(42, "https://tower/#/jobs/42");
+        TowerLaunchCoalescer.Launch followed = TowerLaunchCoalescer.find("follow-test");
+        Assert.assertThat(followed.follow(Long.MAX_VALUE), CoreMatchers.is(true));
+        Assert.assertThat(followed.getJobID(), CoreMatchers.is(42));
+        launch.finished();
+    }
+
+    @Test
+    public void onlyTheLastBuildWatchingTheJobIsDoneWithIt() throws Exception {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("watch-test");
+        launch.launched(7, "https://tower/#/jobs/7");
+        Assert.assertThat(TowerLaunchCoalescer.find("watch-test").follow(Long.MAX_VALUE), CoreMatchers.is(true));
+        Assert.assertThat(launch.finished(), CoreMatchers.is(false));
+        // Nobody new joins once a build is done with the job
+        Assert.assertThat(TowerLaunchCoalescer.find("watch-test"), CoreMatchers.nullValue());
+        Assert.assertThat(launch.follow(Long.MAX_VALUE), CoreMatchers.is(false));
+        Assert.assertThat(launch.finished(), CoreMatchers.is(true));
+    }
+
+    @Test
+    public void followersGiveUpWhenTheOwnerFails() throws Exception {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("fail-test");
+        TowerLaunchCoalescer.Launch followed = TowerLaunchCoalescer.find("fail-test");
+        launch.failed();
+        Assert.assertThat(followed.follow(Long.MAX_VALUE), CoreMatchers.is(false));
+        Assert.assertThat(TowerLaunchCoalescer.claim("fail-test"), CoreMatchers.notNullValue());
+        TowerLaunchCoalescer.find("fail-test").finished();
+    }
+
+    @Test
+    public void followersTakeTheAnswerWhenNothingHadToBeLaunched() throws Exception {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("not-needed-test");
+        TowerLaunchCoalescer.Launch followed = TowerLaunchCoalescer.find("not-needed-test");
+        launch.notNeeded();
+        Assert.assertThat(followed.follow(Long.MAX_VALUE), CoreMatchers.is(false));
+        Assert.assertThat(followed.isNotNeeded(), CoreMatchers.is(true));
+        Assert.assertThat(TowerLaunchCoalescer.find("not-needed-test"), CoreMatchers.nullValue());
+        launch.finished();
+    }
+
+    @Test
+    public void aFailedLaunchIsNotMistakenForOneWhichWasNotNeeded() throws Exception {
+        TowerLaunchCoalescer.Launch launch = TowerLaunchCoalescer.claim("failed-not-needed-test");
+        launch.failed();
+        Assert.assertThat(launch.isNotNeeded(), CoreMatchers.is(false));
+        launch.finished();
+    }
+}
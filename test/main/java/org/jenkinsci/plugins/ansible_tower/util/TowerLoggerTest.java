@@ -0,0 +1,29 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TowerLoggerTest {
+
+    @Test
+    public void shortBodiesAreKept() {
+        Assert.assertThat(TowerLogger.truncate("{\"id\": 1}"), CoreMatchers.is("{\"id\": 1}"));
+        Assert.assertThat(TowerLogger.truncate(null), CoreMatchers.nullValue());
+    }
+
+    @Test
+    public void longBodiesAreCut() {
+        StringBuilder body = new StringBuilder();
+        for(int i = 0; i < TowerLogger.MAX_BODY_LENGTH + 1000; i++) { body.append('x'); }
+        String truncated = TowerLogger.truncate(body.toString());
+        Assert.assertThat(truncated.length() < body.length(), CoreMatchers.is(true));
+        Assert.assertThat(truncated, CoreMatchers.endsWith("... (1000 more characters)"));
+    }
+
+    @Test
+    public void suppliersAreNotCalledWhenDisabled() {
+        TowerLogger logger = new TowerLogger();
+        logger.logMessage(() -> { throw new AssertionError("should not be built"); });
+    }
+}
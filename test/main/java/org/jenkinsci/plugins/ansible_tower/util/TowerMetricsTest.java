@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class TowerMetricsTest {
+
+    @Test
+    public void categorizesEndpoints() {
+        Assert.assertThat(TowerMetrics.categorize("POST", "/api/v2/job_templates/7/launch/"), CoreMatchers.is(TowerMetrics.LAUNCH));
+        Assert.assertThat(TowerMetrics.categorize("POST", "/api/v2/jobs/12/cancel/"), CoreMatchers.is(TowerMetrics.LAUNCH));
+        Assert.assertThat(TowerMetrics.categorize("GET", "/api/v2/jobs/12/"), CoreMatchers.is(TowerMetrics.STATUS));
+        Assert.assertThat(TowerMetrics.categorize("GET", "/api/v2/workflow_jobs/"), CoreMatchers.is(TowerMetrics.STATUS));
+        Assert.assertThat(TowerMetrics.categorize("GET", "/api/v2/jobs/12/job_events/"), CoreMatchers.is(TowerMetrics.JOB_EVENTS));
+        Assert.assertThat(TowerMetrics.categorize("GET", "/api/v2/workflow_jobs/3/workflow_nodes/"), CoreMatchers.is(TowerMetrics.WORKFLOW_NODES));
+        Assert.assertThat(TowerMetrics.categorize("POST", "/api/v2/authtoken/"), CoreMatchers.is(TowerMetrics.AUTH));
+        Assert.assertThat(TowerMetrics.categorize("GET", "/api/v2/job_templates/7/"), CoreMatchers.is(TowerMetrics.LOOKUP));
+        Assert.assertThat(TowerMetrics.categorize("GET", null), CoreMatchers.is(TowerMetrics.LOOKUP));
+    }
+
+    @Test
+    public void countsRequestsByStatus() {
+        TowerMetrics metrics = new TowerMetrics("https://tower");
+        metrics.requestFinished(TowerMetrics.STATUS, "200", metrics.requestStarted(TowerMetrics.STATUS));
+        metrics.requestFinished(TowerMetrics.STATUS, "200", metrics.requestStarted(TowerMetrics.STATUS));
+        metrics.requestFinished(TowerMetrics.STATUS, "502", metrics.requestStarted(TowerMetrics.STATUS));
+        metrics.requestFinished(TowerMetrics.STATUS, TowerMetrics.NO_RESPONSE, metrics.requestStarted(TowerMetrics.STATUS));
+        TowerMetrics.Category status = metrics.getCategories().get(TowerMetrics.STATUS);
+        Assert.assertThat(status.getCount(), CoreMatchers.is(4L));
+        Assert.assertThat(status.getErrors(), CoreMatchers.is(2L));
+        Assert.assertThat(status.getRequestsByStatus().get("200"), CoreMatchers.is(2L));
+        Assert.assertThat(status.getInFlight(), CoreMatchers.is(0L));
+    }
+
+    @Test
+    public void inFlightUntilFinished() {
+        TowerMetrics metrics = new TowerMetrics("https://tower");
+        long startedAt = metrics.requestStarted(TowerMetrics.LAUNCH);
+        Assert.assertThat(metrics.getCategories().get(TowerMetrics.LAUNCH).getInFlight(), CoreMatchers.is(1L));
+        metrics.requestFinished(TowerMetrics.LAUNCH, "201", startedAt);
+        Assert.assertThat(metrics.getCategories().get(TowerMetrics.LAUNCH).getInFlight(), CoreMatchers.is(0L));
+    }
+
+    @Test
+    public void histogramIsCumulative() {
+        TowerMetrics metrics = new TowerMetrics("https://tower");
+        metrics.requestFinished(TowerMetrics.LOOKUP, "200", System.nanoTime());
+        metrics.requestFinished(TowerMetrics.LOOKUP, "200", System.nanoTime() - 3000000000L);
+        long[] buckets = metrics.getCategories().get(TowerMetrics.LOOKUP).getCumulativeBuckets();
+        Assert.assertThat(buckets[0], CoreMatchers.is(1L));
+        Assert.assertThat(buckets[buckets.length - 1], CoreMatchers.is(2L));
+    }
+
+    @Test
+    public void writesPrometheusText() {
+        TowerMetrics metrics = new TowerMetrics("https://tower");
+        metrics.requestFinished(TowerMetrics.STATUS, "200", metrics.requestStarted(TowerMetrics.STATUS));
+        metrics.recordResponseBytes(TowerMetrics.STATUS, 512);
+        metrics.recordCacheHit();
+        String text = TowerMetrics.toPrometheus(Collections.singletonList(metrics));
+        Assert.assertThat(text, CoreMatchers.containsString("# TYPE ansible_tower_request_duration_seconds histogram\n"));
+        Assert.assertThat(text, CoreMatchers.containsString("ansible_tower_requests_total{tower=\"https://tower\",category=\"status\",code=\"200\"} 1\n"));
+        Assert.assertThat(text, CoreMatchers.containsString("ansible_tower_request_duration_seconds_bucket{tower=\"https://tower\",category=\"status\",le=\"+Inf\"} 1\n"));
+        Assert.assertThat(text, CoreMatchers.containsString("ansible_tower_response_bytes_total{tower=\"https://tower\",category=\"status\"} 512\n"));
+        Assert.assertThat(text, CoreMatchers.containsString("ansible_tower_cache_hits_total{tower=\"https://tower\"} 1\n"));
+    }
+}
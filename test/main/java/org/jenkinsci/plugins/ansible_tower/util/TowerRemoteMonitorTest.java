@@ -0,0 +1,172 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+public class TowerRemoteMonitorTest {
+    private static final String PASSWORD = "s3cret-pass";
+
+    private MockTower tower;
+    private TowerConnector connector;
+    private int jobID;
+
+    @Before
+    public void startTower() throws Exception {
+        tower = new MockTower();
+        tower.addJobTemplate("Deploy");
+        tower.setJobDuration(0, 300);
+        tower.setEvents(20, 1);
+        connector = new TowerConnector(tower.getUrl(), "admin", PASSWORD);
+        connector.setJenkinsLogger(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @After
+    public void stopTower() {
+        tower.stop();
+    }
+
+    private void launch() throws AnsibleTowerException {
+        int templateID = connector.getJobTemplate("Deploy", TowerConnector.JOB_TEMPLATE_TYPE).getInt("id");
+        jobID = connector.submitTemplate(templateID, null, null, null, null, null, null, null, TowerConnector.JOB_TEMPLATE_TYPE);
+    }
+
+    // What the agent gets, having been through remoting the way channel.call sends it
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> T sendThrough(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    private TowerRemoteMonitor.Outcome monitor(int failFastThreshold, ByteArrayOutputStream log) throws Exception {
+        TowerRemoteMonitor monitor = new TowerRemoteMonitor(
+                sendThrough(connector.getSettings()), jobID, TowerConnector.JOB_TEMPLATE_TYPE, "", true, true, false,
+                failFastThreshold, 10000, 50, log
+        );
+        return sendThrough(monitor.call());
+    }
+
+    @Test
+    public void followsTheJobToTheEnd() throws Exception {
+        launch();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        TowerRemoteMonitor.Outcome outcome = monitor(0, log);
+
+        Assert.assertThat(outcome.getReason(), CoreMatchers.is(TowerRemoteMonitor.Reason.COMPLETED));
+        Assert.assertThat(log.toString("UTF-8"), CoreMatchers.containsString("ok: [host-0.example.com] => (item=0.0)"));
+        Assert.assertThat(log.toString("UTF-8"), CoreMatchers.containsString("(item=19.0)"));
+    }
+
+    @Test
+    public void thePasswordStaysOnTheController() throws Exception {
+        launch();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(connector.getSettings());
+        }
+        Assert.assertThat(new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1), CoreMatchers.not(CoreMatchers.containsString(PASSWORD)));
+
+        monitor(0, new ByteArrayOutputStream());
+        // The agent used the session of the controller instead of logging in itself
+        Assert.assertThat(tower.getRequestCount("POST", "/api/v2/authtoken/"), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void anExpiredSessionFailsInsteadOfLoggingIn() throws Exception {
+        launch();
+        TowerConnector.Settings settings = connector.getSettings();
+        tower.expireTokens();
+        try {
+            new TowerRemoteMonitor(settings, jobID, TowerConnector.JOB_TEMPLATE_TYPE, "", true, true, false, 0, 10000, 50, new ByteArrayOutputStream()).call();
+            Assert.fail("The agent has no password to log in again with");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("Username/password invalid"));
+        }
+        Assert.assertThat(tower.getRequestCount("POST", "/api/v2/authtoken/"), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void basicAuthIsNotHandedToTheAgent() throws Exception {
+        tower.setAuthtokenSupported(false);
+        launch();
+        try {
+            connector.getSettings();
+            Assert.fail("Only the password could have been sent");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("password is not sent to the agent"));
+        }
+    }
+
+    @Test
+    public void recordingACassetteStaysOnTheController() throws Exception {
+        launch();
+        try (TowerCassette cassette = new TowerCassette(File.createTempFile("remote", TowerCassette.EXTENSION))) {
+            connector.setCassette(cassette);
+            connector.getSettings();
+            Assert.fail("The cassette can't be written on the agent");
+        } catch(AnsibleTowerException e) {
+            Assert.assertThat(e.getMessage(), CoreMatchers.containsString("cassette"));
+        } finally {
+            connector.setCassette(null);
+        }
+    }
+
+    @Test
+    public void stopsAtTheFailFastThreshold() throws Exception {
+        tower.setJobsFail(true);
+        tower.setFailingEvent(0);
+        tower.setJobDuration(0, 5000);
+        launch();
+        TowerRemoteMonitor.Outcome outcome = monitor(1, new ByteArrayOutputStream());
+
+        Assert.assertThat(outcome.getReason(), CoreMatchers.is(TowerRemoteMonitor.Reason.FAILED_HOSTS));
+        Assert.assertThat(outcome.getFailedHosts().keySet(), CoreMatchers.hasItem("host-0.example.com"));
+        Assert.assertFalse("The job was still running", tower.isCanceled(jobID));
+    }
+
+    @Test
+    public void requestsFromTheAgentAreCountedAndTraced() throws Exception {
+        TowerTrace trace = new TowerTrace("run");
+        trace.beginPhase("agent monitor");
+        connector.setTrace(trace);
+        launch();
+        long requestsBefore = connector.getRequestCount();
+
+        TowerRemoteMonitor.Outcome outcome = monitor(0, new ByteArrayOutputStream());
+        connector.addRemoteTelemetry(outcome);
+
+        Assert.assertTrue(outcome.getRequestCount() > 0);
+        Assert.assertThat(connector.getRequestCount(), CoreMatchers.is(requestsBefore + outcome.getRequestCount()));
+        // The launch is the only request of the controller, every status poll came from the agent
+        Assert.assertTrue(TowerMetrics.forUrl(tower.getUrl()).getCategories().get(TowerMetrics.STATUS).getCount() > 0);
+        TowerTrace.Span agentRoot = null;
+        for(TowerTrace.Span span : trace.getSpans()) {
+            if(span.getName().equals("monitor on agent")) { agentRoot = span; }
+        }
+        Assert.assertNotNull("The spans of the agent were not added", agentRoot);
+        Assert.assertThat(agentRoot.getParentSpanId(), CoreMatchers.is(trace.getCurrentSpanId()));
+        Assert.assertThat(agentRoot.toJSON().getString("traceId"), CoreMatchers.is(trace.getTraceId()));
+        int agentRequests = 0;
+        for(TowerTrace.Span span : trace.getSpans()) {
+            if(agentRoot.getSpanId().equals(span.getParentSpanId())) { agentRequests++; }
+        }
+        Assert.assertThat((long) agentRequests, CoreMatchers.is(outcome.getRequestCount()));
+    }
+}
@@ -0,0 +1,34 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import net.sf.json.JSONObject;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TowerResponseCacheTest {
+
+    private TowerResponseCache.Entry entry(String eTag) {
+        return new TowerResponseCache.Entry(eTag, null, new JSONObject());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        TowerResponseCache cache = new TowerResponseCache(2);
+        cache.put("a", entry("1"));
+        cache.put("b", entry("2"));
+        // Touch a so b becomes the least recently used entry
+        cache.get("a");
+        cache.put("c", entry("3"));
+
+        Assert.assertThat(cache.size(), CoreMatchers.is(2));
+        Assert.assertThat(cache.get("a").getETag(), CoreMatchers.is("1"));
+        Assert.assertThat(cache.get("b"), CoreMatchers.nullValue());
+        Assert.assertThat(cache.get("c").getETag(), CoreMatchers.is("3"));
+    }
+
+    @Test
+    public void sharedPerUrl() {
+        Assert.assertThat(TowerResponseCache.forUrl("https://tower.example.com"), CoreMatchers.sameInstance(TowerResponseCache.forUrl("https://tower.example.com")));
+        Assert.assertThat(TowerResponseCache.forUrl("https://tower.example.com"), CoreMatchers.not(CoreMatchers.sameInstance(TowerResponseCache.forUrl("https://other.example.com"))));
+    }
+}
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.apache.http.entity.BasicHttpEntity;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+public class TowerResponseEntityTest {
+    private static final String BODY = "{\"count\": 1, \"results\": [{\"stdout\": \"ok: [localhost]\"}]}";
+
+    private static BasicHttpEntity gzipped() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try(GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(compressed.toByteArray()));
+        entity.setContentLength(compressed.size());
+        entity.setContentEncoding("gzip");
+        return entity;
+    }
+
+    @Test
+    public void writeToWritesTheDecompressedBody() throws Exception {
+        CompletableFuture<Void> watchdog = new CompletableFuture<Void>();
+        AtomicLong wireBytes = new AtomicLong();
+        TowerResponseEntity entity = new TowerResponseEntity(gzipped(), watchdog, wireBytes::addAndGet);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        entity.writeTo(written);
+
+        Assert.assertThat(written.toString("UTF-8"), CoreMatchers.is(BODY));
+        Assert.assertThat(wireBytes.get() > 0, CoreMatchers.is(true));
+        Assert.assertThat(watchdog.isCancelled(), CoreMatchers.is(true));
+    }
+
+    @Test
+    public void consumingTheContentStopsTheWatchdog() throws Exception {
+        CompletableFuture<Void> watchdog = new CompletableFuture<Void>();
+        TowerResponseEntity entity = new TowerResponseEntity(gzipped(), watchdog);
+
+        entity.consumeContent();
+
+        Assert.assertThat(watchdog.isCancelled(), CoreMatchers.is(true));
+    }
+}
@@ -0,0 +1,34 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TowerTimelineTest {
+
+    @Test
+    public void beginEndsThePreviousPhase() throws Exception {
+        TowerTimeline timeline = new TowerTimeline("deploy");
+        timeline.begin(TowerTimeline.CONFIGURATION);
+        Thread.sleep(20);
+        timeline.begin(TowerTimeline.TEMPLATE_LOOKUP);
+        Assert.assertThat(timeline.getCurrentPhase(), CoreMatchers.is(TowerTimeline.TEMPLATE_LOOKUP));
+        timeline.end();
+
+        List<TowerTimeline.Phase> phases = timeline.getPhases();
+        Assert.assertThat(phases.size(), CoreMatchers.is(2));
+        Assert.assertThat(phases.get(0).getName(), CoreMatchers.is(TowerTimeline.CONFIGURATION));
+        Assert.assertThat(phases.get(0).getDurationMillis() >= 20, CoreMatchers.is(true));
+        Assert.assertThat(timeline.getCurrentPhase(), CoreMatchers.nullValue());
+    }
+
+    @Test
+    public void endWithoutPhaseDoesNothing() {
+        TowerTimeline timeline = new TowerTimeline("deploy");
+        timeline.end();
+        Assert.assertThat(timeline.getPhases().isEmpty(), CoreMatchers.is(true));
+        Assert.assertThat(timeline.getTotalMillis(), CoreMatchers.is(0L));
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.ansible_tower.util;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class TowerTraceTest {
+
+    @Test
+    public void requestsHangOffTheRunningPhase() {
+        TowerTrace trace = new TowerTrace("run");
+        TowerTrace.Span beforePhase = trace.startSpan("GET /ping/");
+        trace.beginPhase("Launch");
+        TowerTrace.Span launch = trace.startSpan("POST /job_templates/1/launch/");
+        trace.finish();
+
+        List<TowerTrace.Span> spans = trace.getSpans();
+        Assert.assertThat(spans.size(), CoreMatchers.is(4));
+        Assert.assertThat(beforePhase.getParentSpanId(), CoreMatchers.is(trace.getRoot().getSpanId()));
+        TowerTrace.Span phase = spans.get(2);
+        Assert.assertThat(phase.getName(), CoreMatchers.is("Launch"));
+        Assert.assertThat(launch.getParentSpanId(), CoreMatchers.is(phase.getSpanId()));
+    }
+
+    @Test
+    public void traceParentFollowsW3CFormat() {
+        TowerTrace trace = new TowerTrace("run");
+        String traceParent = trace.startSpan("GET /me/").getTraceParent();
+        Assert.assertThat(traceParent.matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"), CoreMatchers.is(true));
+        Assert.assertThat(traceParent, CoreMatchers.containsString(trace.getTraceId()));
+    }
+
+    @Test
+    public void exportsOneLinePerSpan() throws Exception {
+        File dir = Files.createTempDirectory("tower-trace").toFile();
+        TowerTrace trace = new TowerTrace("run");
+        trace.startSpan("GET /me/").setAttribute("http.status_code", 200);
+        trace.finish();
+
+        TowerTraceExporter exporter = new TowerTraceExporter("traces/tower.jsonl", dir);
+        exporter.export(trace);
+        List<String> lines = Files.readAllLines(new File(dir, "traces/tower.jsonl").toPath(), StandardCharsets.UTF_8);
+        Assert.assertThat(lines.size(), CoreMatchers.is(2));
+        Assert.assertThat(lines.get(1), CoreMatchers.containsString("\"http.status_code\":200"));
+        Assert.assertThat(lines.get(1), CoreMatchers.containsString("\"traceId\":\"" + trace.getTraceId() + "\""));
+    }
+
+    @Test
+    public void theVersionLookupOfANewConnectorIsTraced() throws Exception {
+        MockTower tower = new MockTower();
+        try {
+            TowerTrace trace = new TowerTrace("run");
+            new TowerConnector(tower.getUrl(), "admin", "password", null, false, false, 0, 0, 0, trace);
+            boolean traced = false;
+            for (TowerTrace.Span span : trace.getSpans()) {
+                traced = traced || span.getName().startsWith("GET") && span.getName().contains("ping");
+            }
+            Assert.assertTrue("The ping of the constructor has no span", traced);
+        } finally {
+            tower.stop();
+        }
+    }
+
+    @Test
+    public void aFullFileIsRotated() throws Exception {
+        File dir = Files.createTempDirectory("tower-trace").toFile();
+        TowerTraceExporter exporter = new TowerTraceExporter("tower.jsonl", dir, 1);
+        TowerTrace first = new TowerTrace("first");
+        first.finish();
+        TowerTrace second = new TowerTrace("second");
+        second.finish();
+
+        exporter.export(first);
+        exporter.export(second);
+        List<String> lines = Files.readAllLines(new File(dir, "tower.jsonl").toPath(), StandardCharsets.UTF_8);
+        List<String> rotated = Files.readAllLines(new File(dir, "tower.jsonl.1").toPath(), StandardCharsets.UTF_8);
+        Assert.assertThat(lines.size(), CoreMatchers.is(1));
+        Assert.assertThat(lines.get(0), CoreMatchers.containsString(second.getTraceId()));
+        Assert.assertThat(rotated.get(0), CoreMatchers.containsString(first.getTraceId()));
+    }
+
+    @Test
+    public void emptyTargetDisablesExport() {
+        Assert.assertThat(new TowerTraceExporter("  ", null).isEnabled(), CoreMatchers.is(false));
+        Assert.assertThat(new TowerTraceExporter(null, null).isEnabled(), CoreMatchers.is(false));
+    }
+}
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.ansible_tower.util;
 
-import com.sun.deploy.security.ruleset.ExceptionRule;
 import org.hamcrest.CoreMatchers;
 import org.jenkinsci.plugins.ansible_tower.exceptions.AnsibleTowerException;
 import org.junit.Assert;